@@ -0,0 +1,88 @@
+package bench;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** One timed operation, together with the state it needs.  The runner
+ *  calls setUp once, then run repeatedly, then tearDown.  Anything run
+ *  computes should be passed to consume, so that the compiler cannot
+ *  discard the work.  Quantities other than time that run wants reported
+ *  per operation (like JMH's auxiliary counters) are passed to count.
+ *  @author Brian Su
+ */
+abstract class Benchmark {
+
+    /** A benchmark called NAME, with no parameters yet. */
+    Benchmark(String name) {
+        _name = name;
+        _params = new LinkedHashMap<String, String>();
+    }
+
+    /** Returns my name, such as "graph.Traversal.depthFirstTraverse". */
+    String name() {
+        return _name;
+    }
+
+    /** Returns the parameters distinguishing me from other benchmarks of
+     *  the same name, in the order they were added. */
+    Map<String, String> params() {
+        return _params;
+    }
+
+    /** Add parameter KEY with value VALUE.  Returns this benchmark. */
+    Benchmark param(String key, Object value) {
+        _params.put(key, String.valueOf(value));
+        return this;
+    }
+
+    /** Prepare to run.  The default does nothing. */
+    void setUp() throws Exception {
+    }
+
+    /** Perform the operation being timed once. */
+    abstract void run() throws Exception;
+
+    /** Release anything setUp acquired.  The default does nothing. */
+    void tearDown() throws Exception {
+    }
+
+    /** Keep X live. */
+    final void consume(Object x) {
+        _sink = x;
+    }
+
+    /** Keep X live. */
+    final void consume(long x) {
+        _count += x;
+    }
+
+    /** Add N to the counter called NAME. */
+    final void count(String name, long n) {
+        Long old = _counters.get(name);
+        _counters.put(name, old == null ? n : old + n);
+    }
+
+    /** Returns the counters, by name, in the order first counted. */
+    Map<String, Long> counters() {
+        return _counters;
+    }
+
+    /** Set all counters to 0. */
+    void resetCounters() {
+        for (Map.Entry<String, Long> c : _counters.entrySet()) {
+            c.setValue(0L);
+        }
+    }
+
+    /** Name of this benchmark. */
+    private final String _name;
+    /** Parameters of this benchmark. */
+    private final LinkedHashMap<String, String> _params;
+    /** Counters of this benchmark. */
+    private final LinkedHashMap<String, Long> _counters =
+        new LinkedHashMap<String, Long>();
+    /** Last object consumed. */
+    private volatile Object _sink;
+    /** Sum of numbers consumed. */
+    private volatile long _count;
+}
@@ -0,0 +1,185 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+/** Generates makefiles, with matching fileinfo files, whose dependency
+ *  graphs are DAGs of any size.  The same kind, size and seed always give
+ *  the same files.  The first rule is for the target "all".  Kinds are
+ *     layered  about sqrt(N) layers of about sqrt(N) targets, each
+ *              depending on a few targets in the next layer;
+ *     wide     N targets, each depending on its own source, all needed
+ *              directly by "all";
+ *     deep     a chain of N targets, each depending on the next;
+ *     diamond  a chain of diamonds, in which a target depends on two
+ *              targets that both depend on the next diamond's top.
+ *  Every target at the bottom depends on a source file.  Targets are
+ *  newer than their prerequisites, except that about one target in twenty
+ *  is missing and about one source in twenty is newer than every target,
+ *  so some commands are issued.
+ *  @author Brian Su
+ */
+class DagGen {
+
+    /** The kinds of makefile. */
+    static final String[] KINDS = { "layered", "wide", "deep", "diamond" };
+
+    /** Number of prerequisites of a target in a layered makefile. */
+    static final int FANOUT = 3;
+
+    /** Write a makefile of kind ARGS[0] with about ARGS[1] targets, using
+     *  seed ARGS[2], to the file ARGS[3], and its fileinfo to ARGS[4]. */
+    public static void main(String... args) throws IOException {
+        if (args.length != 5) {
+            System.err.println(
+                "Usage: java bench.DagGen KIND N SEED MAKEFILE FILEINFO");
+            System.exit(1);
+        }
+        write(args[0], Integer.parseInt(args[1]), Long.parseLong(args[2]),
+              new File(args[3]), new File(args[4]));
+    }
+
+    /** Write a makefile of kind KIND with about N targets, using SEED, to
+     *  MAKEFILE and the ages of its files to FILEINFO. */
+    static void write(String kind, int n, long seed, File makefile,
+                      File fileinfo) throws IOException {
+        DagGen gen = new DagGen(seed, makefile, fileinfo, n);
+        try {
+            switch (kind) {
+            case "layered":
+                gen.layered(n);
+                break;
+            case "wide":
+                gen.wide(n);
+                break;
+            case "deep":
+                gen.deep(n);
+                break;
+            case "diamond":
+                gen.diamond(n);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown makefile kind: "
+                                                   + kind);
+            }
+        } finally {
+            gen._mk.close();
+            gen._info.close();
+        }
+    }
+
+    /** A generator writing to MAKEFILE and FILEINFO with random numbers
+     *  from SEED, for about N targets. */
+    private DagGen(long seed, File makefile, File fileinfo, int n)
+        throws IOException {
+        _rand = new Random(seed);
+        _mk = new PrintWriter(new BufferedWriter(new FileWriter(makefile)));
+        _info = new PrintWriter(new BufferedWriter(new FileWriter(fileinfo)));
+        _now = 4 * n + 10;
+        _info.println(_now);
+    }
+
+    /** Write a layered makefile with about N targets. */
+    private void layered(int n) {
+        int width = Math.max(1, (int) Math.sqrt(n));
+        int depth = Math.max(1, n / width);
+        StringBuilder top = new StringBuilder();
+        for (int c = 0; c < width; c += 1) {
+            top.append(" L0_").append(c);
+        }
+        rule("all", top.toString());
+        for (int r = 0; r < depth; r += 1) {
+            for (int c = 0; c < width; c += 1) {
+                StringBuilder pre = new StringBuilder();
+                if (r + 1 == depth) {
+                    pre.append(" ").append(source("L" + r + "_" + c));
+                } else {
+                    for (int k = 0; k < FANOUT; k += 1) {
+                        int p = (c + k * (1 + _rand.nextInt(width))) % width;
+                        pre.append(" L").append(r + 1).append("_").append(p);
+                    }
+                }
+                target("L" + r + "_" + c);
+                rule("L" + r + "_" + c, pre.toString());
+            }
+        }
+    }
+
+    /** Write a makefile in which "all" needs N independent targets. */
+    private void wide(int n) {
+        StringBuilder all = new StringBuilder();
+        for (int i = 0; i < n; i += 1) {
+            all.append(" W").append(i);
+        }
+        rule("all", all.toString());
+        for (int i = 0; i < n; i += 1) {
+            target("W" + i);
+            rule("W" + i, " " + source("W" + i));
+        }
+    }
+
+    /** Write a makefile with a chain of N targets. */
+    private void deep(int n) {
+        rule("all", " D0");
+        for (int i = 0; i < n; i += 1) {
+            target("D" + i);
+            rule("D" + i, " " + (i + 1 < n ? "D" + (i + 1) : source("D" + i)));
+        }
+    }
+
+    /** Write a makefile with a chain of diamonds holding about N
+     *  targets. */
+    private void diamond(int n) {
+        int k = Math.max(1, n / 3);
+        rule("all", " M0");
+        for (int i = 0; i < k; i += 1) {
+            String next = i + 1 < k ? "M" + (i + 1) : source("M" + i);
+            target("M" + i);
+            rule("M" + i, " A" + i + " B" + i);
+            target("A" + i);
+            rule("A" + i, " " + next);
+            target("B" + i);
+            rule("B" + i, " " + next);
+        }
+    }
+
+    /** Write a rule for TARGET with prerequisites PREREQS (which starts
+     *  with a blank if not empty). */
+    private void rule(String target, String prereqs) {
+        _mk.printf("%s:%s%n", target, prereqs);
+        _mk.printf("\tbuild %s%n", target);
+    }
+
+    /** Record an age for target NAME, unless it is one of the targets
+     *  that is to be missing.  Targets are written before their
+     *  prerequisites, so each is given an age older than the last. */
+    private void target(String name) {
+        _targets += 1;
+        if (_rand.nextInt(20) != 0) {
+            _info.printf("%s %d%n", name, _now - 1 - _targets);
+        }
+    }
+
+    /** Record an age for a source for target NAME and return the source's
+     *  name.  A few sources are newer than any target. */
+    private String source(String name) {
+        String src = name + ".c";
+        int age = _rand.nextInt(20) == 0
+            ? _now - 1 : 1 + _rand.nextInt(_now / 2);
+        _info.printf("%s %d%n", src, age);
+        return src;
+    }
+
+    /** Source of randomness. */
+    private final Random _rand;
+    /** Where the makefile and fileinfo are written. */
+    private final PrintWriter _mk, _info;
+    /** The current time recorded in the fileinfo. */
+    private final int _now;
+    /** Number of targets given ages so far. */
+    private int _targets;
+}
@@ -0,0 +1,488 @@
+package bench;
+
+import graph.DirectedGraph;
+import graph.Graph;
+import graph.RejectException;
+import graph.Traversal;
+import graph.TraversalStats;
+import graph.UndirectedGraph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/** Benchmarks of the basic operations of the graph package on square
+ *  grids, in which each vertex is joined to its right and lower
+ *  neighbors, and of parallel traversals on large random graphs.
+ *  @author Brian Su
+ */
+class GraphBench {
+
+    /** Side lengths of the grids used. */
+    static final int[] SIDES = { 30, 60 };
+
+    /** Numbers of vertices taken from the start of pre-order
+     *  iterations; 0 means all of them. */
+    static final int[] TAKES = { 16, 0 };
+
+    /** Number of vertices in the random graphs used. */
+    static final int RANDOM_VERTICES = 1000000;
+
+    /** Out-degree of each vertex of the random graphs. */
+    static final int RANDOM_DEGREE = 4;
+
+    /** Number of vertices in the dense random graph used for
+     *  direction-optimizing traversals. */
+    static final int DENSE_VERTICES = 100000;
+
+    /** Out-degree of each vertex of the dense random graph. */
+    static final int DENSE_DEGREE = 16;
+
+    /** Number of vertices in the random graph used for traversals that
+     *  reject most edges. */
+    static final int REJECT_VERTICES = 100000;
+
+    /** The ways a traversal may reject an edge: by throwing a new
+     *  RejectException, by throwing the shared RejectException.REJECT, or
+     *  by returning Action.REJECT. */
+    static final String[] SIGNALS = { "new", "shared", "action" };
+
+    /** Seed for random graphs. */
+    static final long SEED = 34;
+
+    /** Add the graph benchmarks to ALL. */
+    static void addAll(List<Benchmark> all) {
+        for (final boolean directed : new boolean[] { true, false }) {
+            for (final int side : SIDES) {
+                all.add(new Benchmark("graph.Graph.add") {
+                    @Override
+                    void run() {
+                        consume(grid(directed, side, null).edgeSize());
+                    }
+                }.param("directed", directed).param("side", side));
+                all.add(new GridBench("graph.Graph.remove", directed, side) {
+                    @Override
+                    void run() {
+                        Graph<Integer, Integer>.Vertex v = _g.add(-1);
+                        for (int i = 0; i < 4; i += 1) {
+                            _g.add(v, _v.get(i * _v.size() / 4), i);
+                        }
+                        _g.remove(v);
+                        consume(_g.edgeSize());
+                    }
+                });
+                all.add(new GridBench("graph.Graph.outEdges", directed, side) {
+                    @Override
+                    void run() {
+                        long n = 0;
+                        for (Graph<Integer, Integer>.Vertex v : _v) {
+                            for (Graph<Integer, Integer>.Edge e
+                                     : _g.outEdges(v)) {
+                                n += 1;
+                            }
+                        }
+                        consume(n);
+                    }
+                });
+                all.add(new GridBench("graph.Graph.outEdge", directed, side) {
+                    @Override
+                    void run() {
+                        long n = 0;
+                        for (int i = 0; i < _v.size(); i += 1) {
+                            Graph<Integer, Integer>.Vertex v = _v.get(i);
+                            for (int k = 0; k < _g.outDegree(v); k += 1) {
+                                n += _g.outEdge(v, k).getLabel();
+                            }
+                        }
+                        consume(n);
+                    }
+                });
+                all.add(new GridBench("graph.Graph.forEachOutEdge",
+                                      directed, side) {
+                    @Override
+                    void setUp() {
+                        super.setUp();
+                        _sum = new Summer();
+                    }
+
+                    @Override
+                    void run() {
+                        _sum._total = 0;
+                        for (int i = 0; i < _v.size(); i += 1) {
+                            _g.forEachOutEdge(_v.get(i), _sum);
+                        }
+                        consume(_sum._total);
+                    }
+
+                    /** Sums the labels of the edges it is given. */
+                    private Summer _sum;
+                });
+                all.add(depthFirst(directed, side));
+                for (int take : TAKES) {
+                    all.add(preOrder(directed, side, take));
+                }
+                for (boolean keyed : new boolean[] { false, true }) {
+                    all.add(general(directed, side, keyed));
+                }
+                all.add(new GridBench("graph.Traversal.breadthFirstTraverse",
+                                      directed, side) {
+                    @Override
+                    void run() {
+                        Counter c = new Counter();
+                        c.breadthFirstTraverse(_g, _v.get(0));
+                        consume(c._visits);
+                    }
+                });
+            }
+        }
+        int cpus = Runtime.getRuntime().availableProcessors();
+        for (int threads : cpus > 1 ? new int[] { 1, cpus } : new int[] { 1 }) {
+            all.add(parallelBreadthFirst(RANDOM_VERTICES, threads));
+        }
+        for (boolean optimize : new boolean[] { false, true }) {
+            all.add(directionOptimizing(DENSE_VERTICES, DENSE_DEGREE,
+                                        optimize));
+        }
+        for (String signal : SIGNALS) {
+            all.add(rejecting(REJECT_VERTICES, signal));
+        }
+    }
+
+    /** Returns a benchmark of a depth-first traversal of a random graph
+     *  with N vertices that rejects every edge into an odd-numbered
+     *  vertex, in the way named by SIGNAL (one of SIGNALS).  Counts the
+     *  rejections. */
+    static Benchmark rejecting(final int n, final String signal) {
+        return new Benchmark("graph.Traversal.reject") {
+            @Override
+            void setUp() {
+                _v = new ArrayList<Graph<Integer, Integer>.Vertex>();
+                _g = random(n, RANDOM_DEGREE, SEED, _v);
+            }
+
+            @Override
+            void run() {
+                Traversal<Integer, Integer> t;
+                if (signal.equals("action")) {
+                    t = new OddRejecter();
+                } else {
+                    t = new OddThrower(signal.equals("shared"));
+                }
+                TraversalStats stats = new TraversalStats();
+                t.setListener(stats);
+                t.depthFirstTraverse(_g, _v.get(0));
+                consume(stats.getSettled());
+                count("rejected", stats.getRejected());
+            }
+
+            @Override
+            void tearDown() {
+                _g = null;
+                _v = null;
+            }
+
+            /** The graph. */
+            private Graph<Integer, Integer> _g;
+            /** The vertices of _g. */
+            private List<Graph<Integer, Integer>.Vertex> _v;
+        }.param("vertices", n).param("signal", signal);
+    }
+
+    /** Returns a benchmark of a level-by-level breadth-first traversal of
+     *  a random graph with N vertices of out-degree DEGREE, which switches
+     *  to bottom-up steps iff OPTIMIZE.  Counts the edges examined. */
+    static Benchmark directionOptimizing(final int n, final int degree,
+                                         final boolean optimize) {
+        return new Benchmark(
+            "graph.Traversal.directionOptimizingBreadthFirstTraverse") {
+            @Override
+            void setUp() {
+                _v = new ArrayList<Graph<Integer, Integer>.Vertex>();
+                _g = random(n, degree, SEED, _v);
+            }
+
+            @Override
+            void run() {
+                Counter c = new Counter();
+                TraversalStats stats = new TraversalStats();
+                c.setListener(stats);
+                if (optimize) {
+                    c.directionOptimizingBreadthFirstTraverse(_g, _v.get(0));
+                } else {
+                    c.directionOptimizingBreadthFirstTraverse(_g, _v.get(0),
+                                                              0, 0);
+                }
+                consume(c._visits);
+                count("edges.examined", stats.getExamined());
+            }
+
+            @Override
+            void tearDown() {
+                _g = null;
+                _v = null;
+            }
+
+            /** The graph. */
+            private Graph<Integer, Integer> _g;
+            /** The vertices of _g. */
+            private List<Graph<Integer, Integer>.Vertex> _v;
+        }.param("vertices", n).param("degree", degree)
+         .param("direction", optimize ? "optimizing" : "top-down");
+    }
+
+    /** Returns a benchmark of a parallel breadth-first traversal, using
+     *  THREADS threads, of a random graph with N vertices.  Comparing the
+     *  results for different THREADS gives the speedup. */
+    static Benchmark parallelBreadthFirst(final int n, final int threads) {
+        return new Benchmark("graph.Traversal.parallelBreadthFirstTraverse") {
+            @Override
+            void setUp() {
+                _v = new ArrayList<Graph<Integer, Integer>.Vertex>();
+                _g = random(n, RANDOM_DEGREE, SEED, _v);
+                _pool = new ForkJoinPool(threads);
+            }
+
+            @Override
+            void run() {
+                ParallelCounter c = new ParallelCounter();
+                c.parallelBreadthFirstTraverse(_g, _v.get(0), _pool);
+                consume(c._visits.sum());
+            }
+
+            @Override
+            void tearDown() {
+                _pool.shutdown();
+                _g = null;
+                _v = null;
+            }
+
+            /** The graph. */
+            private Graph<Integer, Integer> _g;
+            /** The vertices of _g. */
+            private List<Graph<Integer, Integer>.Vertex> _v;
+            /** The threads used. */
+            private ForkJoinPool _pool;
+        }.param("vertices", n).param("threads", threads);
+    }
+
+    /** Returns a benchmark of a depth-first traversal of a SIDE x SIDE
+     *  grid, directed iff DIRECTED, from its corner. */
+    static Benchmark depthFirst(boolean directed, int side) {
+        return new GridBench("graph.Traversal.depthFirstTraverse",
+                             directed, side) {
+            @Override
+            void run() {
+                Counter c = new Counter();
+                c.depthFirstTraverse(_g, _v.get(0));
+                consume(c._visits);
+            }
+        };
+    }
+
+    /** Returns a benchmark of a general traversal of a SIDE x SIDE grid,
+     *  directed iff DIRECTED, from its corner, which takes vertices from
+     *  the fringe in the order of scramble of their labels.  The order is
+     *  given by keys if KEYED, and otherwise by a Comparator. */
+    static Benchmark general(boolean directed, final int side,
+                             final boolean keyed) {
+        return new GridBench("graph.Traversal.traverse", directed, side) {
+            @Override
+            void run() {
+                Counter c = new Counter();
+                if (keyed) {
+                    c.traverse(_g, _v.get(0), x -> scramble(x, side));
+                } else {
+                    c.traverse(_g, _v.get(0), (x, y) ->
+                               Integer.compare(scramble(x, side),
+                                               scramble(y, side)));
+                }
+                consume(c._visits);
+            }
+        }.param("order", keyed ? "key" : "comparator");
+    }
+
+    /** Returns the vertex label X of a SIDE x SIDE grid mapped to another
+     *  label, so that neighbors have unrelated priorities. */
+    static int scramble(int x, int side) {
+        return (int) (x * 7919L % (side * side));
+    }
+
+    /** Returns a benchmark of taking the first TAKE vertices (all of them
+     *  if TAKE is 0) of a pre-order iteration of a SIDE x SIDE grid,
+     *  directed iff DIRECTED, from its corner. */
+    static Benchmark preOrder(boolean directed, int side, final int take) {
+        return new GridBench("graph.Traversal.preOrder", directed, side) {
+            @Override
+            void run() {
+                Counter c = new Counter();
+                long n = 0;
+                for (Graph<Integer, Integer>.Vertex v
+                         : c.preOrder(_g, _v.get(0))) {
+                    n += 1;
+                    if (n == take) {
+                        break;
+                    }
+                }
+                consume(n);
+            }
+        }.param("take", take == 0 ? "all" : take);
+    }
+
+    /** Returns a SIDE x SIDE grid, directed iff DIRECTED, with vertex
+     *  and edge labels numbered from 0.  Adds the vertices, row by row, to
+     *  VERTICES unless it is null. */
+    static Graph<Integer, Integer>
+    grid(boolean directed, int side,
+         List<Graph<Integer, Integer>.Vertex> vertices) {
+        Graph<Integer, Integer> g;
+        if (directed) {
+            g = new DirectedGraph<Integer, Integer>();
+        } else {
+            g = new UndirectedGraph<Integer, Integer>();
+        }
+        List<Graph<Integer, Integer>.Vertex> v =
+            new ArrayList<Graph<Integer, Integer>.Vertex>();
+        for (int i = 0; i < side * side; i += 1) {
+            v.add(g.add(i));
+        }
+        int e = 0;
+        for (int r = 0; r < side; r += 1) {
+            for (int c = 0; c < side; c += 1) {
+                if (c + 1 < side) {
+                    g.add(v.get(r * side + c), v.get(r * side + c + 1), e++);
+                }
+                if (r + 1 < side) {
+                    g.add(v.get(r * side + c), v.get(r * side + c + side),
+                          e++);
+                }
+            }
+        }
+        if (vertices != null) {
+            vertices.addAll(v);
+        }
+        return g;
+    }
+
+    /** Returns a directed graph with N vertices, labeled from 0, each with
+     *  DEGREE edges to vertices chosen at random using SEED.  Adds the
+     *  vertices, in order, to VERTICES unless it is null. */
+    static Graph<Integer, Integer>
+    random(int n, int degree, long seed,
+           List<Graph<Integer, Integer>.Vertex> vertices) {
+        Random rand = new Random(seed);
+        Graph<Integer, Integer> g = new DirectedGraph<Integer, Integer>();
+        List<Graph<Integer, Integer>.Vertex> v =
+            new ArrayList<Graph<Integer, Integer>.Vertex>(n);
+        for (int i = 0; i < n; i += 1) {
+            v.add(g.add(i));
+        }
+        for (int i = 0; i < n; i += 1) {
+            for (int k = 0; k < degree; k += 1) {
+                g.add(v.get(i), v.get(rand.nextInt(n)));
+            }
+        }
+        if (vertices != null) {
+            vertices.addAll(v);
+        }
+        return g;
+    }
+
+    /** A benchmark on a grid built once by setUp. */
+    abstract static class GridBench extends Benchmark {
+        /** Benchmark NAME on a SIDE x SIDE grid, directed iff
+         *  DIRECTED. */
+        GridBench(String name, boolean directed, int side) {
+            super(name);
+            _directed = directed;
+            _side = side;
+            param("directed", directed);
+            param("side", side);
+        }
+
+        @Override
+        void setUp() {
+            _v = new ArrayList<Graph<Integer, Integer>.Vertex>();
+            _g = grid(_directed, _side, _v);
+        }
+
+        /** True iff the grid is directed. */
+        private final boolean _directed;
+        /** Side length of the grid. */
+        private final int _side;
+        /** The grid. */
+        protected Graph<Integer, Integer> _g;
+        /** The vertices of _g, row by row. */
+        protected List<Graph<Integer, Integer>.Vertex> _v;
+    }
+
+    /** Sums the labels of the edges it accepts. */
+    static class Summer implements Consumer<Graph<Integer, Integer>.Edge> {
+        @Override
+        public void accept(Graph<Integer, Integer>.Edge e) {
+            _total += e.getLabel();
+        }
+
+        /** Sum of labels so far. */
+        private long _total;
+    }
+
+    /** A traversal that counts its visits. */
+    static class Counter extends Traversal<Integer, Integer> {
+        @Override
+        protected void visit(Graph<Integer, Integer>.Vertex v) {
+            _visits += 1;
+        }
+
+        /** Number of visits so far. */
+        private long _visits;
+    }
+
+    /** A traversal that rejects edges into odd-numbered vertices by
+     *  throwing RejectExceptions. */
+    static class OddThrower extends Traversal<Integer, Integer> {
+        /** A traversal throwing RejectException.REJECT if SHARED, and
+         *  otherwise a new RejectException each time. */
+        OddThrower(boolean shared) {
+            _shared = shared;
+        }
+
+        @Override
+        protected void preVisit(Graph<Integer, Integer>.Edge e,
+                                Graph<Integer, Integer>.Vertex v0) {
+            if ((e.getV(v0).getLabel() & 1) != 0) {
+                throw _shared ? RejectException.REJECT
+                    : new RejectException();
+            }
+        }
+
+        /** True iff I throw the shared RejectException. */
+        private final boolean _shared;
+    }
+
+    /** A traversal that rejects edges into odd-numbered vertices by
+     *  returning Action.REJECT. */
+    static class OddRejecter extends Traversal<Integer, Integer> {
+        @Override
+        protected Action tryPreVisit(Graph<Integer, Integer>.Edge e,
+                                     Graph<Integer, Integer>.Vertex v0) {
+            return (e.getV(v0).getLabel() & 1) != 0
+                ? Action.REJECT : Action.CONTINUE;
+        }
+    }
+
+    /** A parallel traversal that counts its visits. */
+    static class ParallelCounter extends Traversal<Integer, Integer> {
+        @Override
+        protected void concurrentVisit(Graph<Integer, Integer>.Vertex v,
+                                       int depth) {
+            _visits.increment();
+        }
+
+        /** Number of visits so far. */
+        private final LongAdder _visits = new LongAdder();
+    }
+
+}
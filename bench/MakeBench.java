@@ -0,0 +1,135 @@
+package bench;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.List;
+
+/** Benchmarks of make.Main on synthetic makefiles.  In the flat
+ *  makefiles, every target has a handful of prerequisites and about half
+ *  the targets are split over two rules, so a run is dominated by reading
+ *  the makefile and merging duplicate rules.  Only the first target is out
+ *  of date, so the traversal itself is cheap.  The makefiles made by
+ *  DagGen have deeper dependency graphs of several shapes.
+ *  @author Brian Su
+ */
+class MakeBench {
+
+    /** Numbers of rules in the makefiles used. */
+    static final int[] RULES = { 1000, 10000, 100000 };
+
+    /** Numbers of targets in the makefiles made by DagGen. */
+    static final int[] TARGETS = { 250, 1000 };
+
+    /** Seed for generated makefiles. */
+    static final long SEED = 32;
+
+    /** Add the make benchmarks to ALL. */
+    static void addAll(List<Benchmark> all) {
+        for (final int n : RULES) {
+            all.add(new MakeRun() {
+                @Override
+                void write(File makefile, File fileinfo) throws IOException {
+                    writeMakefile(makefile, n);
+                    writeFileinfo(fileinfo, n);
+                }
+            }.param("rules", n));
+        }
+        for (String kind : DagGen.KINDS) {
+            for (int n : TARGETS) {
+                all.add(generated(kind, n));
+            }
+        }
+    }
+
+    /** Returns a benchmark of make.Main on a makefile of kind KIND with
+     *  about N targets, made by DagGen. */
+    static Benchmark generated(final String kind, final int n) {
+        return new MakeRun() {
+            @Override
+            void write(File makefile, File fileinfo) throws IOException {
+                DagGen.write(kind, n, SEED, makefile, fileinfo);
+            }
+        }.param("kind", kind).param("targets", n);
+    }
+
+    /** A benchmark of make.Main on a makefile and fileinfo written by
+     *  setUp, with the standard output discarded. */
+    abstract static class MakeRun extends Benchmark {
+        /** A benchmark of make.Main. */
+        MakeRun() {
+            super("make.Main");
+        }
+
+        /** Write the makefile to MAKEFILE and the file ages to
+         *  FILEINFO. */
+        abstract void write(File makefile, File fileinfo) throws IOException;
+
+        @Override
+        void setUp() throws IOException {
+            _dir = File.createTempFile("makebench", "");
+            _dir.delete();
+            _dir.mkdir();
+            _makefile = new File(_dir, "Makefile");
+            _fileinfo = new File(_dir, "fileinfo");
+            write(_makefile, _fileinfo);
+            _out = System.out;
+            System.setOut(new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+            }));
+        }
+
+        @Override
+        void run() {
+            make.Main.main("-f", _makefile.getPath(),
+                           "-D", _fileinfo.getPath());
+        }
+
+        @Override
+        void tearDown() {
+            System.setOut(_out);
+            _makefile.delete();
+            _fileinfo.delete();
+            _dir.delete();
+        }
+
+        /** Directory holding the generated files. */
+        private File _dir;
+        /** The generated files. */
+        private File _makefile, _fileinfo;
+        /** The standard output, while it is redirected. */
+        private PrintStream _out;
+    }
+
+    /** Write N rules to F.  Target Ti depends on sources Si.a and Si.b and,
+     *  for even i, on Si.c through a second rule for the same target. */
+    static void writeMakefile(File f, int n) throws IOException {
+        PrintWriter w = new PrintWriter(new FileWriter(f));
+        for (int i = 0; i < n; i += 1) {
+            w.printf("T%d: S%d.a S%d.b%n", i, i, i);
+            w.printf("\tbuild T%d%n", i);
+            if (i % 2 == 0) {
+                w.printf("T%d: S%d.c S%d.a%n", i, i, i);
+            }
+        }
+        w.close();
+    }
+
+    /** Write file ages for the N rules of writeMakefile to F.  All targets
+     *  except T0 are newer than their sources. */
+    static void writeFileinfo(File f, int n) throws IOException {
+        PrintWriter w = new PrintWriter(new FileWriter(f));
+        w.println(3 * n + 10);
+        for (int i = 0; i < n; i += 1) {
+            w.printf("S%d.a %d%nS%d.b %d%nS%d.c %d%n", i, 1, i, 1, i, 1);
+            w.printf("T%d %d%n", i, i == 0 ? 0 : 2);
+        }
+        w.close();
+    }
+
+}
@@ -0,0 +1,339 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/** Generates trip map files of any size.  The same kind, size and seed
+ *  always give the same file.  Kinds are
+ *     grid       a jittered square grid of locations, each joined to its
+ *                right and upper neighbors;
+ *     geometric  uniformly random locations, each joined to the others
+ *                within a radius chosen to give an average degree of
+ *                about six, enough to connect most of them;
+ *     road       uniformly random locations, each joined to its nearest
+ *                neighbors, with degrees drawn from the distribution seen
+ *                in real road networks (mostly 2 and 3, a few dead ends
+ *                and a few large junctions).
+ *  Road lengths are at least the straight-line distance between their
+ *  ends, so that distance is an admissible heuristic.  Lines are written
+ *  as they are generated, so maps with millions of records need memory
+ *  only for the coordinates.
+ *  @author Brian Su
+ */
+class MapGen {
+
+    /** The kinds of map. */
+    static final String[] KINDS = { "grid", "geometric", "road" };
+
+    /** Average spacing between neighboring locations. */
+    static final double SPACING = 2.0;
+
+    /** Cumulative distribution of degrees for road maps: P(degree <= k)
+     *  is ROAD_DEGREES[k - 1]. */
+    static final double[] ROAD_DEGREES = { 0.06, 0.36, 0.80, 0.97, 1.0 };
+
+    /** Write a map of kind ARGS[0] with about ARGS[1] locations, using
+     *  seed ARGS[2], to the file ARGS[3]. */
+    public static void main(String... args) throws IOException {
+        if (args.length != 4) {
+            System.err.println("Usage: java bench.MapGen KIND N SEED OUT");
+            System.exit(1);
+        }
+        write(args[0], Integer.parseInt(args[1]), Long.parseLong(args[2]),
+              new File(args[3]));
+    }
+
+    /** Write a map of kind KIND with about N locations, using SEED, to
+     *  OUT.  Returns the names of two locations far apart, suitable as the
+     *  ends of a trip. */
+    static String[] write(String kind, int n, long seed, File out)
+        throws IOException {
+        MapGen gen = new MapGen(seed, out);
+        try {
+            switch (kind) {
+            case "grid":
+                return gen.grid((int) Math.ceil(Math.sqrt(n)));
+            case "geometric":
+                return gen.geometric(n);
+            case "road":
+                return gen.road(n);
+            default:
+                throw new IllegalArgumentException("unknown map kind: "
+                                                   + kind);
+            }
+        } finally {
+            gen._out.close();
+        }
+    }
+
+    /** A generator writing to OUT with random numbers from SEED. */
+    private MapGen(long seed, File out) throws IOException {
+        _rand = new Random(seed);
+        _out = new PrintWriter(new BufferedWriter(new FileWriter(out)));
+    }
+
+    /** Write a SIDE x SIDE grid.  Returns the names of opposite corners. */
+    private String[] grid(int side) {
+        _x = new double[side * side];
+        _y = new double[side * side];
+        for (int r = 0; r < side; r += 1) {
+            for (int c = 0; c < side; c += 1) {
+                int i = r * side + c;
+                _x[i] = c * SPACING + jitter();
+                _y[i] = r * SPACING + jitter();
+                location(i);
+            }
+        }
+        for (int r = 0; r < side; r += 1) {
+            for (int c = 0; c < side; c += 1) {
+                int i = r * side + c;
+                if (c + 1 < side) {
+                    road(i, i + 1, "R" + r);
+                }
+                if (r + 1 < side) {
+                    road(i, i + side, "C" + c);
+                }
+            }
+        }
+        return new String[] { name(0), name(side * side - 1) };
+    }
+
+    /** Write N random locations, joining those closer than a fixed
+     *  radius.  Returns the names of the locations nearest two opposite
+     *  corners. */
+    private String[] geometric(int n) {
+        scatter(n);
+        double radius = SPACING * Math.sqrt(6.0 / Math.PI);
+        Buckets b = new Buckets(radius);
+        for (int i = 0; i < n; i += 1) {
+            for (int j : b.near(i)) {
+                if (j > i && dist(i, j) <= radius) {
+                    road(i, j, "G" + (i % 97));
+                }
+            }
+        }
+        return corners();
+    }
+
+    /** Write N random locations, each joined to its nearest neighbors with
+     *  a degree drawn from ROAD_DEGREES.  Returns the names of the
+     *  locations nearest two opposite corners. */
+    private String[] road(int n) {
+        scatter(n);
+        int[] degree = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            double p = _rand.nextDouble();
+            int d = 0;
+            while (p > ROAD_DEGREES[d]) {
+                d += 1;
+            }
+            degree[i] = d + 1;
+        }
+        Buckets b = new Buckets(SPACING);
+        for (int i = 0; i < n; i += 1) {
+            for (int j : b.nearest(i, degree[i])) {
+                if (j > i || !contains(b.nearest(j, degree[j]), i)) {
+                    String name = degree[i] + degree[j] >= 8
+                        ? "I-" + (i % 13) : "Rd" + (i % 211);
+                    road(i, j, name);
+                }
+            }
+        }
+        return corners();
+    }
+
+    /** Place N locations uniformly at random in a square sized so that
+     *  they are about SPACING apart, and write them. */
+    private void scatter(int n) {
+        _side = SPACING * Math.sqrt(n);
+        _x = new double[n];
+        _y = new double[n];
+        for (int i = 0; i < n; i += 1) {
+            _x[i] = _rand.nextDouble() * _side;
+            _y[i] = _rand.nextDouble() * _side;
+            location(i);
+        }
+    }
+
+    /** Returns the names of the locations nearest the lower-left and
+     *  upper-right corners. */
+    private String[] corners() {
+        int lo = 0, hi = 0;
+        for (int i = 1; i < _x.length; i += 1) {
+            if (_x[i] + _y[i] < _x[lo] + _y[lo]) {
+                lo = i;
+            }
+            if (_x[i] + _y[i] > _x[hi] + _y[hi]) {
+                hi = i;
+            }
+        }
+        return new String[] { name(lo), name(hi) };
+    }
+
+    /** Returns a small random offset. */
+    private double jitter() {
+        return (_rand.nextDouble() - 0.5) * SPACING / 4;
+    }
+
+    /** Returns the name of location I. */
+    private static String name(int i) {
+        return "P" + i;
+    }
+
+    /** Returns the straight-line distance between locations I and J. */
+    private double dist(int i, int j) {
+        return Math.hypot(_x[i] - _x[j], _y[i] - _y[j]);
+    }
+
+    /** Round the coordinates of location I to the precision used in the
+     *  file, and write it. */
+    private void location(int i) {
+        _x[i] = Math.round(_x[i] * 100) / 100.0;
+        _y[i] = Math.round(_y[i] * 100) / 100.0;
+        _out.printf(Locale.ROOT, "L %s %.2f %.2f%n", name(i),
+                    _x[i], _y[i]);
+    }
+
+    /** Write a road called NAME from location I to location J. */
+    private void road(int i, int j, String name) {
+        double len = dist(i, j) * (1.0 + _rand.nextDouble() / 5);
+        len = Math.ceil(len * 1e4) / 1e4 + 0.0001;
+        String dir;
+        if (Math.abs(_x[j] - _x[i]) >= Math.abs(_y[j] - _y[i])) {
+            dir = _x[j] >= _x[i] ? "WE" : "EW";
+        } else {
+            dir = _y[j] >= _y[i] ? "SN" : "NS";
+        }
+        _out.printf(Locale.ROOT, "R %s %s %.4f %s %s%n", name(i), name,
+                    len, dir, name(j));
+    }
+
+    /** Returns true iff A contains X. */
+    private static boolean contains(int[] a, int x) {
+        for (int y : a) {
+            if (y == x) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** The locations, sorted into square cells for neighbor searches. */
+    private class Buckets {
+
+        /** Cells of side CELL over the locations so far. */
+        Buckets(double cell) {
+            _cell = cell;
+            _cols = Math.max(1, (int) Math.ceil(_side / cell));
+            int n = _x.length;
+            int[] count = new int[_cols * _cols + 1];
+            for (int i = 0; i < n; i += 1) {
+                count[cellOf(i) + 1] += 1;
+            }
+            for (int c = 0; c < _cols * _cols; c += 1) {
+                count[c + 1] += count[c];
+            }
+            _start = count.clone();
+            _members = new int[n];
+            for (int i = 0; i < n; i += 1) {
+                _members[count[cellOf(i)]++] = i;
+            }
+        }
+
+        /** Returns the locations in the cell of I and the cells around
+         *  it, I included. */
+        int[] near(int i) {
+            return around(i, 1);
+        }
+
+        /** Returns up to K locations nearest to I, excluding I, nearest
+         *  first, looking no further than two cells away. */
+        int[] nearest(final int i, int k) {
+            int[] cand = around(i, 2);
+            double[] d = new double[cand.length];
+            Integer[] order = new Integer[cand.length];
+            for (int c = 0; c < cand.length; c += 1) {
+                d[c] = cand[c] == i ? Double.MAX_VALUE : dist(i, cand[c]);
+                order[c] = c;
+            }
+            final double[] dd = d;
+            Arrays.sort(order, new java.util.Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    int r = Double.compare(dd[a], dd[b]);
+                    return r != 0 ? r : Integer.compare(a, b);
+                }
+            });
+            int m = Math.min(k, cand.length - 1);
+            int[] result = new int[Math.max(0, m)];
+            for (int c = 0; c < result.length; c += 1) {
+                result[c] = cand[order[c]];
+            }
+            return result;
+        }
+
+        /** Returns the locations within R cells of the cell of I. */
+        private int[] around(int i, int r) {
+            int cx = cellX(i), cy = cellY(i);
+            int size = 0;
+            for (int y = Math.max(0, cy - r);
+                 y <= Math.min(_cols - 1, cy + r); y += 1) {
+                for (int x = Math.max(0, cx - r);
+                     x <= Math.min(_cols - 1, cx + r); x += 1) {
+                    size += _start[y * _cols + x + 1] - _start[y * _cols + x];
+                }
+            }
+            int[] result = new int[size];
+            int k = 0;
+            for (int y = Math.max(0, cy - r);
+                 y <= Math.min(_cols - 1, cy + r); y += 1) {
+                for (int x = Math.max(0, cx - r);
+                     x <= Math.min(_cols - 1, cx + r); x += 1) {
+                    int c = y * _cols + x;
+                    for (int m = _start[c]; m < _start[c + 1]; m += 1) {
+                        result[k++] = _members[m];
+                    }
+                }
+            }
+            return result;
+        }
+
+        /** Returns the column of the cell of location I. */
+        private int cellX(int i) {
+            return Math.min(_cols - 1, (int) (_x[i] / _cell));
+        }
+
+        /** Returns the row of the cell of location I. */
+        private int cellY(int i) {
+            return Math.min(_cols - 1, (int) (_y[i] / _cell));
+        }
+
+        /** Returns the cell number of location I. */
+        private int cellOf(int i) {
+            return cellY(i) * _cols + cellX(i);
+        }
+
+        /** Side of a cell. */
+        private final double _cell;
+        /** Number of cells along each side. */
+        private final int _cols;
+        /** The members of cell c are _members[_start[c]] through
+         *  _members[_start[c + 1] - 1]. */
+        private final int[] _start, _members;
+    }
+
+    /** Source of randomness. */
+    private final Random _rand;
+    /** Where the map is written. */
+    private final PrintWriter _out;
+    /** Coordinates of the locations. */
+    private double[] _x, _y;
+    /** Side of the square holding the locations. */
+    private double _side;
+}
@@ -0,0 +1,269 @@
+package bench;
+
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/** Runs the benchmarks and reports the results as JSON.  The report
+ *  follows the layout of JMH's JSON result format (one object per
+ *  benchmark, with "benchmark", "mode", "params" and "primaryMetric"),
+ *  so existing tools for tracking JMH results can read it.  Scores are
+ *  average times per operation; scoreError is the standard deviation
+ *  over the measurement iterations.
+ *
+ *  Usage:
+ *      java bench.Runner [ -o OUT ] [ -w WARMUP ] [ -i ITERATIONS ]
+ *                        [ -t MILLIS ] [ -prof gc ] [ PATTERN ... ]
+ *  Runs the benchmarks whose names contain one of the PATTERNs (all of
+ *  them if none are given), each for WARMUP untimed and ITERATIONS timed
+ *  iterations of at least MILLIS milliseconds, and writes the report to
+ *  OUT (default the standard output).  With -prof gc, also reports the
+ *  bytes allocated per operation as the secondary metric
+ *  "gc.alloc.rate.norm".  Counters kept by a benchmark are reported as
+ *  secondary metrics per operation, named after the counter.
+ *  @author Brian Su
+ */
+public class Runner {
+
+    /** Default number of warmup iterations. */
+    static final int WARMUP = 3;
+    /** Default number of measurement iterations. */
+    static final int ITERATIONS = 5;
+    /** Default minimum length of an iteration in milliseconds. */
+    static final int MILLIS = 500;
+
+    /** Run the benchmarks selected by ARGS, as described above. */
+    public static void main(String... args) throws Exception {
+        Runner runner = new Runner();
+        List<String> patterns = new ArrayList<String>();
+        String outName = null;
+        for (int a = 0; a < args.length; a += 1) {
+            if (args[a].equals("-o") && a + 1 < args.length) {
+                outName = args[++a];
+            } else if (args[a].equals("-w") && a + 1 < args.length) {
+                runner._warmup = Integer.parseInt(args[++a]);
+            } else if (args[a].equals("-i") && a + 1 < args.length) {
+                runner._iterations = Integer.parseInt(args[++a]);
+            } else if (args[a].equals("-t") && a + 1 < args.length) {
+                runner._millis = Integer.parseInt(args[++a]);
+            } else if (args[a].equals("-prof") && a + 1 < args.length
+                       && args[a + 1].equals("gc")) {
+                a += 1;
+                runner._gc = true;
+            } else if (args[a].startsWith("-")) {
+                usage();
+            } else {
+                patterns.add(args[a]);
+            }
+        }
+
+        List<Benchmark> all = new ArrayList<Benchmark>();
+        GraphBench.addAll(all);
+        TripBench.addAll(all);
+        MakeBench.addAll(all);
+
+        PrintStream out = System.out;
+        if (outName != null) {
+            out = new PrintStream(new FileOutputStream(outName));
+        }
+        out.println("[");
+        boolean first = true;
+        for (Benchmark b : all) {
+            if (!selected(b, patterns)) {
+                continue;
+            }
+            System.err.printf("# %s %s%n", b.name(), b.params());
+            String result = runner.measure(b);
+            if (!first) {
+                out.println(",");
+            }
+            out.print(result);
+            first = false;
+        }
+        out.println();
+        out.println("]");
+        if (out != System.out) {
+            out.close();
+        }
+    }
+
+    /** Returns true iff the name of B contains one of PATTERNS, or
+     *  PATTERNS is empty. */
+    private static boolean selected(Benchmark b, List<String> patterns) {
+        if (patterns.isEmpty()) {
+            return true;
+        }
+        for (String p : patterns) {
+            if (b.name().contains(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Run B through its warmup and measurement iterations and return its
+     *  JSON result. */
+    String measure(Benchmark b) throws Exception {
+        b.setUp();
+        double[] times = new double[_iterations];
+        double[] allocs = new double[_iterations];
+        LinkedHashMap<String, double[]> counters =
+            new LinkedHashMap<String, double[]>();
+        try {
+            for (int i = 0; i < _warmup; i += 1) {
+                iteration(b, null, null, 0);
+            }
+            for (int i = 0; i < _iterations; i += 1) {
+                times[i] = iteration(b, allocs, counters, i);
+            }
+        } finally {
+            b.tearDown();
+        }
+        StringBuilder json = new StringBuilder();
+        json.append("    {\n");
+        json.append(String.format("        \"benchmark\" : %s,%n",
+                                  quote(b.name())));
+        json.append("        \"mode\" : \"avgt\",\n");
+        json.append(String.format("        \"warmupIterations\" : %d,%n",
+                                  _warmup));
+        json.append(String.format("        \"measurementIterations\" : %d,%n",
+                                  _iterations));
+        json.append("        \"params\" : {");
+        String sep = "";
+        for (Map.Entry<String, String> p : b.params().entrySet()) {
+            json.append(String.format("%s%n            %s : %s", sep,
+                                      quote(p.getKey()),
+                                      quote(p.getValue())));
+            sep = ",";
+        }
+        json.append(b.params().isEmpty() ? "},\n" : "\n        },\n");
+        json.append("        \"primaryMetric\" : ");
+        metric(json, times, "us/op");
+        if (_gc || !counters.isEmpty()) {
+            json.append(",\n        \"secondaryMetrics\" : {");
+            sep = "\n";
+            if (_gc) {
+                json.append(sep);
+                json.append("            \"gc.alloc.rate.norm\" : ");
+                metric(json, allocs, "B/op");
+                sep = ",\n";
+            }
+            for (Map.Entry<String, double[]> c : counters.entrySet()) {
+                json.append(sep).append(String.format("            %s : ",
+                                                      quote(c.getKey())));
+                metric(json, c.getValue(), "#/op");
+                sep = ",\n";
+            }
+            json.append("\n        }");
+        }
+        json.append("\n    }");
+        return json.toString();
+    }
+
+    /** Run B repeatedly for at least the iteration time and return the
+     *  mean time per operation in microseconds.  If ALLOCS is not null,
+     *  set ALLOCS[K] to the mean number of bytes allocated per
+     *  operation.  If COUNTERS is not null, set COUNTERS.get(c)[K] to the
+     *  mean per operation of each counter c of B, adding entries for new
+     *  counters. */
+    private double iteration(Benchmark b, double[] allocs,
+                             Map<String, double[]> counters, int k)
+        throws Exception {
+        long limit = _millis * 1000000L;
+        long ops = 0;
+        b.resetCounters();
+        long bytes0 = allocated();
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            b.run();
+            ops += 1;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < limit);
+        if (allocs != null) {
+            allocs[k] = (double) (allocated() - bytes0) / ops;
+        }
+        if (counters != null) {
+            for (Map.Entry<String, Long> c : b.counters().entrySet()) {
+                if (!counters.containsKey(c.getKey())) {
+                    counters.put(c.getKey(), new double[_iterations]);
+                }
+                counters.get(c.getKey())[k] = (double) c.getValue() / ops;
+            }
+        }
+        return elapsed / 1e3 / ops;
+    }
+
+    /** Append to JSON a JMH-style metric for the per-iteration SCORES in
+     *  units UNIT. */
+    private static void metric(StringBuilder json, double[] scores,
+                               String unit) {
+        double sum = 0.0;
+        for (double s : scores) {
+            sum += s;
+        }
+        double mean = sum / scores.length;
+        double var = 0.0;
+        for (double s : scores) {
+            var += (s - mean) * (s - mean);
+        }
+        double sd = scores.length > 1
+            ? Math.sqrt(var / (scores.length - 1)) : 0.0;
+        json.append("{\n");
+        json.append(String.format("                \"score\" : %s,%n",
+                                  num(mean)));
+        json.append(String.format("                \"scoreError\" : %s,%n",
+                                  num(sd)));
+        json.append(String.format("                \"scoreUnit\" : %s,%n",
+                                  quote(unit)));
+        json.append("                \"rawData\" : [ [ ");
+        for (int i = 0; i < scores.length; i += 1) {
+            json.append(i == 0 ? "" : ", ").append(num(scores[i]));
+        }
+        json.append(" ] ]\n            }");
+    }
+
+    /** Returns the number of bytes allocated so far by the current thread,
+     *  or 0 if the JVM cannot tell. */
+    private static long allocated() {
+        java.lang.management.ThreadMXBean bean =
+            ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean)
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /** Returns X as a JSON number. */
+    private static String num(double x) {
+        return String.format(Locale.ROOT, "%.3f", x);
+    }
+
+    /** Returns S as a JSON string. */
+    static String quote(String s) {
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    /** Print a brief usage message and exit program abnormally. */
+    private static void usage() {
+        System.err.println(
+            "Usage: java bench.Runner [ -o OUT ] [ -w WARMUP ] "
+            + "[ -i ITERATIONS ] [ -t MILLIS ] [ -prof gc ] [ PATTERN ... ]");
+        System.exit(1);
+    }
+
+    /** Number of warmup iterations. */
+    private int _warmup = WARMUP;
+    /** Number of measurement iterations. */
+    private int _iterations = ITERATIONS;
+    /** Minimum length of an iteration in milliseconds. */
+    private int _millis = MILLIS;
+    /** True if allocation is measured. */
+    private boolean _gc;
+}
@@ -0,0 +1,247 @@
+package bench;
+
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/** Reports how the time and memory taken by each subsystem grow with the
+ *  size of its input.  Each series starts at a small size and doubles it
+ *  until the size passes a maximum or one operation takes longer than a
+ *  time limit.  The inputs are the grids of GraphBench, the maps of MapGen
+ *  (loaded as Graphs and copied to MappedGraphs) and the makefiles of
+ *  DagGen.  For each size, the report gives the mean
+ *  time of one operation, the heap still in use after the operation while
+ *  its input is held (the retained size of the input and result), and the
+ *  peak heap use during the operation.
+ *
+ *  Usage:
+ *      java bench.Scaling [ -o OUT ] [ -min N ] [ -max N ] [ -t SECONDS ]
+ *                         [ PATTERN ... ]
+ *  Runs the series whose subsystem or kind contains one of the PATTERNs
+ *  (all of them if none are given), from N = MIN up to N = MAX elements,
+ *  stopping a series once an operation takes more than SECONDS, and writes
+ *  a JSON array of results to OUT (default the standard output).
+ *  @author Brian Su
+ */
+public class Scaling {
+
+    /** Default smallest size. */
+    static final int MIN = 1000;
+    /** Default largest size. */
+    static final int MAX = 1 << 20;
+    /** Default limit on the time of one operation, in seconds. */
+    static final int SECONDS = 10;
+    /** Minimum time spent measuring each size, in milliseconds. */
+    static final int MILLIS = 200;
+
+    /** Run the series selected by ARGS, as described above. */
+    public static void main(String... args) throws Exception {
+        Scaling scaling = new Scaling();
+        List<String> patterns = new ArrayList<String>();
+        String outName = null;
+        for (int a = 0; a < args.length; a += 1) {
+            if (args[a].equals("-o") && a + 1 < args.length) {
+                outName = args[++a];
+            } else if (args[a].equals("-min") && a + 1 < args.length) {
+                scaling._min = Integer.parseInt(args[++a]);
+            } else if (args[a].equals("-max") && a + 1 < args.length) {
+                scaling._max = Integer.parseInt(args[++a]);
+            } else if (args[a].equals("-t") && a + 1 < args.length) {
+                scaling._seconds = Integer.parseInt(args[++a]);
+            } else if (args[a].startsWith("-")) {
+                usage();
+            } else {
+                patterns.add(args[a]);
+            }
+        }
+
+        PrintStream out = System.out;
+        if (outName != null) {
+            out = new PrintStream(new FileOutputStream(outName));
+        }
+        out.println("[");
+        boolean first = true;
+        for (Series s : series()) {
+            if (!s.selected(patterns)) {
+                continue;
+            }
+            for (int n = scaling._min; n <= scaling._max; n *= 2) {
+                System.err.printf("# %s %s %d%n", s._subsystem, s._kind, n);
+                double[] result = scaling.measure(s.at(n));
+                if (!first) {
+                    out.println(",");
+                }
+                out.printf(Locale.ROOT,
+                           "    { \"subsystem\" : %s, \"kind\" : %s, "
+                           + "\"size\" : %d, \"millis\" : %.3f, "
+                           + "\"retainedBytes\" : %d, \"peakBytes\" : %d }",
+                           Runner.quote(s._subsystem), Runner.quote(s._kind),
+                           n, result[0], (long) result[1], (long) result[2]);
+                out.flush();
+                first = false;
+                if (result[0] > scaling._seconds * 1000.0) {
+                    break;
+                }
+            }
+        }
+        out.println();
+        out.println("]");
+        if (out != System.out) {
+            out.close();
+        }
+    }
+
+    /** Returns all the series. */
+    static List<Series> series() {
+        List<Series> all = new ArrayList<Series>();
+        for (final boolean directed : new boolean[] { true, false }) {
+            all.add(new Series("graph",
+                               directed ? "directed grid" : "undirected grid") {
+                @Override
+                Benchmark at(int n) {
+                    return GraphBench.depthFirst(directed,
+                                                 (int) Math.sqrt(n));
+                }
+            });
+        }
+        for (final String kind : MapGen.KINDS) {
+            all.add(new Series("trip", kind) {
+                @Override
+                Benchmark at(int n) {
+                    return TripBench.shortestPath(kind, n);
+                }
+            });
+        }
+        for (final String kind : MapGen.KINDS) {
+            all.add(new Series("mapped", kind) {
+                @Override
+                Benchmark at(int n) {
+                    return TripBench.mappedShortestPath(kind, n);
+                }
+            });
+        }
+        for (final String kind : DagGen.KINDS) {
+            all.add(new Series("make", kind) {
+                @Override
+                Benchmark at(int n) {
+                    return MakeBench.generated(kind, n);
+                }
+            });
+        }
+        return all;
+    }
+
+    /** Run B once to warm up and then repeatedly for at least MILLIS
+     *  milliseconds.  Returns the mean time per run in milliseconds, the
+     *  heap in use after the runs less that in use before setUp, and the
+     *  peak heap in use during the runs. */
+    double[] measure(Benchmark b) throws Exception {
+        long base = usedAfterGC();
+        b.setUp();
+        try {
+            b.run();
+            resetPeaks();
+            long ops = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                b.run();
+                ops += 1;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < MILLIS * 1000000L);
+            long peak = peakUsed();
+            long retained = usedAfterGC() - base;
+            return new double[] {
+                elapsed / 1e6 / ops, Math.max(0, retained), peak
+            };
+        } finally {
+            b.tearDown();
+        }
+    }
+
+    /** Returns the heap in use after a full collection. */
+    private static long usedAfterGC() {
+        Runtime rt = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i += 1) {
+            System.gc();
+            used = Math.min(used, rt.totalMemory() - rt.freeMemory());
+        }
+        return used;
+    }
+
+    /** Reset the peak usage of the heap memory pools. */
+    private static void resetPeaks() {
+        for (MemoryPoolMXBean pool
+                 : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /** Returns the sum of the peak usages of the heap memory pools since
+     *  they were last reset. */
+    private static long peakUsed() {
+        long sum = 0;
+        for (MemoryPoolMXBean pool
+                 : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                sum += pool.getPeakUsage().getUsed();
+            }
+        }
+        return sum;
+    }
+
+    /** Print a brief usage message and exit program abnormally. */
+    private static void usage() {
+        System.err.println(
+            "Usage: java bench.Scaling [ -o OUT ] [ -min N ] [ -max N ] "
+            + "[ -t SECONDS ] [ PATTERN ... ]");
+        System.exit(1);
+    }
+
+    /** Benchmarks of one operation of a subsystem on inputs of one kind
+     *  and increasing size. */
+    abstract static class Series {
+        /** A series for SUBSYSTEM on inputs of kind KIND. */
+        Series(String subsystem, String kind) {
+            _subsystem = subsystem;
+            _kind = kind;
+        }
+
+        /** Returns the benchmark for inputs of size about N. */
+        abstract Benchmark at(int n);
+
+        /** Returns true iff my subsystem or kind contains one of PATTERNS,
+         *  or PATTERNS is empty. */
+        boolean selected(List<String> patterns) {
+            if (patterns.isEmpty()) {
+                return true;
+            }
+            for (String p : patterns) {
+                if (_subsystem.contains(p) || _kind.contains(p)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** Name of the subsystem. */
+        private final String _subsystem;
+        /** Kind of input. */
+        private final String _kind;
+    }
+
+    /** Smallest size. */
+    private int _min = MIN;
+    /** Largest size. */
+    private int _max = MAX;
+    /** Limit on the time of one operation, in seconds. */
+    private int _seconds = SECONDS;
+}
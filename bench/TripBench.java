@@ -0,0 +1,632 @@
+package bench;
+
+import graph.BoundedPath;
+import graph.Deadline;
+import graph.Distancer;
+import graph.Graph;
+import graph.Graphs;
+import graph.HubLabels;
+import graph.MappedGraph;
+import graph.SearchResult;
+import graph.Weighter;
+import graph.Weighting;
+import trip.Location;
+import trip.Road;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Scanner;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/** Benchmarks of the trip program on the maps in trip-tests and on maps
+ *  made by MapGen: loading a map with trip.Main.buildDB, and both
+ *  versions of Graphs.shortestPath and Graphs.bucketShortestPath between
+ *  the first and last locations listed in each test map, or between the
+ *  far corners of each generated map.  The search between the corners
+ *  is also timed on a MappedGraph copy of each generated map, and the
+ *  distance between them is looked up in HubLabels built for the map.
+ *  On the largest generated road map, it also times a sum over
+ *  Graph.edgeStream and a histogram over Graph.vertexStream, each run
+ *  sequentially and in parallel, and the distances from a corner to every
+ *  location, found by Dijkstra's algorithm and by delta-stepping.  On the
+ *  largest generated map of each kind, it times
+ *  Graphs.parallelShortestPath with several numbers of threads.  On the
+ *  large test maps and the largest generated grid, it times
+ *  Graphs.weightedShortestPath with several epsilons and
+ *  Graphs.anytimeShortestPath with several budgets, counting how much
+ *  longer than the shortest their paths are.  On the large test maps and
+ *  the largest generated map of each kind, it times
+ *  Graphs.shortestPathWithin with a Deadline that never expires and with
+ *  several short deadlines, counting how often the search gives up.
+ *  @author Brian Su
+ */
+class TripBench {
+
+    /** The maps used. */
+    static final String[] MAPS = {
+        "map01", "map02", "map03", "map04",
+        "map05", "map06", "map07", "map08"
+    };
+
+    /** Directory holding the maps, relative to the working directory or
+     *  its parent. */
+    static final String MAPDIR = "trip-tests";
+
+    /** Numbers of locations in the generated maps used. */
+    static final int[] LOCATIONS = { 2000, 8000 };
+
+    /** Seed for generated maps. */
+    static final long SEED = 32;
+
+    /** Add the trip benchmarks to ALL. */
+    static void addAll(List<Benchmark> all) {
+        for (final String name : MAPS) {
+            all.add(new Benchmark("trip.Main.buildDB") {
+                @Override
+                void run() throws Exception {
+                    consume(loadMap(mapFile(name)));
+                }
+            }.param("map", name));
+            all.add(new MapBench("graph.Graphs.shortestPath", name) {
+                @Override
+                void run() {
+                    consume(Graphs.shortestPath(_map, _from, _to, DIST));
+                }
+            });
+            all.add(new MapBench("graph.Graphs.bucketShortestPath", name) {
+                @Override
+                void run() {
+                    consume(Graphs.bucketShortestPath(_map, _from, _to,
+                                                      DIST));
+                }
+            });
+            all.add(new MapBench("graph.Graphs.shortestPathWeighter", name) {
+                @Override
+                void run() {
+                    consume(Graphs.shortestPath(_map, _from, _to, DIST,
+                                                VWEIGHTER, EWEIGHTER));
+                }
+            });
+        }
+        for (String kind : MapGen.KINDS) {
+            for (int n : LOCATIONS) {
+                all.add(load(kind, n));
+                all.add(shortestPath(kind, n));
+                all.add(bucketShortestPath(kind, n));
+                all.add(mappedShortestPath(kind, n));
+                all.add(hubDist(kind, n));
+            }
+        }
+        for (boolean parallel : new boolean[] { false, true }) {
+            all.add(roadLength(parallel));
+            all.add(degrees(parallel));
+        }
+        for (double delta : DELTAS) {
+            all.add(distances(delta));
+        }
+        for (String kind : MapGen.KINDS) {
+            for (int threads : THREADS) {
+                all.add(parallelShortestPath(kind,
+                                             LOCATIONS[LOCATIONS.length - 1],
+                                             threads));
+            }
+        }
+        for (String name : LARGE_MAPS) {
+            for (double epsilon : EPSILONS) {
+                all.add(weightedShortestPath(
+                    new BoundedBench("graph.Graphs.weightedShortestPath",
+                                     name), epsilon));
+            }
+            for (int budget : BUDGETS) {
+                all.add(anytimeShortestPath(
+                    new BoundedBench("graph.Graphs.anytimeShortestPath",
+                                     name), budget));
+            }
+        }
+        for (String kind : BOUNDED_KINDS) {
+            int n = LOCATIONS[LOCATIONS.length - 1];
+            for (double epsilon : EPSILONS) {
+                all.add(weightedShortestPath(
+                    new BoundedBench("graph.Graphs.weightedShortestPath",
+                                     kind, n), epsilon));
+            }
+            for (int budget : BUDGETS) {
+                all.add(anytimeShortestPath(
+                    new BoundedBench("graph.Graphs.anytimeShortestPath",
+                                     kind, n), budget));
+            }
+        }
+        for (int deadline : DEADLINES) {
+            for (String name : LARGE_MAPS) {
+                all.add(new DeadlineBench(name, deadline));
+            }
+            for (String kind : MapGen.KINDS) {
+                all.add(new DeadlineBench(kind,
+                                          LOCATIONS[LOCATIONS.length - 1],
+                                          deadline));
+            }
+        }
+    }
+
+    /** Deadlines, in microseconds, timed for Graphs.shortestPathWithin,
+     *  where -1 stands for a Deadline that never expires. */
+    static final int[] DEADLINES = { -1, 100, 1000 };
+
+    /** A benchmark of Graphs.shortestPathWithin.  It counts the searches
+     *  that give up ("gave.up"). */
+    static class DeadlineBench extends MapBench {
+        /** Benchmark the search on map MAP in trip-tests, giving up
+         *  MICROS microseconds after it starts, or never if MICROS is
+         *  negative. */
+        DeadlineBench(String map, int micros) {
+            super("graph.Graphs.shortestPathWithin", map);
+            _micros = micros;
+            param("deadline.us", micros < 0 ? "none" : micros);
+        }
+
+        /** Benchmark the search across a map of kind KIND with N
+         *  locations, generated by setUp, giving up as for the
+         *  2-argument constructor. */
+        DeadlineBench(String kind, int n, int micros) {
+            super("graph.Graphs.shortestPathWithin", kind, n);
+            _micros = micros;
+            param("deadline.us", micros < 0 ? "none" : micros);
+        }
+
+        @Override
+        void run() {
+            Deadline deadline = _micros < 0 ? new Deadline()
+                : Deadline.after(_micros * 1000L);
+            SearchResult<Location, Road> result =
+                Graphs.shortestPathWithin(_map, _from, _to, DIST,
+                                          deadline);
+            count("gave.up", result.isComplete() ? 0 : 1);
+            consume(result);
+        }
+
+        /** Microseconds allowed for each search, or -1 for no limit. */
+        private final int _micros;
+    }
+
+    /** The test maps large enough to time bounded searches on. */
+    static final String[] LARGE_MAPS = { "map01", "map06", "map08" };
+
+    /** The kinds of generated map to time bounded searches on: those
+     *  whose far corners are connected. */
+    static final String[] BOUNDED_KINDS = { "grid" };
+
+    /** Epsilons timed for Graphs.weightedShortestPath. */
+    static final double[] EPSILONS = { 1, 1.5, 2, 3 };
+
+    /** Budgets, in microseconds, timed for Graphs.anytimeShortestPath,
+     *  starting from an epsilon of 3. */
+    static final int[] BUDGETS = { 0, 100, 1000 };
+
+    /** Returns B, set to time Graphs.weightedShortestPath with
+     *  EPSILON. */
+    static Benchmark weightedShortestPath(BoundedBench b,
+                                          final double epsilon) {
+        b._search = new Search() {
+            @Override
+            public BoundedPath<Location, Road> find(BoundedBench b) {
+                return Graphs.weightedShortestPath(b._map, b._from, b._to,
+                                                   DIST, epsilon);
+            }
+        };
+        return b.param("epsilon", epsilon);
+    }
+
+    /** Returns B, set to time Graphs.anytimeShortestPath from an epsilon
+     *  of 3, with a budget of MICROS microseconds. */
+    static Benchmark anytimeShortestPath(BoundedBench b, final int micros) {
+        b._search = new Search() {
+            @Override
+            public BoundedPath<Location, Road> find(BoundedBench b) {
+                return Graphs.anytimeShortestPath(b._map, b._from, b._to,
+                                                  DIST, 3, micros * 1000L);
+            }
+        };
+        return b.param("budget.us", micros);
+    }
+
+    /** A search timed by a BoundedBench. */
+    interface Search {
+        /** Returns a path between the ends of B's query. */
+        BoundedPath<Location, Road> find(BoundedBench b);
+    }
+
+    /** A benchmark of a search that need not find a shortest path.  It
+     *  counts, in parts per million, how much longer than the shortest
+     *  the paths found are ("excess.ppm"), and the bound proven on that
+     *  ("bound.ppm"). */
+    static class BoundedBench extends MapBench {
+        /** Benchmark NAME on map MAP in trip-tests. */
+        BoundedBench(String name, String map) {
+            super(name, map);
+        }
+
+        /** Benchmark NAME on a map of kind KIND with N locations,
+         *  generated by setUp. */
+        BoundedBench(String name, String kind, int n) {
+            super(name, kind, n);
+        }
+
+        @Override
+        void setUp() throws Exception {
+            super.setUp();
+            _shortest = 0;
+            for (Graph<Location, Road>.Edge e
+                     : Graphs.shortestPath(_map, _from, _to, DIST)) {
+                _shortest += e.getLabel().weight();
+            }
+        }
+
+        @Override
+        void run() {
+            BoundedPath<Location, Road> p = _search.find(this);
+            count("excess.ppm",
+                  Math.round((p.weight() / _shortest - 1) * 1e6));
+            count("bound.ppm", Math.round((p.bound() - 1) * 1e6));
+            consume(p);
+        }
+
+        /** The search timed. */
+        private Search _search;
+        /** Weight of a shortest path between the ends of the query. */
+        private double _shortest;
+    }
+
+    /** Returns a benchmark totalling the lengths of the roads of the
+     *  largest generated road map with Graph.edgeStream, in parallel iff
+     *  PARALLEL. */
+    static Benchmark roadLength(final boolean parallel) {
+        return new MapBench("graph.Graph.edgeStream", "road",
+                            LOCATIONS[LOCATIONS.length - 1]) {
+            @Override
+            void run() {
+                Stream<Graph<Location, Road>.Edge> edges =
+                    _map.edgeStream();
+                if (parallel) {
+                    edges = edges.parallel();
+                }
+                consume(edges.mapToDouble(e -> e.getLabel().weight()).sum());
+            }
+        }.param("parallel", parallel);
+    }
+
+    /** Bucket widths timed for delta-stepping, where 0 stands for the
+     *  sequential Dijkstra's algorithm.  Roads in generated maps average
+     *  a little under 2 units long. */
+    static final double[] DELTAS = { 0, 0.5, 2, 8 };
+
+    /** Returns a benchmark of Graphs.distances from a corner of the
+     *  largest generated road map, using delta-stepping with bucket width
+     *  DELTA on the common pool, or Dijkstra's algorithm if DELTA is 0. */
+    static Benchmark distances(final double delta) {
+        return new MapBench("graph.Graphs.distances", "road",
+                            LOCATIONS[LOCATIONS.length - 1]) {
+            @Override
+            void run() {
+                if (delta == 0) {
+                    consume(Graphs.distances(_map, _from, EWEIGHTER));
+                } else {
+                    consume(Graphs.distances(_map, _from, EWEIGHTER, delta,
+                                             null));
+                }
+            }
+        }.param("delta", delta);
+    }
+
+    /** Returns a benchmark building the histogram of the out-degrees of
+     *  the locations of the largest generated road map with
+     *  Graph.vertexStream, in parallel iff PARALLEL. */
+    static Benchmark degrees(final boolean parallel) {
+        return new MapBench("graph.Graph.vertexStream", "road",
+                            LOCATIONS[LOCATIONS.length - 1]) {
+            @Override
+            void run() {
+                Stream<Graph<Location, Road>.Vertex> vertices =
+                    _map.vertexStream();
+                if (parallel) {
+                    vertices = vertices.parallel();
+                }
+                consume(vertices.collect(Collectors.groupingBy(
+                    v -> _map.outDegree(v), Collectors.counting())));
+            }
+        }.param("parallel", parallel);
+    }
+
+    /** Returns a benchmark of loading a generated map of kind KIND with
+     *  N locations. */
+    static Benchmark load(String kind, int n) {
+        return new MapBench("trip.Main.buildDB", kind, n) {
+            @Override
+            void run() throws Exception {
+                consume(loadMap(_file));
+            }
+        };
+    }
+
+    /** Returns a benchmark of Graphs.shortestPath across a generated map
+     *  of kind KIND with N locations. */
+    static Benchmark shortestPath(String kind, int n) {
+        return new MapBench("graph.Graphs.shortestPath", kind, n) {
+            @Override
+            void run() {
+                consume(Graphs.shortestPath(_map, _from, _to, DIST));
+            }
+        };
+    }
+
+    /** Returns a benchmark of Graphs.bucketShortestPath across a
+     *  generated map of kind KIND with N locations. */
+    static Benchmark bucketShortestPath(String kind, int n) {
+        return new MapBench("graph.Graphs.bucketShortestPath", kind, n) {
+            @Override
+            void run() {
+                consume(Graphs.bucketShortestPath(_map, _from, _to, DIST));
+            }
+        };
+    }
+
+    /** Returns a benchmark of HubLabels.dist between the far corners of
+     *  a generated map of kind KIND with N locations, whose labels are
+     *  built and written by setUp. */
+    static Benchmark hubDist(String kind, int n) {
+        return new MapBench("graph.HubLabels.dist", kind, n) {
+            @Override
+            void setUp() throws Exception {
+                super.setUp();
+                _labelFile = File.createTempFile("tripbench", ".hub");
+                _labels = HubLabels.write(_labelFile, _map, EWEIGHTER);
+                _v0 = _map.id(_from);
+                _v1 = _map.id(_to);
+            }
+
+            @Override
+            void run() {
+                consume(_labels.dist(_v0, _v1));
+            }
+
+            @Override
+            void tearDown() {
+                super.tearDown();
+                try {
+                    _labels.close();
+                } catch (IOException e) {
+                    /* Ignore failure to close a temporary file. */
+                }
+                _labelFile.delete();
+            }
+
+            /** The file holding the labels. */
+            private File _labelFile;
+            /** The labels. */
+            private HubLabels _labels;
+            /** Ends of the query, as vertex numbers. */
+            private int _v0, _v1;
+        };
+    }
+
+    /** Numbers of threads timed for Graphs.parallelShortestPath. */
+    static final int[] THREADS = { 1, 2, 4 };
+
+    /** Returns a benchmark of Graphs.parallelShortestPath with THREADS
+     *  threads across a generated map of kind KIND with N locations. */
+    static Benchmark parallelShortestPath(String kind, int n,
+                                          final int threads) {
+        return new MapBench("graph.Graphs.parallelShortestPath", kind, n) {
+            @Override
+            void run() {
+                consume(Graphs.parallelShortestPath(_map, _from, _to, DIST,
+                                                    threads));
+            }
+        }.param("threads", threads);
+    }
+
+    /** Returns a benchmark of the IntGraph Graphs.shortestPath across a
+     *  generated map of kind KIND with N locations, copied to a
+     *  MappedGraph.  The loaded map (including trip.Main's references to
+     *  it) is dropped once copied, so only the mapped copy remains. */
+    static Benchmark mappedShortestPath(String kind, int n) {
+        return new MapBench("graph.Graphs.shortestPathMapped", kind, n) {
+            @Override
+            void setUp() throws Exception {
+                super.setUp();
+                _mapped = File.createTempFile("tripbench", ".graph");
+                _graph = MappedGraph.write(_mapped, _map, EWEIGHTER,
+                                           l -> l.getX(), l -> l.getY());
+                _v0 = _map.id(_from);
+                _v1 = _map.id(_to);
+                _map = null;
+                _from = _to = null;
+                forgetMap();
+            }
+
+            @Override
+            void run() {
+                consume(Graphs.shortestPath(_graph, _v0, _v1,
+                                            v -> _graph.dist(v, _v1)));
+            }
+
+            @Override
+            void tearDown() {
+                super.tearDown();
+                try {
+                    _graph.close();
+                } catch (IOException e) {
+                    /* Ignore failure to close a temporary file. */
+                }
+                _mapped.delete();
+            }
+
+            /** The file holding the mapped copy. */
+            private File _mapped;
+            /** The mapped copy. */
+            private MappedGraph _graph;
+            /** Ends of the query, as vertex numbers. */
+            private int _v0, _v1;
+        };
+    }
+
+    /** Returns the file holding map NAME. */
+    static String mapFile(String name) {
+        File f = new File(MAPDIR, name);
+        if (!f.exists()) {
+            f = new File(new File("..", MAPDIR), name);
+        }
+        return f.getPath();
+    }
+
+    /** Load FILENAME with trip.Main.buildDB and return the resulting
+     *  graph.  Sets VERTICES, if not null, to the map from location names
+     *  to vertices. */
+    @SuppressWarnings("unchecked")
+    static Graph<Location, Road>
+    loadMap(String fileName,
+            HashMap<String, Graph<Location, Road>.Vertex> vertices)
+        throws Exception {
+        Method buildDB = trip.Main.class.getDeclaredMethod("buildDB",
+                                                           String.class);
+        buildDB.setAccessible(true);
+        buildDB.invoke(null, fileName);
+        Field map = trip.Main.class.getDeclaredField("map");
+        map.setAccessible(true);
+        if (vertices != null) {
+            Field v = trip.Main.class.getDeclaredField("vertices");
+            v.setAccessible(true);
+            vertices.putAll((HashMap<String, Graph<Location, Road>.Vertex>)
+                            v.get(null));
+        }
+        return (Graph<Location, Road>) map.get(null);
+    }
+
+    /** Clear the references trip.Main keeps to the last map it loaded. */
+    static void forgetMap() throws Exception {
+        for (String name : new String[] { "map", "vertices", "locations" }) {
+            Field f = trip.Main.class.getDeclaredField(name);
+            f.setAccessible(true);
+            f.set(null, null);
+        }
+    }
+
+    /** Load FILENAME with trip.Main.buildDB and return the resulting
+     *  graph. */
+    static Graph<Location, Road> loadMap(String fileName) throws Exception {
+        return loadMap(fileName, null);
+    }
+
+    /** Returns the names of the first and last locations in FILENAME. */
+    static String[] endpoints(String fileName) throws IOException {
+        String[] result = new String[2];
+        Scanner in = new Scanner(new FileReader(fileName));
+        while (in.hasNextLine()) {
+            String[] words = in.nextLine().trim().split("\\s+");
+            if (words[0].equals("L")) {
+                if (result[0] == null) {
+                    result[0] = words[1];
+                }
+                result[1] = words[1];
+            }
+        }
+        in.close();
+        return result;
+    }
+
+    /** A benchmark of an operation on one map, loaded by setUp. */
+    abstract static class MapBench extends Benchmark {
+        /** Benchmark NAME on map MAP in trip-tests. */
+        MapBench(String name, String map) {
+            super(name);
+            _name = map;
+            _kind = null;
+            _size = 0;
+            param("map", map);
+        }
+
+        /** Benchmark NAME on a map of kind KIND with N locations, generated
+         *  by setUp. */
+        MapBench(String name, String kind, int n) {
+            super(name);
+            _name = null;
+            _kind = kind;
+            _size = n;
+            param("kind", kind);
+            param("locations", n);
+        }
+
+        @Override
+        void setUp() throws Exception {
+            String[] ends;
+            if (_kind == null) {
+                _file = mapFile(_name);
+                ends = endpoints(_file);
+            } else {
+                File f = File.createTempFile("tripbench", "");
+                _file = f.getPath();
+                ends = MapGen.write(_kind, _size, SEED, f);
+            }
+            HashMap<String, Graph<Location, Road>.Vertex> vertices =
+                new HashMap<String, Graph<Location, Road>.Vertex>();
+            _map = loadMap(_file, vertices);
+            _from = vertices.get(ends[0]);
+            _to = vertices.get(ends[1]);
+        }
+
+        @Override
+        void tearDown() {
+            if (_kind != null) {
+                new File(_file).delete();
+            }
+        }
+
+        /** Name of the test map, or null if the map is generated. */
+        private final String _name;
+        /** Kind of generated map, or null for a test map. */
+        private final String _kind;
+        /** Number of locations in a generated map. */
+        private final int _size;
+        /** The file holding the map. */
+        protected String _file;
+        /** The map. */
+        protected Graph<Location, Road> _map;
+        /** Ends of the query. */
+        protected Graph<Location, Road>.Vertex _from, _to;
+    }
+
+    /** Straight-line distance between locations. */
+    static final Distancer<Location> DIST = new Distancer<Location>() {
+        @Override
+        public double dist(Location l0, Location l1) {
+            return Math.hypot(l0.getX() - l1.getX(), l0.getY() - l1.getY());
+        }
+    };
+
+    /** Reads and sets the weights of locations. */
+    static final Weighter<Location> VWEIGHTER = new Weighter<Location>() {
+        @Override
+        public double weight(Location x) {
+            return x.weight();
+        }
+
+        @Override
+        public void setWeight(Location x, double v) {
+            x.setWeight(v);
+        }
+    };
+
+    /** Reads the lengths of roads. */
+    static final Weighting<Road> EWEIGHTER = new Weighting<Road>() {
+        @Override
+        public double weight(Road x) {
+            return x.weight();
+        }
+    };
+
+}
@@ -0,0 +1,272 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/** A search for a short path by anytime repairing A* (ARA*, Likhachev,
+ *  Gordon and Thrun).  Each round is a weighted A* search, which orders
+ *  its open list by g + EPSILON * h for some EPSILON >= 1 and so finds a
+ *  path at most EPSILON times as long as a shortest one, usually after
+ *  expanding far fewer vertices than A*.  A vertex whose distance from
+ *  the start improves after it has been expanded in a round is set aside
+ *  as "inconsistent" rather than expanded again.  Each later round lowers
+ *  EPSILON, and starts from the open and inconsistent vertices of the one
+ *  before, keeping the distances found so far, so that it repeats little
+ *  of the earlier work.  The rounds stop when the path is proven
+ *  shortest or when a deadline passes.
+ *  @author Brian Su
+ */
+class AnytimeAStar<VLabel, ELabel> {
+
+    /** Amount by which each round lowers epsilon. */
+    static final double STEP = 0.5;
+
+    /** Number of vertices expanded between looks at the clock. */
+    static final int CLOCK_PERIOD = 64;
+
+    /** A search for a path from V0 to V1 in G, with weights of edges given
+     *  by EWEIGHTER and estimates of the distance to V1 given by H.  The
+     *  search sets the weight of each vertex reached with VWEIGHTER, and
+     *  reports its steps to LISTENER, unless it is null, as the 7-argument
+     *  Graphs.shortestPath does. */
+    @SuppressWarnings("unchecked")
+    AnytimeAStar(Graph<VLabel, ELabel> G, Graph<VLabel, ELabel>.Vertex V0,
+                 Graph<VLabel, ELabel>.Vertex V1,
+                 Distancer<? super VLabel> h,
+                 Weighter<? super VLabel> vweighter,
+                 Weighting<? super ELabel> eweighter,
+                 TraversalListener listener) {
+        _G = G;
+        _V0 = V0;
+        _V1 = V1;
+        _h = h;
+        _vweighter = vweighter;
+        _eweighter = eweighter;
+        _listener = listener;
+        int n = G.vertexSize();
+        _gScores = new double[n];
+        _hScores = new double[n];
+        _fScores = new double[n];
+        _parent = (Graph<VLabel, ELabel>.Edge[]) new Graph.Edge[n];
+        _open = new long[(n + 63) >>> 6];
+        _closed = new long[_open.length];
+        _incons = new long[_open.length];
+    }
+
+    /** Returns the best path from my start to my goal found by rounds of
+     *  search beginning with EPSILON, stopping after the first round
+     *  unless ANYTIME, and otherwise when the path is proven shortest or
+     *  at time DEADLINE (as given by System.nanoTime), whichever comes
+     *  first.  The first round always runs until it finds a path, or
+     *  finds there is none. */
+    BoundedPath<VLabel, ELabel> search(double epsilon, boolean anytime,
+                                       long deadline) {
+        if (!(epsilon >= 1)) {
+            throw new IllegalArgumentException("epsilon must be at least 1");
+        }
+        long start = _listener == null ? 0 : System.nanoTime();
+        for (Graph<VLabel, ELabel>.Vertex v : _G.vertices()) {
+            if (v != _V0) {
+                _vweighter.setWeight(v.getLabel(), Double.POSITIVE_INFINITY);
+            }
+        }
+        Arrays.fill(_gScores, Double.POSITIVE_INFINITY);
+        int v0 = _G.id(_V0);
+        _goal = _G.id(_V1);
+        _gScores[v0] = 0;
+        _hScores[v0] = _h.dist(_V0.getLabel(), _V1.getLabel());
+        _vweighter.setWeight(_V0.getLabel(), _hScores[v0]);
+        _fScores[v0] = epsilon * _hScores[v0];
+        _openSet.add(v0, _fScores[v0]);
+        Graphs.set(_open, v0);
+        if (_listener != null) {
+            start = Graphs.phase(_listener, "init", start);
+            _listener.pushed();
+            _listener.heapOperation();
+        }
+
+        boolean finished = improve(epsilon, Long.MAX_VALUE, false);
+        double lower = lowerBound(epsilon);
+        while (anytime && finished && _gScores[_goal] > lower) {
+            epsilon = Math.max(1, Math.min(epsilon, _gScores[_goal] / lower)
+                               - STEP);
+            restart(epsilon);
+            finished = improve(epsilon, deadline, true);
+            if (finished) {
+                lower = Math.max(lower, lowerBound(epsilon));
+            }
+        }
+        if (_listener != null) {
+            start = Graphs.phase(_listener, "search", start);
+        }
+
+        List<Graph<VLabel, ELabel>.Edge> path =
+            new ArrayList<Graph<VLabel, ELabel>.Edge>();
+        if (_gScores[_goal] == Double.POSITIVE_INFINITY) {
+            return new BoundedPath<VLabel, ELabel>(
+                path, Double.POSITIVE_INFINITY, 1);
+        }
+        double weight = 0;
+        Graph<VLabel, ELabel>.Vertex curr = _V1;
+        Graph<VLabel, ELabel>.Edge e = _parent[_goal];
+        while (e != null) {
+            weight += _eweighter.weight(e.getLabel());
+            curr = e.getV(curr);
+            path.add(e);
+            e = _parent[_G.id(curr)];
+        }
+        Collections.reverse(path);
+        if (_listener != null) {
+            Graphs.phase(_listener, "path", start);
+        }
+        double best = _gScores[_goal];
+        double bound = best == lower ? 1 : Math.max(1, best / lower);
+        return new BoundedPath<VLabel, ELabel>(path, weight, bound);
+    }
+
+    /** Expand open vertices, least g + EPSILON * h first, until none could
+     *  lead to a shorter path to the goal than the one found.  If
+     *  TIMED, and a path to the goal has been found, give up at time
+     *  DEADLINE.  Returns true iff not given up. */
+    private boolean improve(double epsilon, long deadline, boolean timed) {
+        int expanded = 0;
+        while (!_openSet.isEmpty()
+               && _openSet.minKey() < _gScores[_goal]
+                                      + epsilon * _hScores[_goal]) {
+            double f = _openSet.minKey();
+            int c = _openSet.remove();
+            if (_listener != null) {
+                _listener.popped();
+                _listener.heapOperation();
+            }
+            if (!Graphs.get(_open, c) || f != _fScores[c]) {
+                continue;
+            }
+            Graphs.clear(_open, c);
+            Graphs.set(_closed, c);
+            if (_listener != null) {
+                _listener.settled();
+            }
+            expand(c, epsilon);
+            expanded += 1;
+            if (timed && expanded % CLOCK_PERIOD == 0
+                && System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Relax the edges leaving vertex C, putting the successors whose
+     *  distances improve into the open list, with priorities computed
+     *  with EPSILON, or among the inconsistent vertices if they have
+     *  been expanded in this round.  When EPSILON is 1, they are put back
+     *  into the open list instead, as in Graphs.shortestPath, so that the
+     *  round finds a shortest path even when H is not consistent. */
+    private void expand(int c, double epsilon) {
+        Graph<VLabel, ELabel>.Vertex curr = _G.vertex(c);
+        for (int k = 0; k < _G.outDegree(curr); k += 1) {
+            Graph<VLabel, ELabel>.Edge e = _G.outEdge(curr, k);
+            Graph<VLabel, ELabel>.Vertex succ = e.getV(curr);
+            int w = _G.id(succ);
+            if (_listener != null) {
+                _listener.examined();
+            }
+            double tG = _gScores[c] + _eweighter.weight(e.getLabel());
+            if (!(tG < _gScores[w])) {
+                continue;
+            }
+            if (_gScores[w] == Double.POSITIVE_INFINITY) {
+                _hScores[w] = _h.dist(succ.getLabel(), _V1.getLabel());
+            }
+            _gScores[w] = tG;
+            _parent[w] = e;
+            _vweighter.setWeight(succ.getLabel(), tG + _hScores[w]);
+            if (_listener != null) {
+                _listener.relaxed();
+            }
+            if (Graphs.get(_closed, w) && epsilon > 1) {
+                Graphs.set(_incons, w);
+            } else {
+                _fScores[w] = tG + epsilon * _hScores[w];
+                _openSet.add(w, _fScores[w]);
+                Graphs.set(_open, w);
+                if (_listener != null) {
+                    _listener.pushed();
+                    _listener.heapOperation();
+                }
+            }
+        }
+    }
+
+    /** Start a round with EPSILON: reopen the inconsistent vertices,
+     *  recompute the priorities of all open vertices, and forget which
+     *  vertices have been expanded. */
+    private void restart(double epsilon) {
+        _openSet = new Graphs.IntHeap();
+        for (int i = 0; i < _open.length; i += 1) {
+            long bits = _open[i] | _incons[i];
+            _open[i] = bits;
+            while (bits != 0) {
+                int v = (i << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                _fScores[v] = _gScores[v] + epsilon * _hScores[v];
+                _openSet.add(v, _fScores[v]);
+                if (_listener != null) {
+                    _listener.pushed();
+                    _listener.heapOperation();
+                }
+            }
+        }
+        Arrays.fill(_incons, 0);
+        Arrays.fill(_closed, 0);
+    }
+
+    /** Returns a lower bound on the weight of a shortest path to the goal,
+     *  at the end of a round with EPSILON: the least g + h over the open
+     *  and inconsistent vertices, but at least the weight of the path
+     *  found divided by EPSILON, and at most that weight. */
+    private double lowerBound(double epsilon) {
+        double best = _gScores[_goal];
+        if (best == Double.POSITIVE_INFINITY) {
+            return best;
+        }
+        double least = best;
+        for (int i = 0; i < _open.length; i += 1) {
+            long bits = _open[i] | _incons[i];
+            while (bits != 0) {
+                int v = (i << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                least = Math.min(least, _gScores[v] + _hScores[v]);
+            }
+        }
+        return Math.max(least, best / epsilon);
+    }
+
+    /** The graph searched. */
+    private final Graph<VLabel, ELabel> _G;
+    /** The start and goal. */
+    private final Graph<VLabel, ELabel>.Vertex _V0, _V1;
+    /** Estimates of the distance to the goal. */
+    private final Distancer<? super VLabel> _h;
+    /** Sets the weights of vertices. */
+    private final Weighter<? super VLabel> _vweighter;
+    /** Weights of edges. */
+    private final Weighting<? super ELabel> _eweighter;
+    /** Told of the steps of the search, if not null. */
+    private final TraversalListener _listener;
+    /** The number of the goal. */
+    private int _goal;
+    /** The best known distance from the start to each vertex, its
+     *  estimated distance to the goal, and its priority in the open list,
+     *  indexed by id. */
+    private final double[] _gScores, _hScores, _fScores;
+    /** The last edge of the best known path to each vertex. */
+    private final Graph<VLabel, ELabel>.Edge[] _parent;
+    /** The open, expanded, and inconsistent vertices, as bitsets. */
+    private final long[] _open, _closed, _incons;
+    /** The open list, which may also hold stale entries. */
+    private Graphs.IntHeap _openSet = new Graphs.IntHeap();
+}
@@ -0,0 +1,51 @@
+package graph;
+
+import java.util.List;
+
+/** A path found by a search that may settle for one that is not the
+ *  shortest, together with a proven bound on how much longer it can be.
+ *  @author Brian Su
+ */
+public final class BoundedPath<VLabel, ELabel> {
+
+    /** A path PATH of total weight WEIGHT, which is at most BOUND times the
+     *  weight of a shortest path between its ends. */
+    BoundedPath(List<Graph<VLabel, ELabel>.Edge> path, double weight,
+                double bound) {
+        _path = path;
+        _weight = weight;
+        _bound = bound;
+    }
+
+    /** Returns the edges of my path, in order, or an empty list if there
+     *  is no path between the ends searched. */
+    public List<Graph<VLabel, ELabel>.Edge> path() {
+        return _path;
+    }
+
+    /** Returns the total weight of my path, or Double.POSITIVE_INFINITY if
+     *  there is none. */
+    public double weight() {
+        return _weight;
+    }
+
+    /** Returns a number, at least 1, such that the weight of my path is at
+     *  most that times the weight of a shortest path.  A bound of 1 means
+     *  my path is a shortest one, as it does when there is no path. */
+    public double bound() {
+        return _bound;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (weight %g, within %g of shortest)",
+                             _path, _weight, _bound);
+    }
+
+    /** The path. */
+    private final List<Graph<VLabel, ELabel>.Edge> _path;
+    /** Its weight. */
+    private final double _weight;
+    /** The bound on its weight relative to a shortest path. */
+    private final double _bound;
+}
@@ -0,0 +1,64 @@
+package graph;
+
+/** A limit on how long a search or traversal may go on: a time, as given
+ *  by System.nanoTime, after which it should give up, and a flag that
+ *  any thread may set with cancel to make it give up at once.  Searches
+ *  look at their Deadline once every PERIOD vertices they take from their
+ *  open sets or fringes, so one that gives up may overrun its time by the
+ *  cost of that many steps, and one Deadline may be shared by several
+ *  searches (the legs of one trip, say) to bound them all together.
+ *  @author Brian Su
+ */
+public final class Deadline {
+
+    /** Number of vertices a search takes from its open set between looks
+     *  at its Deadline.  A power of 2. */
+    public static final int PERIOD = 64;
+
+    /** A Deadline with no time limit, which ends a search only if
+     *  cancelled. */
+    public Deadline() {
+        this(false, 0);
+    }
+
+    /** A Deadline that passes at time AT, as given by System.nanoTime,
+     *  iff TIMED. */
+    private Deadline(boolean timed, long at) {
+        _timed = timed;
+        _at = at;
+    }
+
+    /** Returns a Deadline that passes NANOS nanoseconds from now. */
+    public static Deadline after(long nanos) {
+        return new Deadline(true, System.nanoTime() + nanos);
+    }
+
+    /** Make searches using me give up at their next look.  May be called
+     *  from any thread. */
+    public void cancel() {
+        _cancelled = true;
+    }
+
+    /** Returns true iff cancel has been called on me. */
+    public boolean isCancelled() {
+        return _cancelled;
+    }
+
+    /** Returns true iff a search using me should give up: I have been
+     *  cancelled or my time has passed. */
+    public boolean expired() {
+        return _cancelled || (_timed && System.nanoTime() - _at >= 0);
+    }
+
+    /** Returns the status of a search that gave up because I expired. */
+    SearchStatus reason() {
+        return _cancelled ? SearchStatus.CANCELLED : SearchStatus.TIMED_OUT;
+    }
+
+    /** True iff I have a time limit. */
+    private final boolean _timed;
+    /** My time limit, as given by System.nanoTime, if _timed. */
+    private final long _at;
+    /** True once I have been cancelled. */
+    private volatile boolean _cancelled;
+}
@@ -0,0 +1,297 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** The distances from one vertex of a graph to all others, computed by
+ *  delta-stepping (Meyer and Sanders).  Tentative distances are kept in
+ *  buckets of width DELTA.  The vertices of the lowest nonempty bucket
+ *  are settled together: the "light" edges (of weight at most DELTA)
+ *  leaving them are relaxed in parallel, repeatedly, until the bucket
+ *  stays empty, and then their "heavy" edges are relaxed in parallel
+ *  once.  Distances are updated with compare-and-set, so relaxations of
+ *  edges entering the same vertex may proceed at once.  A small DELTA
+ *  makes the method Dijkstra's algorithm with little parallelism; a
+ *  large one makes it Bellman-Ford, with much wasted work.  The average
+ *  weight of an edge is a reasonable start.
+ *  @author Brian Su
+ */
+class DeltaStepping<VLabel, ELabel> {
+
+    /** Number of vertices below which a relaxation is done in the
+     *  calling thread rather than split among the pool's threads. */
+    static final int SPLIT = 256;
+
+    /** A computation of the distances from V0 in G, according to
+     *  EWEIGHTER, which must be safe to call from several threads at
+     *  once.  It uses buckets of width DELTA and the threads of POOL. */
+    DeltaStepping(Graph<VLabel, ELabel> G, Graph<VLabel, ELabel>.Vertex V0,
+                  Weighting<? super ELabel> eweighter, double delta,
+                  ForkJoinPool pool) {
+        if (!(delta > 0) || Double.isInfinite(delta)) {
+            throw new IllegalArgumentException("bad delta: " + delta);
+        }
+        _G = G;
+        _source = G.id(V0);
+        _eweighter = eweighter;
+        _delta = delta;
+        _pool = pool;
+        int n = G.vertexSize();
+        _dist = new AtomicLongArray(n);
+        _done = new double[n];
+        _heavy = new long[n];
+    }
+
+    /** Returns the distance from my source to each vertex v, indexed by
+     *  the graph's id(v).  The distance to an unreachable vertex is
+     *  Double.POSITIVE_INFINITY. */
+    double[] distances() {
+        int n = _G.vertexSize();
+        for (int v = 0; v < n; v += 1) {
+            _dist.set(v, INFINITY);
+        }
+        Arrays.fill(_done, Double.NaN);
+        Arrays.fill(_heavy, -1);
+        _dist.set(_source, Double.doubleToLongBits(0.0));
+        insert(new int[] { _source }, 1);
+
+        IntList settled = new IntList();
+        while (!_buckets.isEmpty()) {
+            Map.Entry<Long, IntList> first = _buckets.pollFirstEntry();
+            long b = first.getKey();
+            settled.clear();
+            IntList frontier = first.getValue();
+            while (frontier != null) {
+                frontier = frontier.select(this, b);
+                for (int i = 0; i < frontier.size(); i += 1) {
+                    int v = frontier.get(i);
+                    if (_heavy[v] != b) {
+                        _heavy[v] = b;
+                        settled.add(v);
+                    }
+                }
+                relax(frontier, true);
+                frontier = _buckets.remove(b);
+            }
+            relax(settled, false);
+        }
+
+        double[] result = new double[n];
+        for (int v = 0; v < n; v += 1) {
+            result[v] = dist(v);
+        }
+        return result;
+    }
+
+    /** Returns the tentative distance to vertex V. */
+    double dist(int v) {
+        return Double.longBitsToDouble(_dist.get(v));
+    }
+
+    /** Returns the bucket holding tentative distance D. */
+    long bucket(double d) {
+        return (long) (d / _delta);
+    }
+
+    /** Relax the light edges (if LIGHT) or the heavy edges leaving the
+     *  vertices in VERTICES, and put each vertex whose distance falls
+     *  into its bucket. */
+    private void relax(IntList vertices, boolean light) {
+        if (vertices.size() == 0) {
+            return;
+        }
+        ConcurrentLinkedQueue<IntList> improved =
+            new ConcurrentLinkedQueue<IntList>();
+        Relaxation r = new Relaxation(vertices, 0, vertices.size(),
+                                      light, improved);
+        if (vertices.size() < SPLIT) {
+            r.compute();
+        } else {
+            _pool.invoke(r);
+        }
+        for (IntList list : improved) {
+            insert(list.items(), list.size());
+        }
+    }
+
+    /** Put each of the first N vertices of VERTICES into the bucket for
+     *  its current tentative distance. */
+    private void insert(int[] vertices, int n) {
+        for (int i = 0; i < n; i += 1) {
+            int v = vertices[i];
+            long b = bucket(dist(v));
+            IntList bucket = _buckets.get(b);
+            if (bucket == null) {
+                bucket = new IntList();
+                _buckets.put(b, bucket);
+            }
+            bucket.add(v);
+        }
+    }
+
+    /** Lower the tentative distance of vertex V to D, if it is greater.
+     *  Returns true iff it was lowered.  Non-negative doubles compare as
+     *  their bit patterns do, so the distances may be kept as longs. */
+    private boolean lower(int v, double d) {
+        long bits = Double.doubleToLongBits(d);
+        while (true) {
+            long old = _dist.get(v);
+            if (old <= bits) {
+                return false;
+            }
+            if (_dist.compareAndSet(v, old, bits)) {
+                return true;
+            }
+        }
+    }
+
+    /** Relaxes the edges leaving a range of vertices, splitting the range
+     *  among the pool's threads. */
+    private class Relaxation extends RecursiveAction {
+
+        /** Relax the light edges (if LIGHT) or the heavy edges leaving
+         *  VERTICES[LO .. HI-1], adding lists of the vertices whose
+         *  distances are lowered to IMPROVED. */
+        Relaxation(IntList vertices, int lo, int hi, boolean light,
+                   ConcurrentLinkedQueue<IntList> improved) {
+            _vertices = vertices;
+            _lo = lo;
+            _hi = hi;
+            _light = light;
+            _improved = improved;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo > SPLIT) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Relaxation(_vertices, _lo, mid, _light,
+                                         _improved),
+                          new Relaxation(_vertices, mid, _hi, _light,
+                                         _improved));
+                return;
+            }
+            IntList lowered = new IntList();
+            for (int i = _lo; i < _hi; i += 1) {
+                int u = _vertices.get(i);
+                double d = dist(u);
+                Graph<VLabel, ELabel>.Vertex curr = _G.vertex(u);
+                for (int k = 0; k < _G.outDegree(curr); k += 1) {
+                    Graph<VLabel, ELabel>.Edge e = _G.outEdge(curr, k);
+                    double w = _eweighter.weight(e.getLabel());
+                    if (!(w >= 0)) {
+                        throw new IllegalArgumentException(
+                            "negative edge weight: " + w);
+                    }
+                    if ((w <= _delta) == _light) {
+                        int v = _G.id(e.getV(curr));
+                        if (lower(v, d + w)) {
+                            lowered.add(v);
+                        }
+                    }
+                }
+            }
+            if (lowered.size() > 0) {
+                _improved.add(lowered);
+            }
+        }
+
+        /** The vertices whose edges I relax. */
+        private final IntList _vertices;
+        /** The range of _VERTICES I relax. */
+        private final int _lo, _hi;
+        /** True iff I relax light edges. */
+        private final boolean _light;
+        /** Where I put the vertices whose distances I lower. */
+        private final ConcurrentLinkedQueue<IntList> _improved;
+    }
+
+    /** A growable list of ints. */
+    private static class IntList {
+
+        /** Returns the number of items in me. */
+        int size() {
+            return _size;
+        }
+
+        /** Returns my Kth item. */
+        int get(int k) {
+            return _items[k];
+        }
+
+        /** Returns an array whose first size() elements are my items. */
+        int[] items() {
+            return _items;
+        }
+
+        /** Add V to my end. */
+        void add(int v) {
+            if (_size == _items.length) {
+                _items = Arrays.copyOf(_items, 2 * _size);
+            }
+            _items[_size] = v;
+            _size += 1;
+        }
+
+        /** Remove all my items. */
+        void clear() {
+            _size = 0;
+        }
+
+        /** Remove from me the vertices whose light edges need not be
+         *  relaxed as members of bucket B of S: those whose distances
+         *  have since moved to another bucket, and those whose light
+         *  edges have already been relaxed from their current distances.
+         *  Returns me. */
+        IntList select(DeltaStepping<?, ?> s, long b) {
+            int n = 0;
+            for (int i = 0; i < _size; i += 1) {
+                int v = _items[i];
+                double d = s.dist(v);
+                if (s.bucket(d) == b && s._done[v] != d) {
+                    s._done[v] = d;
+                    _items[n] = v;
+                    n += 1;
+                }
+            }
+            _size = n;
+            return this;
+        }
+
+        /** My items. */
+        private int[] _items = new int[16];
+        /** Number of items. */
+        private int _size;
+    }
+
+    /** The bits of Double.POSITIVE_INFINITY. */
+    private static final long INFINITY =
+        Double.doubleToLongBits(Double.POSITIVE_INFINITY);
+
+    /** The graph searched. */
+    private final Graph<VLabel, ELabel> _G;
+    /** The id of the source vertex. */
+    private final int _source;
+    /** Weights of edges. */
+    private final Weighting<? super ELabel> _eweighter;
+    /** Width of a bucket. */
+    private final double _delta;
+    /** Pool running relaxations. */
+    private final ForkJoinPool _pool;
+    /** Tentative distances, as the bits of doubles, indexed by id. */
+    private final AtomicLongArray _dist;
+    /** The distance from which the light edges of each vertex were last
+     *  relaxed, or NaN if they have not been. */
+    private final double[] _done;
+    /** The bucket in which each vertex was last settled, or -1. */
+    private final long[] _heavy;
+    /** The nonempty buckets, by number.  Only the calling thread touches
+     *  them. */
+    private final TreeMap<Long, IntList> _buckets =
+        new TreeMap<Long, IntList>();
+}
@@ -3,13 +3,17 @@ package graph;
 import java.util.Comparator;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Collections;
-
-/* Do not add or remove public or protected members, or modify the signatures of
- * any public methods.  You may make changes that don't affect the API as seen
- * from outside the graph package:
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/* Do not remove public or protected members, or modify the signatures of
+ * any public methods.  You may add public members that extend the API
+ * without changing the behavior of existing ones (as outEdge, forEachOutEdge,
+ * vertexStream, id and vertex do), and make changes that don't affect the API
+ * as seen from outside the graph package:
  *   + You may make methods in Graph abstract, if you want different
  *     implementations in DirectedGraph and UndirectedGraph.
  *   + You may add bodies to abstract methods, modify existing bodies,
@@ -30,7 +34,13 @@ import java.util.Collections;
  *  vertex, and the neighbors of a vertex are all accessible by
  *  iterators.  Changing the graph's structure by adding or deleting
  *  edges or vertices invalidates these iterators (subsequent use of
- *  them is undefined.)
+ *  them is undefined.)  The outgoing and incoming edges, successors and
+ *  predecessors of a vertex may also be reached by index (outEdge,
+ *  successor, etc., with outDegree and inDegree as bounds) or by the
+ *  forEach methods, neither of which creates an iterator.  For bulk
+ *  operations, vertexStream and edgeStream give streams whose
+ *  spliterators know their sizes and split evenly, so they may usefully
+ *  be made parallel.
  *  @author Brian Su
  */
 public abstract class Graph<VLabel, ELabel> {
@@ -41,6 +51,8 @@ public abstract class Graph<VLabel, ELabel> {
         /** A new vertex with LABEL as the value of getLabel(). */
         Vertex(VLabel label) {
             _label = label;
+            _out = new ArrayList<Edge>();
+            _in = isDirected() ? new ArrayList<Edge>() : _out;
         }
 
         /** Returns the label on this vertex. */
@@ -56,6 +68,17 @@ public abstract class Graph<VLabel, ELabel> {
         /** The label on this vertex. */
         private final VLabel _label;
 
+        /** My position in _vertexList, or -1 once I am removed. */
+        private int _id;
+
+        /** Edges leaving this vertex (for an undirected graph, all edges
+         *  incident on it, with a self edge appearing twice), in the order
+         *  they were added. */
+        private ArrayList<Edge> _out;
+        /** Edges entering this vertex, in the order they were added.  For
+         *  an undirected graph, this is the same list as _out. */
+        private ArrayList<Edge> _in;
+
     }
 
     /** Represents one of my edges. */
@@ -116,12 +139,12 @@ public abstract class Graph<VLabel, ELabel> {
 
     /** Returns the number of vertices in me. */
     public int vertexSize() {
-        return _succ.size();
+        return _vertexList.size();
     }
 
     /** Returns the number of edges in me. */
     public int edgeSize() {
-        return (isDirected()) ? _edges.size() : _edges.size() / 2;
+        return _edges.size();
     }
 
     /** Returns true iff I am a directed graph. */
@@ -130,13 +153,13 @@ public abstract class Graph<VLabel, ELabel> {
     /** Returns the number of outgoing edges incident to V. Assumes V is one of
      *  my vertices.  */
     public int outDegree(Vertex v) {
-        return _succ.get(v).size();
+        return v._out.size();
     }
 
     /** Returns the number of incoming edges incident to V. Assumes V is one of
      *  my vertices. */
     public int inDegree(Vertex v) {
-        return _pred.get(v).size();
+        return v._in.size();
     }
 
     /** Returns outDegree(V). This is simply a synonym, intended for
@@ -147,18 +170,23 @@ public abstract class Graph<VLabel, ELabel> {
 
     /** Returns true iff there is an edge (U, V) in me with any label. */
     public boolean contains(Vertex u, Vertex v) {
-        if (!_succ.containsKey(u) || !_succ.containsKey(v)) {
+        if (!mine(u) || !mine(v)) {
             return false;
         }
-        return _succ.get(u).contains(v);
+        return getEdge(u, v) != null;
+    }
+
+    /** Returns true iff V is one of my vertices. */
+    private boolean mine(Vertex v) {
+        return v._id >= 0 && v._id < _vertexList.size()
+            && _vertexList.get(v._id) == v;
     }
 
     /** Returns true iff there is an edge (U, V) in me with label LABEL. */
     public boolean contains(Vertex u, Vertex v,
                             ELabel label) {
-        for (Edge e : _edges) {
-            if (e.getV0() == u && e.getV1() == v
-                    && e.getLabel().equals(label)) {
+        for (Edge e : u._out) {
+            if (e.getV(u) == v && e.getLabel().equals(label)) {
                 return true;
             }
         }
@@ -169,15 +197,15 @@ public abstract class Graph<VLabel, ELabel> {
      *  incident edges. */
     public Vertex add(VLabel label) {
         Vertex ver = new Vertex(label);
-        _succ.put(ver, new ArrayList<Vertex>());
-        _pred.put(ver, new ArrayList<Vertex>());
+        ver._id = _vertexList.size();
+        _vertexList.add(ver);
         return ver;
     }
 
     /** Returns the edge (U, V). Assumes the contains(u, v) is true. */
     Edge getEdge(Vertex u, Vertex v) {
-        for (Edge e : _edges) {
-            if (e.getV0() == u && e.getV1() == v) {
+        for (Edge e : u._out) {
+            if (e.getV(u) == v) {
                 return e;
             }
         }
@@ -186,27 +214,75 @@ public abstract class Graph<VLabel, ELabel> {
 
     /** Returns an edge incident on FROM and TO, labeled with LABEL
      *  and adds it to this graph. If I am directed, the edge is directed
-     *  (leaves FROM and enters TO). */
+     *  (leaves FROM and enters TO).  If I am undirected, the one edge is
+     *  among the outgoing and incoming edges of both FROM and TO. */
     public Edge add(Vertex from,
                     Vertex to,
                     ELabel label) {
 
         Edge edg = new Edge(from, to, label);
         _edges.add(edg);
-        _unDupEdges.add(edg);
-        if (!isDirected()) {
-            Edge edg2 = new Edge(to, from, label);
-            _edges.add(edg2);
-        }
+        from._out.add(edg);
+        to._in.add(edg);
+        return edg;
+    }
 
-        _succ.get(from).add(to);
-        _pred.get(to).add(from);
-        if (!isDirected()) {
-            _succ.get(to).add(from);
-            _pred.get(from).add(to);
+    /** Add the vertices in VERTICES, which must have been made for me and
+     *  not yet added, and then the N edges FROM[k]-TO[k] labeled
+     *  LABELS[k], as if by add(VLabel) and add(Vertex, Vertex, ELabel)
+     *  in order.  The edges at each vertex are counted first, so that
+     *  each list of edges is allocated once, at its final size.  If an
+     *  end of an edge is neither one of my vertices nor in VERTICES,
+     *  throws IllegalArgumentException and adds nothing. */
+    void addAll(List<Vertex> vertices, Vertex[] from, Vertex[] to,
+                ELabel[] labels, int n) {
+        int base = _vertexList.size();
+        for (int i = 0; i < vertices.size(); i += 1) {
+            vertices.get(i)._id = base + i;
         }
+        int[] outCount = new int[base + vertices.size()];
+        int[] inCount = new int[base + vertices.size()];
+        for (int k = 0; k < n; k += 1) {
+            if (!mine(from[k], vertices) || !mine(to[k], vertices)) {
+                for (Vertex v : vertices) {
+                    v._id = -1;
+                }
+                throw new IllegalArgumentException("vertex not in graph");
+            }
+            outCount[from[k]._id] += 1;
+            if (isDirected()) {
+                inCount[to[k]._id] += 1;
+            } else {
+                outCount[to[k]._id] += 1;
+            }
+        }
+        _vertexList.addAll(vertices);
+        for (int i = 0; i < _vertexList.size(); i += 1) {
+            Vertex v = _vertexList.get(i);
+            v._out = presized(v._out, outCount[i]);
+            v._in = isDirected() ? presized(v._in, inCount[i]) : v._out;
+        }
+        _edges.ensureCapacity(_edges.size() + n);
+        for (int k = 0; k < n; k += 1) {
+            add(from[k], to[k], labels[k]);
+        }
+    }
 
-        return edg;
+    /** Returns true iff V is one of my vertices or is ADDED[i] and has
+     *  the id it will have once ADDED is appended to my vertices. */
+    private boolean mine(Vertex v, List<Vertex> added) {
+        int i = v._id - _vertexList.size();
+        return mine(v) || i >= 0 && i < added.size() && added.get(i) == v;
+    }
+
+    /** Returns EDGES, or an empty list in its place if it is empty, with
+     *  room for exactly N more edges. */
+    private ArrayList<Edge> presized(ArrayList<Edge> edges, int n) {
+        if (edges.isEmpty()) {
+            return new ArrayList<Edge>(n);
+        }
+        edges.ensureCapacity(edges.size() + n);
+        return edges;
     }
 
     /** Returns an edge incident on FROM and TO with a null label
@@ -220,39 +296,36 @@ public abstract class Graph<VLabel, ELabel> {
     /** Remove V and all adjacent edges, if present. */
     public void remove(Vertex v) {
 
-        _succ.remove(v);
-        _pred.remove(v);
-        for (List<Vertex> succ : _succ.values()) {
-            while (succ.contains(v)) {
-                succ.remove(v);
+        for (Edge e : v._out) {
+            Vertex w = e.getV(v);
+            if (w != v) {
+                w._in.remove(e);
             }
         }
-        for (List<Vertex> pred : _pred.values()) {
-            while (pred.contains(v)) {
-                pred.remove(v);
+        if (v._in != v._out) {
+            for (Edge e : v._in) {
+                Vertex w = e.getV(v);
+                if (w != v) {
+                    w._out.remove(e);
+                }
             }
         }
-
-        Iterator<Edge> i = _edges.listIterator();
-        while (i.hasNext()) {
-            try {
-                Edge curr = i.next();
-                if (curr.getV(v) != null) {
-                    i.remove();
-                }
-            } catch (IllegalArgumentException err) {
-                continue;
+        v._out.clear();
+        v._in.clear();
+        if (mine(v)) {
+            Vertex last = _vertexList.remove(_vertexList.size() - 1);
+            if (last != v) {
+                _vertexList.set(v._id, last);
+                last._id = v._id;
             }
+            v._id = -1;
         }
-        i = _unDupEdges.listIterator();
+
+        Iterator<Edge> i = _edges.listIterator();
         while (i.hasNext()) {
-            try {
-                Edge curr = i.next();
-                if (curr.getV(v) != null) {
-                    i.remove();
-                }
-            } catch (IllegalArgumentException err) {
-                continue;
+            Edge curr = i.next();
+            if (curr.getV0() == v || curr.getV1() == v) {
+                i.remove();
             }
         }
     }
@@ -261,34 +334,27 @@ public abstract class Graph<VLabel, ELabel> {
     /** Remove E from me, if present.  E must be between my vertices,
      *  or the result is undefined.  */
     public void remove(Edge e) {
+        remove(e.getV0(), e.getV1());
+    }
 
-        _succ.get(e.getV0()).remove(e.getV1());
-        _pred.get(e.getV1()).remove(e.getV0());
-        if (!isDirected()) {
-            _succ.get(e.getV1()).remove(e.getV0());
-            _pred.get(e.getV0()).remove(e.getV1());
+    /** Remove the edges from V0 to V1 (between V0 and V1, if I am
+     *  undirected) from the per-vertex edge lists.  For an undirected
+     *  graph, V1's incoming edges are its outgoing edges, so this covers
+     *  both ends. */
+    private void dropEdges(Vertex v0, Vertex v1) {
+        Edge e = new Edge(v0, v1, null);
+        dropEdges(v0._out, e);
+        if (v1._in != v0._out) {
+            dropEdges(v1._in, e);
         }
+    }
 
-        Iterator<Edge> i = _edges.listIterator();
-        while (i.hasNext()) {
-            try {
-                Edge curr = i.next();
-                if (sameEdge(curr, e)) {
-                    i.remove();
-                }
-            } catch (IllegalArgumentException err) {
-                continue;
-            }
-        }
-        i = _unDupEdges.listIterator();
+    /** Remove from EDGES all edges that are the same as E. */
+    private void dropEdges(List<Edge> edges, Edge e) {
+        Iterator<Edge> i = edges.iterator();
         while (i.hasNext()) {
-            try {
-                Edge curr = i.next();
-                if (e.getV0() == curr.getV0() && e.getV1() == curr.getV1()) {
-                    i.remove();
-                }
-            } catch (IllegalArgumentException err) {
-                continue;
+            if (sameEdge(i.next(), e)) {
+                i.remove();
             }
         }
     }
@@ -303,58 +369,84 @@ public abstract class Graph<VLabel, ELabel> {
     /** Remove all edges from V1 to V2 from me, if present.  The result is
      *  undefined if V1 and V2 are not among my vertices.  */
     public void remove(Vertex v1, Vertex v2) {
-        while (_succ.get(v1).contains(v2)) {
-            _succ.get(v1).remove(v2);
-        }
-        while (_pred.get(v2).contains(v1)) {
-            _pred.get(v2).remove(v1);
-        }
-        if (!isDirected()) {
-            while (_pred.get(v1).contains(v2)) {
-                _pred.get(v1).remove(v2);
-            }
-            while (_succ.get(v2).contains(v1)) {
-                _succ.get(v2).remove(v1);
-            }
-        }
+        dropEdges(v1, v2);
 
-        Iterator<Edge> i = _edges.listIterator();
-        while (i.hasNext()) {
-            try {
-                Edge curr = i.next();
-                if (curr.getV(v1) == v2) {
-                    i.remove();
-                }
-            } catch (IllegalArgumentException err) {
-                continue;
-            }
-        }
-        i = _unDupEdges.listIterator();
-        while (i.hasNext()) {
-            try {
-                Edge curr = i.next();
-                if (curr.getV0() == v1 && curr.getV1() == v2) {
-                    i.remove();
-                }
-            } catch (IllegalArgumentException err) {
-                continue;
-            }
-        }
+        dropEdges(_edges, new Edge(v1, v2, null));
     }
 
     /** Returns an Iterator over all vertices in arbitrary order. */
     public Iteration<Vertex> vertices() {
-        return Iteration.iteration(_succ.keySet().iterator());
+        return Iteration.iteration(_vertexList.iterator());
+    }
+
+    /** Returns the number of V among my vertices: an integer in the range
+     *  0 .. vertexSize() - 1, different for each vertex.  Removing a vertex
+     *  may change the number of one other vertex. */
+    public int id(Vertex v) {
+        if (!mine(v)) {
+            throw new IllegalArgumentException("vertex not in graph");
+        }
+        return v._id;
+    }
+
+    /** Returns the vertex whose number is ID, for 0 <= ID < vertexSize(). */
+    public Vertex vertex(int id) {
+        return _vertexList.get(id);
+    }
+
+    /** Returns a sequential stream of all my vertices, in arbitrary
+     *  order.  Its spliterator is SIZED and SUBSIZED, so the stream splits
+     *  evenly when made parallel.  The graph must not change while the
+     *  stream is in use. */
+    public Stream<Vertex> vertexStream() {
+        return _vertexList.stream();
+    }
+
+    /** Returns a sequential stream of the edges delivered by edges(), with
+     *  the same splitting properties as vertexStream. */
+    public Stream<Edge> edgeStream() {
+        return _edges.stream();
     }
 
     /** Returns an iterator over all successors of V. */
     public Iteration<Vertex> successors(Vertex v) {
-        return Iteration.iteration(_succ.get(v).iterator());
+        return new Ends(v, v._out);
     }
 
     /** Returns an iterator over all predecessors of V. */
     public Iteration<Vertex> predecessors(Vertex v) {
-        return Iteration.iteration(_pred.get(v).iterator());
+        return new Ends(v, v._in);
+    }
+
+    /** An iteration over the other ends of a list of edges. */
+    private class Ends extends Iteration<Vertex> {
+        /** Iterates over getV(V) of each of EDGES, in order. */
+        Ends(Vertex v, List<Edge> edges) {
+            _v = v;
+            _ends = edges;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return _k < _ends.size();
+        }
+
+        @Override
+        public Vertex next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Edge e = _ends.get(_k);
+            _k += 1;
+            return e.getV(_v);
+        }
+
+        /** The vertex at the near end of each edge. */
+        private final Vertex _v;
+        /** The edges. */
+        private final List<Edge> _ends;
+        /** Index of the next edge. */
+        private int _k;
     }
 
     /** Returns successors(V).  This is a synonym typically used on
@@ -365,32 +457,81 @@ public abstract class Graph<VLabel, ELabel> {
 
     /** Returns an iterator over all edges in me. */
     public Iteration<Edge> edges() {
-        if (!isDirected()) {
-            return Iteration.iteration(_unDupEdges.iterator());
-        }
         return Iteration.iteration(_edges.iterator());
     }
 
-    /** Returns iterator over all outgoing edges from V. */
+    /** Returns iterator over all outgoing edges from V.  In an undirected
+     *  graph, each edge is one object delivered for both of its ends, so
+     *  V may be its getV1() rather than its getV0(); getV(V) gives the
+     *  vertex it leads to either way. */
     public Iteration<Edge> outEdges(Vertex v) {
-        ArrayList<Edge> out = new ArrayList<Edge>();
-        for (Edge e : _edges) {
-            if (e.getV0() == v) {
-                out.add(e);
-            }
-        }
-        return Iteration.iteration(out.iterator());
+        return Iteration.iteration(v._out.iterator());
     }
 
-    /** Returns iterator over all incoming edges to V. */
+    /** Returns iterator over all incoming edges to V.  As for outEdges,
+     *  V may be either end of an edge of an undirected graph. */
     public Iteration<Edge> inEdges(Vertex v) {
-        ArrayList<Edge> in = new ArrayList<Edge>();
-        for (Edge e : _edges) {
-            if (e.getV1() == v) {
-                in.add(e);
-            }
+        return Iteration.iteration(v._in.iterator());
+    }
+
+    /** Returns the Kth edge delivered by outEdges(V), for
+     *  0 <= K < outDegree(V).  Its other end is getV(V), which in an
+     *  undirected graph may be its getV0(). */
+    public Edge outEdge(Vertex v, int k) {
+        return v._out.get(k);
+    }
+
+    /** Returns the Kth edge delivered by inEdges(V), for
+     *  0 <= K < inDegree(V). */
+    public Edge inEdge(Vertex v, int k) {
+        return v._in.get(k);
+    }
+
+    /** Returns the Kth vertex delivered by successors(V), for
+     *  0 <= K < outDegree(V).  It is the vertex entered by outEdge(V, K). */
+    public Vertex successor(Vertex v, int k) {
+        return v._out.get(k).getV(v);
+    }
+
+    /** Returns the Kth vertex delivered by predecessors(V), for
+     *  0 <= K < inDegree(V).  It is the vertex exited by inEdge(V, K). */
+    public Vertex predecessor(Vertex v, int k) {
+        return v._in.get(k).getV(v);
+    }
+
+    /** Perform ACTION on each edge delivered by outEdges(V), in order. */
+    public void forEachOutEdge(Vertex v, Consumer<? super Edge> action) {
+        ArrayList<Edge> out = v._out;
+        for (int k = 0; k < out.size(); k += 1) {
+            action.accept(out.get(k));
+        }
+    }
+
+    /** Perform ACTION on each edge delivered by inEdges(V), in order. */
+    public void forEachInEdge(Vertex v, Consumer<? super Edge> action) {
+        ArrayList<Edge> in = v._in;
+        for (int k = 0; k < in.size(); k += 1) {
+            action.accept(in.get(k));
+        }
+    }
+
+    /** Perform ACTION on each vertex delivered by successors(V), in
+     *  order. */
+    public void forEachSuccessor(Vertex v, Consumer<? super Vertex> action) {
+        ArrayList<Edge> out = v._out;
+        for (int k = 0; k < out.size(); k += 1) {
+            action.accept(out.get(k).getV(v));
+        }
+    }
+
+    /** Perform ACTION on each vertex delivered by predecessors(V), in
+     *  order. */
+    public void forEachPredecessor(Vertex v,
+                                   Consumer<? super Vertex> action) {
+        ArrayList<Edge> in = v._in;
+        for (int k = 0; k < in.size(); k += 1) {
+            action.accept(in.get(k).getV(v));
         }
-        return Iteration.iteration(in.iterator());
     }
 
 
@@ -415,31 +556,30 @@ public abstract class Graph<VLabel, ELabel> {
     }
 
     /** Cause subsequent calls to edges() to visit or deliver
-     *  edges in sorted order, according to COMPARATOR. Subsequent
+     *  edges in sorted order, according to COMPARATOR.  The edges and
+     *  neighbors of each vertex are put in the same order.  Subsequent
      *  addition of edges may cause the edges to be reordered
      *  arbitrarily.  */
     public void orderEdges(Comparator<ELabel> comparator) {
         final Comparator<ELabel> comp = comparator;
-        Collections.sort(_edges, new Comparator<Edge>() {
+        Comparator<Edge> byLabel = new Comparator<Edge>() {
             public int compare(Edge e1, Edge e2) {
                 return comp.compare(e1.getLabel(), e2.getLabel());
             }
-        });
+        };
+        Collections.sort(_edges, byLabel);
+        for (Vertex v : _vertexList) {
+            Collections.sort(v._out, byLabel);
+            if (v._in != v._out) {
+                Collections.sort(v._in, byLabel);
+            }
+        }
     }
 
-    /** Hashmap that represents an adjacency list. Stores the vertex's label
-     * as key and a key's value contains vertexes adjacent to it.*/
-    private HashMap<Vertex, List<Vertex>> _succ =
-        new HashMap<Vertex, List<Vertex>>();
-
-    /** Hashmap that stores a list containing a vertexes predecessors. */
-    private HashMap<Vertex, List<Vertex>> _pred =
-        new HashMap<Vertex, List<Vertex>>();
+    /** All my vertices.  Each vertex's _id is its index. */
+    private ArrayList<Vertex> _vertexList = new ArrayList<Vertex>();
 
-    /** A list that contains all the edges in the graph. */
-    private List<Edge> _edges = new ArrayList<Edge>();
-    /** A list that contains unduplicated edges in the graph. Used
-     * for undirected graph. */
-    private List<Edge> _unDupEdges = new ArrayList<Edge>();
+    /** A list that contains all the edges in the graph, each once. */
+    private ArrayList<Edge> _edges = new ArrayList<Edge>();
 
 }
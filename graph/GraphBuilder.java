@@ -0,0 +1,123 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/** Builds a large graph in one step.  Vertices and edges are first
+ *  collected by the builder and then added to the graph all at once by
+ *  build, which counts the edges at each vertex before allocating any
+ *  list of edges, so that each list is allocated once at its final size
+ *  rather than being regrown as edges arrive.  The result is the same as
+ *  adding each vertex and then each edge to the graph in the order given.
+ *  For example,
+ *      GraphBuilder<String, Double> b =
+ *          new GraphBuilder<>(new UndirectedGraph<String, Double>(), 2, 1);
+ *      Graph<String, Double>.Vertex a = b.add("a"), c = b.add("c");
+ *      b.add(a, c, 3.0);
+ *      Graph<String, Double> g = b.build();
+ *  The vertices returned by add(VLabel) are not part of the graph, and
+ *  may only be used as arguments to the builder, until build is called.
+ *  @author Brian Su
+ */
+public class GraphBuilder<VLabel, ELabel> {
+
+    /** A builder adding to GRAPH, expecting about VERTICES vertices and
+     *  EDGES edges.  The expected numbers size the builder's buffers,
+     *  which grow as needed if they are too small. */
+    @SuppressWarnings("unchecked")
+    public GraphBuilder(Graph<VLabel, ELabel> graph, int vertices,
+                        int edges) {
+        _graph = graph;
+        _vertices = new ArrayList<Graph<VLabel, ELabel>.Vertex>(vertices);
+        edges = Math.max(edges, 1);
+        _from = (Graph<VLabel, ELabel>.Vertex[]) new Graph.Vertex[edges];
+        _to = (Graph<VLabel, ELabel>.Vertex[]) new Graph.Vertex[edges];
+        _labels = (ELabel[]) new Object[edges];
+    }
+
+    /** Returns a new vertex of my graph labeled LABEL, to be added to it
+     *  by build. */
+    public Graph<VLabel, ELabel>.Vertex add(VLabel label) {
+        Graph<VLabel, ELabel>.Vertex v = _graph.new Vertex(label);
+        _vertices.add(v);
+        return v;
+    }
+
+    /** Returns the Kth vertex added to me since I was created or last
+     *  built. */
+    public Graph<VLabel, ELabel>.Vertex vertex(int k) {
+        return _vertices.get(k);
+    }
+
+    /** Arrange to add an edge from FROM to TO labeled LABEL.  FROM and TO
+     *  must be vertices of my graph or vertices added to me. */
+    public void add(Graph<VLabel, ELabel>.Vertex from,
+                    Graph<VLabel, ELabel>.Vertex to, ELabel label) {
+        if (_n == _from.length) {
+            int size = 2 * _n;
+            _from = Arrays.copyOf(_from, size);
+            _to = Arrays.copyOf(_to, size);
+            _labels = Arrays.copyOf(_labels, size);
+        }
+        _from[_n] = from;
+        _to[_n] = to;
+        _labels[_n] = label;
+        _n += 1;
+    }
+
+    /** Arrange to add an edge from vertex(FROM[k]) to vertex(TO[k])
+     *  labeled LABELS[k] for each k, in order.  LABELS may be null, in
+     *  which case the edges have null labels. */
+    public void add(int[] from, int[] to, ELabel[] labels) {
+        if (from.length != to.length
+            || labels != null && labels.length != from.length) {
+            throw new IllegalArgumentException("arrays differ in length");
+        }
+        for (int k = 0; k < from.length; k += 1) {
+            add(vertex(from[k]), vertex(to[k]),
+                labels == null ? null : labels[k]);
+        }
+    }
+
+    /** Arrange to add an edge for each item of EDGES, in order, from
+     *  FROM(item) to TO(item) labeled LABEL(item). */
+    public <T> void add(Stream<T> edges,
+                        Function<? super T, Graph<VLabel, ELabel>.Vertex>
+                            from,
+                        Function<? super T, Graph<VLabel, ELabel>.Vertex> to,
+                        Function<? super T, ? extends ELabel> label) {
+        Iterator<T> items = edges.sequential().iterator();
+        while (items.hasNext()) {
+            T x = items.next();
+            add(from.apply(x), to.apply(x), label.apply(x));
+        }
+    }
+
+    /** Add the vertices and edges given to me since I was created or last
+     *  built to my graph, and return the graph.  I am then empty, and may
+     *  be used again. */
+    public Graph<VLabel, ELabel> build() {
+        _graph.addAll(_vertices, _from, _to, _labels, _n);
+        _vertices.clear();
+        Arrays.fill(_from, 0, _n, null);
+        Arrays.fill(_to, 0, _n, null);
+        Arrays.fill(_labels, 0, _n, null);
+        _n = 0;
+        return _graph;
+    }
+
+    /** The graph I add to. */
+    private final Graph<VLabel, ELabel> _graph;
+    /** The vertices to be added, in order. */
+    private final ArrayList<Graph<VLabel, ELabel>.Vertex> _vertices;
+    /** The ends of the edges to be added: the Kth is from _FROM[K] to
+     *  _TO[K], for K < _N. */
+    private Graph<VLabel, ELabel>.Vertex[] _from, _to;
+    /** The labels of the edges to be added, in the same order. */
+    private ELabel[] _labels;
+    /** The number of edges to be added. */
+    private int _n;
+}
@@ -2,11 +2,10 @@ package graph;
 
 import java.util.List;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.PriorityQueue;
-import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntToDoubleFunction;
 
 /** Assorted graph algorithms.
  *  @author Brian Su
@@ -39,19 +38,50 @@ public final class Graphs {
                  Distancer<? super VLabel> h,
                  Weighter<? super VLabel> vweighter,
                  Weighting<? super ELabel> eweighter) {
-        HashSet<Graph<VLabel, ELabel>.Vertex> closedSet =
-            new HashSet<Graph<VLabel, ELabel>.Vertex>();
-        PriorityQueue<Graph<VLabel, ELabel>.Vertex> openSet =
-            new PriorityQueue<Graph<VLabel, ELabel>.Vertex>(G.vertexSize(),
-                    new FComp<VLabel, ELabel>(vweighter));
-        openSet.add(V0);
-        HashMap<Graph<VLabel, ELabel>.Vertex, Graph<VLabel, ELabel>.Edge>
-            parent = new HashMap<Graph<VLabel, ELabel>.Vertex,
-                   Graph<VLabel, ELabel>.Edge>();
-        parent.put(V0, null);
-        HashMap<Graph<VLabel, ELabel>.Vertex, Double> gScores =
-            new HashMap<Graph<VLabel, ELabel>.Vertex, Double>();
-        gScores.put(V0, 0.0);
+        return shortestPath(G, V0, V1, h, vweighter, eweighter, null);
+    }
+
+    /** As for the 6-argument shortestPath, but reports the steps of the
+     *  search, and the time spent initializing weights ("init"), searching
+     *  ("search") and assembling the path ("path"), to LISTENER, unless it
+     *  is null. */
+    public static <VLabel, ELabel> List<Graph<VLabel, ELabel>.Edge>
+    shortestPath(Graph<VLabel, ELabel> G,
+                 Graph<VLabel, ELabel>.Vertex V0,
+                 Graph<VLabel, ELabel>.Vertex V1,
+                 Distancer<? super VLabel> h,
+                 Weighter<? super VLabel> vweighter,
+                 Weighting<? super ELabel> eweighter,
+                 TraversalListener listener) {
+        return shortestPathWithin(G, V0, V1, h, vweighter, eweighter, null,
+                                  listener).path();
+    }
+
+    /** As for the 7-argument shortestPath, but gives up when DEADLINE,
+     *  unless it is null, expires, looking at it once every
+     *  Deadline.PERIOD vertices taken from the open set.  The result says
+     *  whether the search gave up; if it did, its path is empty, the
+     *  weights of vertices are those found so far (which are no less than
+     *  the final ones), and its lower bound is the least g + H over the
+     *  vertices still open. */
+    public static <VLabel, ELabel> SearchResult<VLabel, ELabel>
+    shortestPathWithin(Graph<VLabel, ELabel> G,
+                       Graph<VLabel, ELabel>.Vertex V0,
+                       Graph<VLabel, ELabel>.Vertex V1,
+                       Distancer<? super VLabel> h,
+                       Weighter<? super VLabel> vweighter,
+                       Weighting<? super ELabel> eweighter,
+                       Deadline deadline, TraversalListener listener) {
+        long start = listener == null ? 0 : System.nanoTime();
+        int n = G.vertexSize();
+        double[] fScores = new double[n];
+        double[] gScores = new double[n];
+        @SuppressWarnings("unchecked")
+        Graph<VLabel, ELabel>.Edge[] parent =
+            (Graph<VLabel, ELabel>.Edge[]) new Graph.Edge[n];
+        long[] open = new long[(n + 63) >>> 6];
+        long[] closed = new long[(n + 63) >>> 6];
+        IntHeap openSet = new IntHeap();
         List<Graph<VLabel, ELabel>.Edge> path =
             new ArrayList<Graph<VLabel, ELabel>.Edge>();
 
@@ -60,77 +90,131 @@ public final class Graphs {
                 vweighter.setWeight(v.getLabel(), Double.POSITIVE_INFINITY);
             }
         }
-        vweighter.setWeight(V0.getLabel(), h.dist(V0.getLabel(),
-                    V1.getLabel()));
+        Arrays.fill(fScores, Double.POSITIVE_INFINITY);
+        int v0 = G.id(V0), v1 = G.id(V1);
+        fScores[v0] = h.dist(V0.getLabel(), V1.getLabel());
+        vweighter.setWeight(V0.getLabel(), fScores[v0]);
+        openSet.add(v0, fScores[v0]);
+        set(open, v0);
+        if (listener != null) {
+            start = phase(listener, "init", start);
+            listener.pushed();
+            listener.heapOperation();
+        }
+        int steps = 0;
         while (!openSet.isEmpty()) {
-            Graph<VLabel, ELabel>.Vertex curr = openSet.peek();
-            if (curr == V1) {
-                Graph<VLabel, ELabel>.Edge e = parent.get(curr);
+            double f = openSet.minKey();
+            if (deadline != null && (steps++ & (Deadline.PERIOD - 1)) == 0
+                && deadline.expired()) {
+                if (listener != null) {
+                    listener.stopped();
+                    phase(listener, "search", start);
+                }
+                return new SearchResult<VLabel, ELabel>(deadline.reason(),
+                                                        path, f);
+            }
+            int c = openSet.remove();
+            if (listener != null) {
+                listener.popped();
+                listener.heapOperation();
+            }
+            if (!get(open, c) || f != fScores[c]) {
+                continue;
+            }
+            if (c == v1) {
+                if (listener != null) {
+                    start = phase(listener, "search", start);
+                }
+                Graph<VLabel, ELabel>.Vertex curr = V1;
+                Graph<VLabel, ELabel>.Edge e = parent[c];
                 while (e != null) {
                     curr = e.getV(curr);
                     path.add(e);
-                    e = parent.get(curr);
+                    e = parent[G.id(curr)];
                 }
                 Collections.reverse(path);
-                return path;
+                if (listener != null) {
+                    phase(listener, "path", start);
+                }
+                return new SearchResult<VLabel, ELabel>(
+                    SearchStatus.COMPLETE, path, gScores[c]);
+            }
+            clear(open, c);
+            set(closed, c);
+            if (listener != null) {
+                listener.settled();
             }
-            openSet.remove(curr);
-            closedSet.add(curr);
-            for (Graph<VLabel, ELabel>.Edge e : G.outEdges(curr)) {
-                double tG = gScores.get(curr) + eweighter.weight(e.getLabel());
-                double F = tG + h.dist(e.getV(curr).getLabel(), V1.getLabel());
-                if (closedSet.contains(e.getV(curr))
-                        && F >= vweighter.weight(e.getV(curr).getLabel())) {
+            Graph<VLabel, ELabel>.Vertex curr = G.vertex(c);
+            for (int k = 0; k < G.outDegree(curr); k += 1) {
+                Graph<VLabel, ELabel>.Edge e = G.outEdge(curr, k);
+                Graph<VLabel, ELabel>.Vertex succ = e.getV(curr);
+                int w = G.id(succ);
+                if (listener != null) {
+                    listener.examined();
+                }
+                double tG = gScores[c] + eweighter.weight(e.getLabel());
+                double F = tG + h.dist(succ.getLabel(), V1.getLabel());
+                if (get(closed, w) && F >= fScores[w]) {
                     continue;
-                } else if (!openSet.contains(e.getV(curr))
-                        || F < vweighter.weight(e.getV(curr).getLabel())) {
-                    parent.put(e.getV(curr), e);
-                    gScores.put(e.getV(curr), tG);
-                    vweighter.setWeight(e.getV(curr).getLabel(), F);
-                    if (!openSet.contains(e.getV(curr))) {
-                        openSet.add(e.getV(curr));
-                        parent.put(e.getV(curr), e);
+                } else if (!get(open, w) || F < fScores[w]) {
+                    parent[w] = e;
+                    gScores[w] = tG;
+                    fScores[w] = F;
+                    vweighter.setWeight(succ.getLabel(), F);
+                    openSet.add(w, F);
+                    set(open, w);
+                    if (listener != null) {
+                        listener.pushed();
+                        listener.relaxed();
+                        listener.heapOperation();
                     }
                 }
             }
         }
-        return path;
+        if (listener != null) {
+            phase(listener, "search", start);
+        }
+        return new SearchResult<VLabel, ELabel>(SearchStatus.COMPLETE, path,
+                                                Double.POSITIVE_INFINITY);
     }
 
-    /** shortest_path comparator. */
-    private static class FComp<VLabel, ELabel>
-            implements Comparator<Graph<VLabel, ELabel>.Vertex> {
-
-        /** Vweighter. */
-        private Weighter<? super VLabel> _vweighter;
+    /** Returns true iff bit I of BITS is set. */
+    static boolean get(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
 
-        /** Initialize a new comparator with VWEIGHTER. */
-        FComp(Weighter<? super VLabel> vweighter) {
-            _vweighter = vweighter;
-        }
+    /** Set bit I of BITS. */
+    static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
 
-        @Override
-        public int compare(Graph<VLabel, ELabel>.Vertex v0,
-                Graph<VLabel, ELabel>.Vertex v1) {
-            double f1 = _vweighter.weight(v0.getLabel());
-            double f2 = _vweighter.weight(v1.getLabel());
-            return ((Double) f1).compareTo((Double) f2);
-        }
+    /** Clear bit I of BITS. */
+    static void clear(long[] bits, int i) {
+        bits[i >>> 6] &= ~(1L << i);
     }
 
-    /** Comparator for 2nd shortest_path. */
-    private static class FComp2<VLabel extends Weightable,
-                                ELabel extends Weighted>
-            implements Comparator<Graph<VLabel, ELabel>.Vertex> {
+    /** Reads and sets the weights of Weightable vertex labels. */
+    private static final Weighter<Weightable> LABEL_WEIGHTER =
+        new Weighter<Weightable>() {
+            @Override
+            public double weight(Weightable x) {
+                return x.weight();
+            }
+
+            @Override
+            public void setWeight(Weightable x, double v) {
+                x.setWeight(v);
+            }
+        };
 
-        @Override
-        public int compare(Graph<VLabel, ELabel>.Vertex v0,
-                            Graph<VLabel, ELabel>.Vertex v1) {
-            double f1 = v0.getLabel().weight();
-            double f2 = v1.getLabel().weight();
-            return ((Double) f1).compareTo((Double) f2);
-        }
-    }
+    /** Reads the weights of Weighted edge labels. */
+    private static final Weighting<Weighted> LABEL_WEIGHTING =
+        new Weighting<Weighted>() {
+            @Override
+            public double weight(Weighted x) {
+                return x.weight();
+            }
+        };
 
     /** Returns a path from V0 to V1 in G of minimum weight, according
      *  to the weights of its edge labels.  VLABEL and ELABEL are the types of
@@ -160,62 +244,664 @@ public final class Graphs {
                  Graph<VLabel, ELabel>.Vertex V0,
                  Graph<VLabel, ELabel>.Vertex V1,
                  Distancer<? super VLabel> h) {
-        HashSet<Graph<VLabel, ELabel>.Vertex> closedSet =
-            new HashSet<Graph<VLabel, ELabel>.Vertex>();
-        PriorityQueue<Graph<VLabel, ELabel>.Vertex> openSet =
-            new PriorityQueue<Graph<VLabel, ELabel>.Vertex>(G.vertexSize(),
-                    new FComp2<VLabel, ELabel>());
-        openSet.add(V0);
-        HashMap<Graph<VLabel, ELabel>.Vertex, Graph<VLabel, ELabel>.Edge>
-            parent = new HashMap<Graph<VLabel, ELabel>.Vertex,
-                   Graph<VLabel, ELabel>.Edge>();
-        parent.put(V0, null);
-        HashMap<Graph<VLabel, ELabel>.Vertex, Double> gScores =
-            new HashMap<Graph<VLabel, ELabel>.Vertex, Double>();
-        gScores.put(V0, 0.0);
+        return shortestPath(G, V0, V1, h, null);
+    }
+
+    /** As for the 4-argument shortestPath, but reports the steps of the
+     *  search, and the time spent in each phase, to LISTENER, as for the
+     *  7-argument shortestPath. */
+    public static
+    <VLabel extends Weightable, ELabel extends Weighted>
+    List<Graph<VLabel, ELabel>.Edge>
+    shortestPath(Graph<VLabel, ELabel> G,
+                 Graph<VLabel, ELabel>.Vertex V0,
+                 Graph<VLabel, ELabel>.Vertex V1,
+                 Distancer<? super VLabel> h,
+                 TraversalListener listener) {
+        return shortestPath(G, V0, V1, h, LABEL_WEIGHTER, LABEL_WEIGHTING,
+                            listener);
+    }
+
+    /** As for the 4-argument shortestPath, but gives up when DEADLINE
+     *  expires, as for the 8-argument shortestPathWithin.  A process
+     *  answering many queries may use this to drop those that take too
+     *  long rather than let them hold up the rest.  When V1 is
+     *  unreachable from V0, for instance, the search would otherwise go on
+     *  until it had expanded every vertex reachable from V0. */
+    public static
+    <VLabel extends Weightable, ELabel extends Weighted>
+    SearchResult<VLabel, ELabel>
+    shortestPathWithin(Graph<VLabel, ELabel> G,
+                       Graph<VLabel, ELabel>.Vertex V0,
+                       Graph<VLabel, ELabel>.Vertex V1,
+                       Distancer<? super VLabel> h, Deadline deadline) {
+        return shortestPathWithin(G, V0, V1, h, deadline, null);
+    }
+
+    /** As for the 5-argument shortestPathWithin, but reports the steps of
+     *  the search, and the time spent in each phase, to LISTENER, as for
+     *  the 7-argument shortestPath.  Giving up is reported as a stop. */
+    public static
+    <VLabel extends Weightable, ELabel extends Weighted>
+    SearchResult<VLabel, ELabel>
+    shortestPathWithin(Graph<VLabel, ELabel> G,
+                       Graph<VLabel, ELabel>.Vertex V0,
+                       Graph<VLabel, ELabel>.Vertex V1,
+                       Distancer<? super VLabel> h, Deadline deadline,
+                       TraversalListener listener) {
+        return shortestPathWithin(G, V0, V1, h, LABEL_WEIGHTER,
+                                  LABEL_WEIGHTING, deadline, listener);
+    }
+
+    /** As for the 4-argument shortestPath, but searches with THREADS
+     *  threads, by hash-distributed A*: each vertex belongs to one thread,
+     *  chosen by hashing its number, which alone keeps its distance and
+     *  its entry in an open list, and threads pass distances to each
+     *  other's vertices through lock-free queues.  The path returned has
+     *  the same weight as the one the 4-argument shortestPath returns,
+     *  but when several paths have that weight, it may be another of
+     *  them.  H must be safe to call from several threads at once, and G
+     *  must not change during the call.  All the threads but the caller
+     *  are started for the call and end with it.  It pays only on long
+     *  searches: the threads exchange a message for most edges. */
+    public static
+    <VLabel extends Weightable, ELabel extends Weighted>
+    List<Graph<VLabel, ELabel>.Edge>
+    parallelShortestPath(Graph<VLabel, ELabel> G,
+                         Graph<VLabel, ELabel>.Vertex V0,
+                         Graph<VLabel, ELabel>.Vertex V1,
+                         Distancer<? super VLabel> h, int threads) {
+        return parallelShortestPath(G, V0, V1, h, threads, null);
+    }
+
+    /** As for the 5-argument parallelShortestPath, but reports the time
+     *  spent in the search ("search") to LISTENER, unless it is null.  The
+     *  steps of the search are not reported, as they happen in several
+     *  threads at once. */
+    public static
+    <VLabel extends Weightable, ELabel extends Weighted>
+    List<Graph<VLabel, ELabel>.Edge>
+    parallelShortestPath(Graph<VLabel, ELabel> G,
+                         Graph<VLabel, ELabel>.Vertex V0,
+                         Graph<VLabel, ELabel>.Vertex V1,
+                         Distancer<? super VLabel> h, int threads,
+                         TraversalListener listener) {
+        long start = listener == null ? 0 : System.nanoTime();
+        List<Graph<VLabel, ELabel>.Edge> path =
+            new ParallelAStar<VLabel, ELabel>(G, V0, V1, h, LABEL_WEIGHTING,
+                                              threads)
+            .search(LABEL_WEIGHTER);
+        if (listener != null) {
+            phase(listener, "search", start);
+        }
+        return path;
+    }
+
+    /** Returns a path from V0 to V1 in G, according to the weights of its
+     *  edge labels, that is at most EPSILON (at least 1) times as heavy as
+     *  a shortest one, with the same assumptions about H and the same
+     *  effects on the weights of vertex labels as the 4-argument
+     *  shortestPath.  It is found by weighted A*, which orders its open
+     *  list by g + EPSILON * h rather than g + h and so heads for V1 more
+     *  greedily, expanding fewer vertices the greater EPSILON is.  The
+     *  result also carries a bound on the weight of the path relative to a
+     *  shortest one, which is often much less than EPSILON. */
+    public static
+    <VLabel extends Weightable, ELabel extends Weighted>
+    BoundedPath<VLabel, ELabel>
+    weightedShortestPath(Graph<VLabel, ELabel> G,
+                         Graph<VLabel, ELabel>.Vertex V0,
+                         Graph<VLabel, ELabel>.Vertex V1,
+                         Distancer<? super VLabel> h, double epsilon) {
+        return weightedShortestPath(G, V0, V1, h, epsilon, null);
+    }
+
+    /** As for the 5-argument weightedShortestPath, but reports the steps
+     *  of the search, and the time spent in each phase, to LISTENER, as
+     *  for the 7-argument shortestPath. */
+    public static
+    <VLabel extends Weightable, ELabel extends Weighted>
+    BoundedPath<VLabel, ELabel>
+    weightedShortestPath(Graph<VLabel, ELabel> G,
+                         Graph<VLabel, ELabel>.Vertex V0,
+                         Graph<VLabel, ELabel>.Vertex V1,
+                         Distancer<? super VLabel> h, double epsilon,
+                         TraversalListener listener) {
+        return new AnytimeAStar<VLabel, ELabel>(G, V0, V1, h, LABEL_WEIGHTER,
+                                                LABEL_WEIGHTING, listener)
+            .search(epsilon, false, 0);
+    }
+
+    /** Returns the shortest path from V0 to V1 in G, according to the
+     *  weights of its edge labels, that can be found in about BUDGET
+     *  nanoseconds, with the same assumptions about H and the same effects
+     *  on the weights of vertex labels as the 4-argument shortestPath.  It
+     *  is found by anytime repairing A* (ARA*): a weighted A* search with
+     *  EPSILON (at least 1) finds a first path, and is then repeated with
+     *  ever smaller weights, reusing the work of the searches before, until
+     *  the path is proven shortest or BUDGET runs out.  The first search
+     *  always finishes, so a path is returned if there is one even if
+     *  it takes longer than BUDGET.  The result carries the best bound on
+     *  the weight of the path relative to a shortest one proven by the
+     *  searches. */
+    public static
+    <VLabel extends Weightable, ELabel extends Weighted>
+    BoundedPath<VLabel, ELabel>
+    anytimeShortestPath(Graph<VLabel, ELabel> G,
+                        Graph<VLabel, ELabel>.Vertex V0,
+                        Graph<VLabel, ELabel>.Vertex V1,
+                        Distancer<? super VLabel> h, double epsilon,
+                        long budget) {
+        return anytimeShortestPath(G, V0, V1, h, epsilon, budget, null);
+    }
+
+    /** As for the 6-argument anytimeShortestPath, but reports the steps
+     *  of the searches, and the time spent in each phase, to LISTENER, as
+     *  for the 7-argument shortestPath. */
+    public static
+    <VLabel extends Weightable, ELabel extends Weighted>
+    BoundedPath<VLabel, ELabel>
+    anytimeShortestPath(Graph<VLabel, ELabel> G,
+                        Graph<VLabel, ELabel>.Vertex V0,
+                        Graph<VLabel, ELabel>.Vertex V1,
+                        Distancer<? super VLabel> h, double epsilon,
+                        long budget, TraversalListener listener) {
+        long deadline = System.nanoTime() + budget;
+        return new AnytimeAStar<VLabel, ELabel>(G, V0, V1, h, LABEL_WEIGHTER,
+                                                LABEL_WEIGHTING, listener)
+            .search(epsilon, true, deadline);
+    }
+
+    /** Largest number of decimal places bucketShortestPath will scale
+     *  edge weights by. */
+    public static final int MAX_FIXED_DIGITS = 9;
+
+    /** Returns a path from V0 to V1 in G of minimum weight, with the same
+     *  assumptions about H and the same effects on the weights of vertex
+     *  labels as the 4-argument shortestPath.  If every edge weight is a
+     *  non-negative decimal with at most MAX_FIXED_DIGITS places (as the
+     *  lengths of roads in trip's maps are), the weights are scaled to
+     *  exact integers and the search uses a radix heap, whose operations
+     *  take amortized constant time on the monotone integer priorities of
+     *  such a search.  Otherwise, it is the same as the 4-argument
+     *  shortestPath.  Paths of equal weight may be chosen differently by
+     *  the two methods. */
+    public static
+    <VLabel extends Weightable, ELabel extends Weighted>
+    List<Graph<VLabel, ELabel>.Edge>
+    bucketShortestPath(Graph<VLabel, ELabel> G,
+                       Graph<VLabel, ELabel>.Vertex V0,
+                       Graph<VLabel, ELabel>.Vertex V1,
+                       Distancer<? super VLabel> h) {
+        return bucketShortestPath(G, V0, V1, h, null);
+    }
+
+    /** As for the 4-argument bucketShortestPath, but reports the steps of
+     *  the search, and the time spent in each phase, to LISTENER, as for
+     *  the 7-argument shortestPath. */
+    public static
+    <VLabel extends Weightable, ELabel extends Weighted>
+    List<Graph<VLabel, ELabel>.Edge>
+    bucketShortestPath(Graph<VLabel, ELabel> G,
+                       Graph<VLabel, ELabel>.Vertex V0,
+                       Graph<VLabel, ELabel>.Vertex V1,
+                       Distancer<? super VLabel> h,
+                       TraversalListener listener) {
+        long start = listener == null ? 0 : System.nanoTime();
+        double scale = fixedPointScale(G);
+        if (scale == 0) {
+            return shortestPath(G, V0, V1, h, listener);
+        }
+        int n = G.vertexSize();
+        long[] gScores = new long[n];
+        long[] fScores = new long[n];
+        @SuppressWarnings("unchecked")
+        Graph<VLabel, ELabel>.Edge[] parent =
+            (Graph<VLabel, ELabel>.Edge[]) new Graph.Edge[n];
+        long[] open = new long[(n + 63) >>> 6];
+        long[] closed = new long[(n + 63) >>> 6];
+        RadixHeap openSet = new RadixHeap();
         List<Graph<VLabel, ELabel>.Edge> path =
             new ArrayList<Graph<VLabel, ELabel>.Edge>();
+
         for (Graph<VLabel, ELabel>.Vertex v : G.vertices()) {
             if (v != V0) {
                 v.getLabel().setWeight(Double.POSITIVE_INFINITY);
             }
         }
-        V0.getLabel().setWeight(h.dist(V0.getLabel(), V1.getLabel()));
+        int v0 = G.id(V0), v1 = G.id(V1);
+        double h0 = h.dist(V0.getLabel(), V1.getLabel());
+        fScores[v0] = (long) Math.floor(h0 * scale);
+        V0.getLabel().setWeight(h0);
+        openSet.add(v0, fScores[v0]);
+        set(open, v0);
+        if (listener != null) {
+            start = phase(listener, "init", start);
+            listener.pushed();
+            listener.heapOperation();
+        }
         while (!openSet.isEmpty()) {
-            Graph<VLabel, ELabel>.Vertex curr = openSet.peek();
-            if (curr == V1) {
-                Graph<VLabel, ELabel>.Edge e = parent.get(curr);
+            int c = openSet.remove();
+            if (listener != null) {
+                listener.popped();
+                listener.heapOperation();
+            }
+            if (!get(open, c)) {
+                continue;
+            }
+            if (c == v1) {
+                if (listener != null) {
+                    start = phase(listener, "search", start);
+                }
+                Graph<VLabel, ELabel>.Vertex curr = V1;
+                Graph<VLabel, ELabel>.Edge e = parent[c];
                 while (e != null) {
                     curr = e.getV(curr);
                     path.add(e);
-                    e = parent.get(curr);
+                    e = parent[G.id(curr)];
                 }
                 Collections.reverse(path);
+                if (listener != null) {
+                    phase(listener, "path", start);
+                }
                 return path;
             }
-            openSet.remove(curr);
-            closedSet.add(curr);
-            for (Graph<VLabel, ELabel>.Edge e : G.outEdges(curr)) {
-                double tG = gScores.get(curr) + e.getLabel().weight();
-                double F = tG + h.dist(e.getV(curr).getLabel(), V1.getLabel());
-                if (closedSet.contains(e.getV(curr))
-                        && F >= e.getV(curr).getLabel().weight()) {
+            clear(open, c);
+            set(closed, c);
+            if (listener != null) {
+                listener.settled();
+            }
+            Graph<VLabel, ELabel>.Vertex curr = G.vertex(c);
+            for (int k = 0; k < G.outDegree(curr); k += 1) {
+                Graph<VLabel, ELabel>.Edge e = G.outEdge(curr, k);
+                Graph<VLabel, ELabel>.Vertex succ = e.getV(curr);
+                int w = G.id(succ);
+                if (listener != null) {
+                    listener.examined();
+                }
+                long tG = gScores[c]
+                    + Math.round(e.getLabel().weight() * scale);
+                double hw = h.dist(succ.getLabel(), V1.getLabel());
+                long F = tG + (long) Math.floor(hw * scale);
+                if (get(closed, w) && F >= fScores[w]) {
                     continue;
-                } else if (!openSet.contains(e.getV(curr))
-                        || F < e.getV(curr).getLabel().weight()) {
-                    parent.put(e.getV(curr), e);
-                    gScores.put(e.getV(curr), tG);
-                    e.getV(curr).getLabel().setWeight(F);
-                    if (!openSet.contains(e.getV(curr))) {
-                        openSet.add(e.getV(curr));
-                        parent.put(e.getV(curr), e);
+                } else if (!get(open, w) || F < fScores[w]) {
+                    parent[w] = e;
+                    gScores[w] = tG;
+                    fScores[w] = F;
+                    succ.getLabel().setWeight(tG / scale + hw);
+                    openSet.add(w, F);
+                    set(open, w);
+                    if (listener != null) {
+                        listener.pushed();
+                        listener.relaxed();
+                        listener.heapOperation();
                     }
                 }
             }
         }
+        if (listener != null) {
+            phase(listener, "search", start);
+        }
         return path;
     }
 
+    /** Returns the least power of ten, at most 10**MAX_FIXED_DIGITS, that
+     *  turns the weight of every edge of G into a non-negative integer
+     *  (to within rounding error) small enough that sums of them along
+     *  any path cannot overflow, or 0 if there is none. */
+    private static <VLabel, ELabel extends Weighted>
+    double fixedPointScale(Graph<VLabel, ELabel> G) {
+        int digits = 0;
+        double total = 0;
+        for (Graph<VLabel, ELabel>.Edge e : G.edges()) {
+            double w = e.getLabel().weight();
+            if (!(w >= 0) || Double.isInfinite(w)) {
+                return 0;
+            }
+            total += w;
+            while (!isWhole(w * POWERS_OF_TEN[digits])) {
+                digits += 1;
+                if (digits > MAX_FIXED_DIGITS) {
+                    return 0;
+                }
+            }
+        }
+        double scale = POWERS_OF_TEN[digits];
+        return total * scale < FIXED_LIMIT ? scale : 0;
+    }
+
+    /** Returns true iff X is an integer to within a few units in its last
+     *  place. */
+    private static boolean isWhole(double x) {
+        return Math.abs(x - Math.rint(x)) <= 4 * Math.ulp(x);
+    }
+
+    /** 10**k, for 0 <= k <= MAX_FIXED_DIGITS. */
+    private static final double[] POWERS_OF_TEN = {
+        1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9
+    };
+
+    /** Bound on the scaled total of all edge weights, leaving room for
+     *  the scaled heuristic in priorities. */
+    private static final double FIXED_LIMIT = 0x1p60;
+
+    /** A monotone priority queue of vertex numbers with non-negative long
+     *  priorities: the priorities of the vertices removed never decrease.
+     *  Vertices are kept in buckets by the position of the highest bit in
+     *  which their priority differs from the last priority removed.
+     *  Removing from an empty bucket 0 empties the lowest nonempty bucket
+     *  into lower ones, which moves each vertex to a lower bucket, so each
+     *  operation takes amortized constant time.  As for IntHeap, a vertex
+     *  may be added more than once. */
+    private static class RadixHeap {
+
+        /** Returns true iff I am empty. */
+        boolean isEmpty() {
+            return _size == 0;
+        }
+
+        /** Add V with priority KEY.  A KEY less than that of the vertex
+         *  last removed, which an inconsistent heuristic can produce, is
+         *  treated as equal to it, so that V is among the next removed,
+         *  as it would be from an ordinary heap. */
+        void add(int v, long key) {
+            key = Math.max(key, _last);
+            push(bucket(key), v, key);
+            _size += 1;
+        }
+
+        /** Remove and return a vertex of least priority. */
+        int remove() {
+            if (_count[0] == 0) {
+                int b = Long.numberOfTrailingZeros(_occupied);
+                int n = _count[b];
+                int[] vertices = _vertices[b];
+                long[] keys = _keys[b];
+                long min = keys[0];
+                for (int i = 1; i < n; i += 1) {
+                    min = Math.min(min, keys[i]);
+                }
+                _last = min;
+                _count[b] = 0;
+                _occupied &= ~(1L << b);
+                for (int i = 0; i < n; i += 1) {
+                    push(bucket(keys[i]), vertices[i], keys[i]);
+                }
+            }
+            _size -= 1;
+            _count[0] -= 1;
+            if (_count[0] == 0) {
+                _occupied &= ~1L;
+            }
+            return _vertices[0][_count[0]];
+        }
+
+        /** Returns the bucket for priority KEY. */
+        private int bucket(long key) {
+            return 64 - Long.numberOfLeadingZeros(key ^ _last);
+        }
+
+        /** Add V with priority KEY to bucket B. */
+        private void push(int b, int v, long key) {
+            if (_vertices[b] == null) {
+                _vertices[b] = new int[4];
+                _keys[b] = new long[4];
+            } else if (_count[b] == _vertices[b].length) {
+                _vertices[b] = Arrays.copyOf(_vertices[b], 2 * _count[b]);
+                _keys[b] = Arrays.copyOf(_keys[b], 2 * _count[b]);
+            }
+            _vertices[b][_count[b]] = v;
+            _keys[b][_count[b]] = key;
+            _count[b] += 1;
+            _occupied |= 1L << b;
+        }
+
+        /** Number of buckets: one for priorities equal to _last, and one
+         *  for each other bit position of a non-negative long. */
+        private static final int BUCKETS = 64;
+
+        /** The vertices in each bucket, allocated on first use. */
+        private final int[][] _vertices = new int[BUCKETS][];
+        /** Their priorities. */
+        private final long[][] _keys = new long[BUCKETS][];
+        /** The number of vertices in each bucket. */
+        private final int[] _count = new int[BUCKETS];
+        /** Bit B is set iff bucket B is not empty. */
+        private long _occupied;
+        /** The number of vertices in me. */
+        private int _size;
+        /** The priority of the vertex last removed. */
+        private long _last;
+    }
+
+    /** Returns the vertices of a path from V0 to V1 in G of minimum total
+     *  edge weight, starting with V0 and ending with V1, or null if V1 is
+     *  unreachable from V0.  Assumes that H(v) estimates the weight of a
+     *  shortest path from v to V1 with the properties required of
+     *  H.dist(v, V1) by the other shortestPath methods.  This version works
+     *  on vertex numbers alone, keeping its state in arrays indexed by
+     *  them, so it creates no objects per vertex or edge and may be used on
+     *  graphs (such as MappedGraphs) that have no Vertex or Edge objects. */
+    public static int[] shortestPath(IntGraph G, int V0, int V1,
+                                     IntToDoubleFunction h) {
+        return shortestPath(G, V0, V1, h, null);
+    }
+
+    /** As for the 4-argument IntGraph shortestPath, but reports the steps
+     *  of the search, and the time spent in each phase, to LISTENER, as
+     *  for the 7-argument shortestPath. */
+    public static int[] shortestPath(IntGraph G, int V0, int V1,
+                                     IntToDoubleFunction h,
+                                     TraversalListener listener) {
+        long start = listener == null ? 0 : System.nanoTime();
+        int n = G.vertexSize();
+        double[] dist = new double[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        int[] parent = new int[n];
+        long[] closed = new long[(n + 63) >>> 6];
+        IntHeap openSet = new IntHeap();
+        dist[V0] = 0.0;
+        parent[V0] = -1;
+        openSet.add(V0, h.applyAsDouble(V0));
+        if (listener != null) {
+            start = phase(listener, "init", start);
+            listener.pushed();
+            listener.heapOperation();
+        }
+        while (!openSet.isEmpty()) {
+            int curr = openSet.remove();
+            if (listener != null) {
+                listener.popped();
+                listener.heapOperation();
+            }
+            if ((closed[curr >>> 6] & (1L << curr)) != 0) {
+                continue;
+            }
+            closed[curr >>> 6] |= 1L << curr;
+            if (listener != null) {
+                listener.settled();
+            }
+            if (curr == V1) {
+                if (listener != null) {
+                    start = phase(listener, "search", start);
+                }
+                int length = 1;
+                for (int v = V1; v != V0; v = parent[v]) {
+                    length += 1;
+                }
+                int[] path = new int[length];
+                for (int v = V1; length > 0; v = parent[v]) {
+                    length -= 1;
+                    path[length] = v;
+                }
+                if (listener != null) {
+                    phase(listener, "path", start);
+                }
+                return path;
+            }
+            for (int k = 0; k < G.outDegree(curr); k += 1) {
+                int w = G.successor(curr, k);
+                if (listener != null) {
+                    listener.examined();
+                }
+                if ((closed[w >>> 6] & (1L << w)) != 0) {
+                    continue;
+                }
+                double tG = dist[curr] + G.weight(curr, k);
+                if (tG < dist[w]) {
+                    dist[w] = tG;
+                    parent[w] = curr;
+                    openSet.add(w, tG + h.applyAsDouble(w));
+                    if (listener != null) {
+                        listener.relaxed();
+                        listener.pushed();
+                        listener.heapOperation();
+                    }
+                }
+            }
+        }
+        if (listener != null) {
+            phase(listener, "search", start);
+        }
+        return null;
+    }
+
+    /** A priority queue of vertex numbers, each with a priority, kept in
+     *  arrays, so that comparisons are of primitive doubles captured when
+     *  the vertices were added.  A vertex may be added more than once (in
+     *  place of lowering its priority), so a search using it skips entries
+     *  for vertices it has already closed or since given a new priority. */
+    static class IntHeap {
+
+        /** Returns true iff I am empty. */
+        boolean isEmpty() {
+            return _size == 0;
+        }
+
+        /** Add V with priority KEY. */
+        void add(int v, double key) {
+            if (_size == _keys.length) {
+                _keys = Arrays.copyOf(_keys, 2 * _size);
+                _vertices = Arrays.copyOf(_vertices, 2 * _size);
+            }
+            int i = _size;
+            _size += 1;
+            while (i > 0 && _keys[(i - 1) / 2] > key) {
+                _keys[i] = _keys[(i - 1) / 2];
+                _vertices[i] = _vertices[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            _keys[i] = key;
+            _vertices[i] = v;
+        }
+
+        /** Returns the least priority of any vertex in me. */
+        double minKey() {
+            return _keys[0];
+        }
+
+        /** Remove and return a vertex of least priority. */
+        int remove() {
+            int result = _vertices[0];
+            _size -= 1;
+            double key = _keys[_size];
+            int v = _vertices[_size];
+            int i = 0;
+            while (2 * i + 1 < _size) {
+                int c = 2 * i + 1;
+                if (c + 1 < _size && _keys[c + 1] < _keys[c]) {
+                    c += 1;
+                }
+                if (_keys[c] >= key) {
+                    break;
+                }
+                _keys[i] = _keys[c];
+                _vertices[i] = _vertices[c];
+                i = c;
+            }
+            _keys[i] = key;
+            _vertices[i] = v;
+            return result;
+        }
+
+        /** The priorities, in heap order. */
+        private double[] _keys = new double[16];
+        /** The vertices, in the same order as their priorities. */
+        private int[] _vertices = new int[16];
+        /** Number of vertices in me. */
+        private int _size;
+    }
+
+    /* Single-Source Shortest Paths */
+
+    /** Returns the weight of a minimal path from V0 to each vertex v of G,
+     *  according to the edge weights given by EWEIGHTER, which must not be
+     *  negative.  The result is indexed by G.id(v), and the distance to a
+     *  vertex unreachable from V0 is Double.POSITIVE_INFINITY.  Uses
+     *  Dijkstra's algorithm. */
+    public static <VLabel, ELabel> double[]
+    distances(Graph<VLabel, ELabel> G, Graph<VLabel, ELabel>.Vertex V0,
+              Weighting<? super ELabel> eweighter) {
+        int n = G.vertexSize();
+        double[] dist = new double[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        long[] closed = new long[(n + 63) >>> 6];
+        IntHeap openSet = new IntHeap();
+        int v0 = G.id(V0);
+        dist[v0] = 0;
+        openSet.add(v0, 0);
+        while (!openSet.isEmpty()) {
+            int c = openSet.remove();
+            if (get(closed, c)) {
+                continue;
+            }
+            set(closed, c);
+            Graph<VLabel, ELabel>.Vertex curr = G.vertex(c);
+            for (int k = 0; k < G.outDegree(curr); k += 1) {
+                Graph<VLabel, ELabel>.Edge e = G.outEdge(curr, k);
+                double w = eweighter.weight(e.getLabel());
+                if (!(w >= 0)) {
+                    throw new IllegalArgumentException(
+                        "negative edge weight: " + w);
+                }
+                int s = G.id(e.getV(curr));
+                if (dist[c] + w < dist[s]) {
+                    dist[s] = dist[c] + w;
+                    openSet.add(s, dist[s]);
+                }
+            }
+        }
+        return dist;
+    }
+
+    /** As for the 3-argument distances, but computed by delta-stepping
+     *  with buckets of width DELTA, relaxing the edges leaving each
+     *  bucket in parallel on the threads of POOL (the common pool if
+     *  null).  EWEIGHTER must be safe to call from several threads at
+     *  once, and G must not change during the call.  DELTA trades work
+     *  for parallelism: a DELTA near the weight of an average edge is a
+     *  reasonable start. */
+    public static <VLabel, ELabel> double[]
+    distances(Graph<VLabel, ELabel> G, Graph<VLabel, ELabel>.Vertex V0,
+              Weighting<? super ELabel> eweighter, double delta,
+              ForkJoinPool pool) {
+        if (pool == null) {
+            pool = ForkJoinPool.commonPool();
+        }
+        return new DeltaStepping<VLabel, ELabel>(G, V0, eweighter, delta,
+                                                 pool).distances();
+    }
+
+    /** Tell LISTENER that phase NAME, begun at time START in nanoseconds,
+     *  has ended.  Returns the current time in nanoseconds. */
+    static long phase(TraversalListener listener, String name,
+                      long start) {
+        long now = System.nanoTime();
+        listener.phase(name, now - start);
+        return now;
+    }
+
     /** Returns a distancer whose dist method always returns 0. */
     public static final Distancer<Object> ZERO_DISTANCER =
         new Distancer<Object>() {
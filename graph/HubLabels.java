@@ -0,0 +1,527 @@
+package graph;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/** A hub labeling of an undirected graph, kept in a memory-mapped file,
+ *  that answers queries for the distance between two vertices without
+ *  searching the graph.  Each vertex v has a label: a list of hubs, each
+ *  with its distance from v, such that some shortest path between any two
+ *  vertices passes through a hub they share.  The distance between u and
+ *  v is then the least sum of their distances to a common hub, found by
+ *  merging their labels, which are sorted by hub.  Labels are computed by
+ *  pruned landmark labeling (Akiba, Iwata and Yoshida): the vertices are
+ *  taken in order of importance (estimated from a sample of shortest-path
+ *  trees), and a Dijkstra search from each adds it as a hub to the labels
+ *  of the vertices it reaches, but does not continue past a vertex whose
+ *  distance the labels already give.  Each label entry also records the
+ *  next vertex on a shortest path from its vertex to its hub, so that the
+ *  path between two vertices may be recovered as well.
+ *
+ *  The file holds, in native byte order, a header (the int MAGIC, the int
+ *  number of vertices N and the int total number of label entries M), the
+ *  vertex at each rank of importance (N ints), the index of the first
+ *  label entry of each vertex (N + 1 ints, the last being M), and then,
+ *  for each label entry, the rank of its hub (M ints), the next vertex
+ *  toward the hub, or -1 at the hub itself (M ints), and the distance to
+ *  the hub (M doubles).  The entries of each label are in increasing order
+ *  of rank.  Vertices are numbered as by Graph.id in the graph indexed.
+ *  @author Brian Su
+ */
+public final class HubLabels implements Closeable {
+
+    /** Identifies a file written by write. */
+    public static final int MAGIC = 0x4855424c;
+
+    /** Largest total number of label entries. */
+    public static final int MAX_ENTRIES = Integer.MAX_VALUE / Double.BYTES;
+
+    /** Size of the header in bytes. */
+    private static final int HEADER = 3 * Integer.BYTES;
+
+    /** Number of shortest-path trees used to rank vertices by
+     *  importance. */
+    static final int SAMPLES = 32;
+
+    /** The labels in FILE, as written by write. */
+    public static HubLabels open(File file) throws IOException {
+        return new HubLabels(FileChannel.open(file.toPath(),
+                                              StandardOpenOption.READ));
+    }
+
+    /** Compute the hub labels of G, whose edges are weighted by WEIGHTING
+     *  and must not be negative, write them to FILE, and return them.
+     *  G must be undirected. */
+    public static <VLabel, ELabel> HubLabels
+    write(File file, Graph<VLabel, ELabel> G,
+          Weighting<? super ELabel> weighting) throws IOException {
+        if (G.isDirected()) {
+            throw new IllegalArgumentException("graph must be undirected");
+        }
+        Builder<VLabel, ELabel> b = new Builder<VLabel, ELabel>(G, weighting);
+        b.build();
+        b.write(file);
+        return open(file);
+    }
+
+    /** The labels in the file open on CHANNEL. */
+    private HubLabels(FileChannel channel) throws IOException {
+        _channel = channel;
+        try {
+            ByteBuffer header = map(0, HEADER);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("not a hub label file");
+            }
+            _n = header.getInt(Integer.BYTES);
+            _m = header.getInt(2 * Integer.BYTES);
+            long pos = HEADER;
+            _order = map(pos, (long) _n * Integer.BYTES);
+            pos += (long) _n * Integer.BYTES;
+            _first = map(pos, (long) (_n + 1) * Integer.BYTES);
+            pos += (long) (_n + 1) * Integer.BYTES;
+            _hubs = map(pos, (long) _m * Integer.BYTES);
+            pos += (long) _m * Integer.BYTES;
+            _next = map(pos, (long) _m * Integer.BYTES);
+            pos += (long) _m * Integer.BYTES;
+            _dists = map(pos, (long) _m * Double.BYTES);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** Returns the SIZE bytes of my file at POSITION, mapped for
+     *  reading. */
+    private MappedByteBuffer map(long position, long size)
+        throws IOException {
+        MappedByteBuffer b =
+            _channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        b.order(ByteOrder.nativeOrder());
+        return b;
+    }
+
+    /** Returns the number of vertices labeled. */
+    public int vertexSize() {
+        return _n;
+    }
+
+    /** Returns the total number of label entries. */
+    public int entrySize() {
+        return _m;
+    }
+
+    /** Returns the number of hubs in the label of vertex V. */
+    public int labelSize(int v) {
+        return first(v + 1) - first(v);
+    }
+
+    /** Returns the weight of a shortest path between vertices U and V, or
+     *  Double.POSITIVE_INFINITY if there is none. */
+    public double dist(int u, int v) {
+        int i = first(u), iEnd = first(u + 1);
+        int j = first(v), jEnd = first(v + 1);
+        double best = Double.POSITIVE_INFINITY;
+        while (i < iEnd && j < jEnd) {
+            int hu = hub(i), hv = hub(j);
+            if (hu == hv) {
+                best = Math.min(best, dist(i) + dist(j));
+                i += 1;
+                j += 1;
+            } else if (hu < hv) {
+                i += 1;
+            } else {
+                j += 1;
+            }
+        }
+        return best;
+    }
+
+    /** Returns the vertices of a shortest path from U to V, starting with
+     *  U and ending with V, or null if there is none. */
+    public int[] path(int u, int v) {
+        if (u == v) {
+            return new int[] { u };
+        }
+        int i = first(u), iEnd = first(u + 1);
+        int j = first(v), jEnd = first(v + 1);
+        double best = Double.POSITIVE_INFINITY;
+        int bestI = -1, bestJ = -1;
+        while (i < iEnd && j < jEnd) {
+            int hu = hub(i), hv = hub(j);
+            if (hu == hv) {
+                if (dist(i) + dist(j) < best) {
+                    best = dist(i) + dist(j);
+                    bestI = i;
+                    bestJ = j;
+                }
+                i += 1;
+                j += 1;
+            } else if (hu < hv) {
+                i += 1;
+            } else {
+                j += 1;
+            }
+        }
+        if (bestI == -1) {
+            return null;
+        }
+        int rank = hub(bestI);
+        int[] up = toHub(u, bestI, rank), down = toHub(v, bestJ, rank);
+        int[] result = Arrays.copyOf(up, up.length + down.length - 1);
+        for (int k = 1; k < down.length; k += 1) {
+            result[up.length + k - 1] = down[down.length - 1 - k];
+        }
+        return result;
+    }
+
+    /** Returns the vertices of the path from V to the hub of rank RANK
+     *  recorded in the labels, where entry E of V's label is for that
+     *  hub. */
+    private int[] toHub(int v, int e, int rank) {
+        int[] path = new int[8];
+        int k = 0;
+        while (true) {
+            if (k == path.length) {
+                path = Arrays.copyOf(path, 2 * k);
+            }
+            path[k] = v;
+            k += 1;
+            v = _next.getInt(e * Integer.BYTES);
+            if (v == -1) {
+                return Arrays.copyOf(path, k);
+            }
+            e = find(v, rank);
+        }
+    }
+
+    /** Returns the index of the entry for the hub of rank RANK in the
+     *  label of V, which must have one. */
+    private int find(int v, int rank) {
+        int lo = first(v), hi = first(v + 1) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int h = hub(mid);
+            if (h < rank) {
+                lo = mid + 1;
+            } else if (h > rank) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        throw new IllegalStateException("damaged hub labels");
+    }
+
+    /** Returns the vertex of rank RANK in order of importance. */
+    public int hubVertex(int rank) {
+        return _order.getInt(rank * Integer.BYTES);
+    }
+
+    /** Close my file.  The mapping itself is released when I am
+     *  collected. */
+    @Override
+    public void close() throws IOException {
+        _channel.close();
+    }
+
+    /** Returns the index of the first label entry of V. */
+    private int first(int v) {
+        return _first.getInt(v * Integer.BYTES);
+    }
+
+    /** Returns the rank of the hub of entry E. */
+    private int hub(int e) {
+        return _hubs.getInt(e * Integer.BYTES);
+    }
+
+    /** Returns the distance of entry E. */
+    private double dist(int e) {
+        return _dists.getDouble(e * Double.BYTES);
+    }
+
+    /** Computes hub labels by pruned landmark labeling, keeping them on
+     *  the heap until written. */
+    private static class Builder<VLabel, ELabel> {
+
+        /** A builder of the labels of G with edges weighted by
+         *  WEIGHTING. */
+        Builder(Graph<VLabel, ELabel> G,
+                Weighting<? super ELabel> weighting) {
+            _G = G;
+            _weighting = weighting;
+            int n = G.vertexSize();
+            _order = new int[n];
+            _hubs = new int[n][];
+            _next = new int[n][];
+            _dists = new double[n][];
+            _size = new int[n];
+            for (int v = 0; v < n; v += 1) {
+                _hubs[v] = new int[4];
+                _next[v] = new int[4];
+                _dists[v] = new double[4];
+            }
+        }
+
+        /** Compute the labels. */
+        void build() {
+            Graph<VLabel, ELabel> G = _G;
+            int n = G.vertexSize();
+            order();
+            double[] hubDist = new double[n];
+            double[] dist = new double[n];
+            int[] parent = new int[n];
+            int[] reached = new int[n];
+            Arrays.fill(hubDist, Double.POSITIVE_INFINITY);
+            Arrays.fill(dist, Double.POSITIVE_INFINITY);
+            for (int rank = 0; rank < n; rank += 1) {
+                int h = _order[rank];
+                for (int e = 0; e < _size[h]; e += 1) {
+                    hubDist[_hubs[h][e]] = _dists[h][e];
+                }
+                int nReached = 0;
+                Graphs.IntHeap queue = new Graphs.IntHeap();
+                dist[h] = 0;
+                parent[h] = -1;
+                reached[nReached++] = h;
+                queue.add(h, 0);
+                while (!queue.isEmpty()) {
+                    double d = queue.minKey();
+                    int u = queue.remove();
+                    if (d != dist[u] || covered(u, d, hubDist)) {
+                        continue;
+                    }
+                    add(u, rank, parent[u], d);
+                    Graph<VLabel, ELabel>.Vertex curr = G.vertex(u);
+                    for (int k = 0; k < G.outDegree(curr); k += 1) {
+                        Graph<VLabel, ELabel>.Edge e = G.outEdge(curr, k);
+                        double w = weight(e);
+                        int s = G.id(e.getV(curr));
+                        if (d + w < dist[s]) {
+                            if (dist[s] == Double.POSITIVE_INFINITY) {
+                                reached[nReached++] = s;
+                            }
+                            dist[s] = d + w;
+                            parent[s] = u;
+                            queue.add(s, d + w);
+                        }
+                    }
+                }
+                for (int i = 0; i < nReached; i += 1) {
+                    dist[reached[i]] = Double.POSITIVE_INFINITY;
+                }
+                for (int e = 0; e < _size[h]; e += 1) {
+                    hubDist[_hubs[h][e]] = Double.POSITIVE_INFINITY;
+                }
+            }
+        }
+
+        /** Rank the vertices in _ORDER by importance, estimated by how
+         *  many shortest paths pass through them.  For each of SAMPLES
+         *  vertices spread through the graph, the tree of shortest paths
+         *  from that vertex is found, and each vertex is credited with the
+         *  number of vertices below it in the tree.  Ties go to the vertex
+         *  of greater degree.  Hubs that cover many paths early prune the
+         *  later searches the most, keeping labels short. */
+        private void order() {
+            final Graph<VLabel, ELabel> G = _G;
+            int n = G.vertexSize();
+            final long[] importance = new long[n];
+            double[] dist = new double[n];
+            int[] parent = new int[n];
+            int[] settled = new int[n];
+            int[] below = new int[n];
+            int samples = Math.min(SAMPLES, n);
+            for (int i = 0; i < samples; i += 1) {
+                int root = (int) ((long) i * n / samples);
+                Arrays.fill(dist, Double.POSITIVE_INFINITY);
+                int nSettled = 0;
+                Graphs.IntHeap queue = new Graphs.IntHeap();
+                dist[root] = 0;
+                parent[root] = -1;
+                queue.add(root, 0);
+                while (!queue.isEmpty()) {
+                    double d = queue.minKey();
+                    int u = queue.remove();
+                    if (d != dist[u]) {
+                        continue;
+                    }
+                    settled[nSettled++] = u;
+                    below[u] = 1;
+                    Graph<VLabel, ELabel>.Vertex curr = G.vertex(u);
+                    for (int k = 0; k < G.outDegree(curr); k += 1) {
+                        Graph<VLabel, ELabel>.Edge e = G.outEdge(curr, k);
+                        int s = G.id(e.getV(curr));
+                        if (d + weight(e) < dist[s]) {
+                            dist[s] = d + weight(e);
+                            parent[s] = u;
+                            queue.add(s, dist[s]);
+                        }
+                    }
+                }
+                for (int j = nSettled - 1; j >= 0; j -= 1) {
+                    int v = settled[j];
+                    importance[v] += below[v];
+                    if (parent[v] != -1) {
+                        below[parent[v]] += below[v];
+                    }
+                }
+            }
+
+            Integer[] order = new Integer[n];
+            for (int v = 0; v < n; v += 1) {
+                order[v] = v;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer v, Integer w) {
+                    if (importance[v] != importance[w]) {
+                        return importance[v] > importance[w] ? -1 : 1;
+                    }
+                    int dv = G.outDegree(G.vertex(v)),
+                        dw = G.outDegree(G.vertex(w));
+                    return dv != dw ? dw - dv : v - w;
+                }
+            });
+            for (int r = 0; r < n; r += 1) {
+                _order[r] = order[r];
+            }
+        }
+
+        /** Returns the weight of E, which must not be negative. */
+        private double weight(Graph<VLabel, ELabel>.Edge e) {
+            double w = _weighting.weight(e.getLabel());
+            if (!(w >= 0)) {
+                throw new IllegalArgumentException(
+                    "negative edge weight: " + w);
+            }
+            return w;
+        }
+
+        /** Returns true iff the labels so far give a path of weight at
+         *  most D from vertex U to the current hub, whose distances to
+         *  the hubs of each rank are in HUBDIST. */
+        private boolean covered(int u, double d, double[] hubDist) {
+            int[] hubs = _hubs[u];
+            double[] dists = _dists[u];
+            for (int e = 0; e < _size[u]; e += 1) {
+                if (hubDist[hubs[e]] + dists[e] <= d) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** Add the hub of rank RANK, at distance D by way of NEXT, to the
+         *  label of V. */
+        private void add(int v, int rank, int next, double d) {
+            int k = _size[v];
+            if (k == _hubs[v].length) {
+                _hubs[v] = Arrays.copyOf(_hubs[v], 2 * k);
+                _next[v] = Arrays.copyOf(_next[v], 2 * k);
+                _dists[v] = Arrays.copyOf(_dists[v], 2 * k);
+            }
+            _hubs[v][k] = rank;
+            _next[v][k] = next;
+            _dists[v][k] = d;
+            _size[v] = k + 1;
+            _entries += 1;
+            if (_entries > MAX_ENTRIES) {
+                throw new IllegalArgumentException("too many label entries");
+            }
+        }
+
+        /** Write the labels to FILE in the format read by open. */
+        void write(File file) throws IOException {
+            int n = _G.vertexSize();
+            int m = (int) _entries;
+            long orderPos = HEADER;
+            long firstPos = orderPos + (long) n * Integer.BYTES;
+            long hubsPos = firstPos + (long) (n + 1) * Integer.BYTES;
+            long nextPos = hubsPos + (long) m * Integer.BYTES;
+            long distsPos = nextPos + (long) m * Integer.BYTES;
+            FileChannel channel =
+                FileChannel.open(file.toPath(),
+                                 StandardOpenOption.CREATE,
+                                 StandardOpenOption.TRUNCATE_EXISTING,
+                                 StandardOpenOption.READ,
+                                 StandardOpenOption.WRITE);
+            try {
+                MappedByteBuffer order = map(channel, orderPos,
+                                             (long) n * Integer.BYTES);
+                MappedByteBuffer first = map(channel, firstPos,
+                                             (long) (n + 1) * Integer.BYTES);
+                MappedByteBuffer hubs = map(channel, hubsPos,
+                                            (long) m * Integer.BYTES);
+                MappedByteBuffer next = map(channel, nextPos,
+                                            (long) m * Integer.BYTES);
+                MappedByteBuffer dists = map(channel, distsPos,
+                                             (long) m * Double.BYTES);
+                int p = 0;
+                for (int v = 0; v < n; v += 1) {
+                    order.putInt(v * Integer.BYTES, _order[v]);
+                    first.putInt(v * Integer.BYTES, p);
+                    for (int e = 0; e < _size[v]; e += 1, p += 1) {
+                        hubs.putInt(p * Integer.BYTES, _hubs[v][e]);
+                        next.putInt(p * Integer.BYTES, _next[v][e]);
+                        dists.putDouble(p * Double.BYTES, _dists[v][e]);
+                    }
+                }
+                first.putInt(n * Integer.BYTES, p);
+                order.force();
+                first.force();
+                hubs.force();
+                next.force();
+                dists.force();
+                MappedByteBuffer header = map(channel, 0, HEADER);
+                header.putInt(0, MAGIC).putInt(Integer.BYTES, n)
+                    .putInt(2 * Integer.BYTES, m);
+                header.force();
+            } finally {
+                channel.close();
+            }
+        }
+
+        /** Returns the SIZE bytes of CHANNEL's file at POSITION, mapped
+         *  for writing. */
+        private static MappedByteBuffer map(FileChannel channel,
+                                            long position, long size)
+            throws IOException {
+            MappedByteBuffer b =
+                channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+            b.order(ByteOrder.nativeOrder());
+            return b;
+        }
+
+        /** The graph labeled. */
+        private final Graph<VLabel, ELabel> _G;
+        /** Weights of its edges. */
+        private final Weighting<? super ELabel> _weighting;
+        /** The vertex of each rank. */
+        private final int[] _order;
+        /** The ranks of the hubs in the label of each vertex, the next
+         *  vertices toward them, and their distances, in the first
+         *  _SIZE[v] elements for vertex v. */
+        private final int[][] _hubs, _next;
+        /** The distances of the hubs in each label. */
+        private final double[][] _dists;
+        /** The size of each label. */
+        private final int[] _size;
+        /** The total size of the labels. */
+        private long _entries;
+    }
+
+    /** My file. */
+    private final FileChannel _channel;
+    /** The number of vertices and of label entries. */
+    private final int _n, _m;
+    /** The sections of my file. */
+    private final MappedByteBuffer _order, _first, _hubs, _next, _dists;
+}
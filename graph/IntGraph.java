@@ -0,0 +1,26 @@
+package graph;
+
+/** A directed graph with weighted edges whose vertices are the integers
+ *  0 .. vertexSize() - 1, and whose edges are reached by index from the
+ *  vertices they leave.  An undirected edge appears as an edge in each
+ *  direction.  Algorithms on an IntGraph need no Vertex or Edge objects,
+ *  so they may use graphs too large to hold on the heap.
+ *  @author Brian Su
+ */
+public interface IntGraph {
+
+    /** Returns the number of vertices in me. */
+    int vertexSize();
+
+    /** Returns the number of edges leaving vertex V. */
+    int outDegree(int v);
+
+    /** Returns the vertex entered by the Kth edge leaving V, for
+     *  0 <= K < outDegree(V). */
+    int successor(int v, int k);
+
+    /** Returns the weight of the Kth edge leaving V, for
+     *  0 <= K < outDegree(V). */
+    double weight(int v, int k);
+
+}
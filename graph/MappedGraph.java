@@ -0,0 +1,396 @@
+package graph;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.function.ToDoubleFunction;
+
+/** An IntGraph kept in a memory-mapped file rather than on the heap, for
+ *  graphs (such as the roads of a continent) too large to load as a
+ *  Graph.  Each vertex has a position (x, y), and the edges leaving each
+ *  vertex are stored together, in the order they were given to the
+ *  Writer that made the file.  Nothing is allocated on the heap per vertex
+ *  or edge, either while the file is written or while it is read; the
+ *  operating system pages the file in and out as it is used.
+ *
+ *  The file holds, in native byte order, a header (the int MAGIC, the int
+ *  number of vertices N and the int number of stored edges M), the x and
+ *  y positions (N doubles each), the index of the first edge of each
+ *  vertex (N + 1 ints, the last being M), and the vertices entered by the
+ *  edges and their weights (M ints and M doubles).  Since each section is
+ *  mapped as one buffer, N and M may be at most MAX_VERTICES and
+ *  MAX_EDGES.
+ *  @author Brian Su
+ */
+public final class MappedGraph implements IntGraph, Closeable {
+
+    /** Identifies a file written by Writer. */
+    public static final int MAGIC = 0x47524146;
+
+    /** Largest number of stored edges (counting each undirected edge
+     *  twice). */
+    public static final int MAX_EDGES = Integer.MAX_VALUE / Double.BYTES;
+    /** Largest number of vertices. */
+    public static final int MAX_VERTICES = MAX_EDGES - 1;
+
+    /** Size of the header in bytes. */
+    private static final int HEADER = 3 * Integer.BYTES;
+
+    /** The graph in FILE, as written by a Writer. */
+    public static MappedGraph open(File file) throws IOException {
+        return new MappedGraph(FileChannel.open(file.toPath(),
+                                                StandardOpenOption.READ),
+                               FileChannel.MapMode.READ_ONLY);
+    }
+
+    /** Write the vertices and edges of G to FILE, numbering the vertices
+     *  by G.id, weighting the edges by WEIGHTING, and placing vertex v at
+     *  (X(label), Y(label)) for its label.  Returns the resulting graph.
+     *  G must have fewer than MAX_EDGES edges (half that, if it is
+     *  undirected). */
+    public static <VLabel, ELabel> MappedGraph
+    write(File file, Graph<VLabel, ELabel> G,
+          Weighting<? super ELabel> weighting,
+          ToDoubleFunction<? super VLabel> x,
+          ToDoubleFunction<? super VLabel> y) throws IOException {
+        Writer w = new Writer(file, G.vertexSize(), !G.isDirected());
+        try {
+            for (int v = 0; v < G.vertexSize(); v += 1) {
+                VLabel label = G.vertex(v).getLabel();
+                w.vertex(v, x.applyAsDouble(label), y.applyAsDouble(label));
+            }
+            for (Graph<VLabel, ELabel>.Edge e : G.edges()) {
+                w.edge(G.id(e.getV0()), G.id(e.getV1()),
+                       weighting.weight(e.getLabel()));
+            }
+            return w.finish();
+        } finally {
+            w.close();
+        }
+    }
+
+    /** The graph in the file open on CHANNEL, mapped in MODE.  CHANNEL
+     *  is closed if the file cannot be mapped. */
+    private MappedGraph(FileChannel channel, FileChannel.MapMode mode)
+        throws IOException {
+        _channel = channel;
+        try {
+            ByteBuffer header = map(mode, 0, HEADER);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("not a mapped graph");
+            }
+            _n = header.getInt(Integer.BYTES);
+            _m = header.getInt(2 * Integer.BYTES);
+            long pos = HEADER;
+            _x = map(mode, pos, (long) _n * Double.BYTES);
+            pos += (long) _n * Double.BYTES;
+            _y = map(mode, pos, (long) _n * Double.BYTES);
+            pos += (long) _n * Double.BYTES;
+            _first = map(mode, pos, (long) (_n + 1) * Integer.BYTES);
+            pos += (long) (_n + 1) * Integer.BYTES;
+            _targets = map(mode, pos, (long) _m * Integer.BYTES);
+            pos += (long) _m * Integer.BYTES;
+            _weights = map(mode, pos, (long) _m * Double.BYTES);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** Returns the SIZE bytes of my file at POSITION, mapped in MODE. */
+    private MappedByteBuffer map(FileChannel.MapMode mode, long position,
+                                 long size) throws IOException {
+        MappedByteBuffer b = _channel.map(mode, position, size);
+        b.order(ByteOrder.nativeOrder());
+        return b;
+    }
+
+    @Override
+    public int vertexSize() {
+        return _n;
+    }
+
+    /** Returns the number of stored edges: the number of edges, counting
+     *  an undirected edge once in each direction. */
+    public int edgeSize() {
+        return _m;
+    }
+
+    @Override
+    public int outDegree(int v) {
+        return first(v + 1) - first(v);
+    }
+
+    @Override
+    public int successor(int v, int k) {
+        return _targets.getInt((first(v) + k) * Integer.BYTES);
+    }
+
+    @Override
+    public double weight(int v, int k) {
+        return _weights.getDouble((first(v) + k) * Double.BYTES);
+    }
+
+    /** Returns the x coordinate of vertex V. */
+    public double x(int v) {
+        return _x.getDouble(v * Double.BYTES);
+    }
+
+    /** Returns the y coordinate of vertex V. */
+    public double y(int v) {
+        return _y.getDouble(v * Double.BYTES);
+    }
+
+    /** Returns the straight-line distance between vertices V and W. */
+    public double dist(int v, int w) {
+        return Math.hypot(x(v) - x(w), y(v) - y(w));
+    }
+
+    /** Close my file.  The mapping itself is released when I am
+     *  collected. */
+    @Override
+    public void close() throws IOException {
+        _channel.close();
+    }
+
+    /** Returns the index of the first edge leaving V. */
+    private int first(int v) {
+        return _first.getInt(v * Integer.BYTES);
+    }
+
+    /** Writes a MappedGraph file.  The positions of vertices may be given
+     *  in any order; the edges are appended to a scratch file as they are
+     *  given and sorted by the vertex they leave when the writer finishes,
+     *  by counting the edges leaving each vertex and then placing each at
+     *  the next free position of its vertex.  Both passes read the
+     *  scratch file in order, so little memory is needed. */
+    public static class Writer implements Closeable {
+
+        /** A writer of a graph with N vertices to FILE.  If UNDIRECTED,
+         *  each edge given is stored in both directions. */
+        public Writer(File file, int n, boolean undirected)
+            throws IOException {
+            if (n < 0 || n > MAX_VERTICES) {
+                throw new IllegalArgumentException("too many vertices");
+            }
+            _file = file;
+            _n = n;
+            _undirected = undirected;
+            _channel = FileChannel.open(file.toPath(),
+                                        StandardOpenOption.CREATE,
+                                        StandardOpenOption.TRUNCATE_EXISTING,
+                                        StandardOpenOption.READ,
+                                        StandardOpenOption.WRITE);
+            File scratchFile = null;
+            try {
+                _x = map(HEADER, (long) n * Double.BYTES);
+                _y = map(HEADER + (long) n * Double.BYTES,
+                         (long) n * Double.BYTES);
+                scratchFile = File.createTempFile("mappedgraph", null,
+                                                  file.getAbsoluteFile()
+                                                  .getParentFile());
+                _scratch = FileChannel.open(scratchFile.toPath(),
+                                            StandardOpenOption.READ,
+                                            StandardOpenOption.WRITE);
+            } catch (IOException | RuntimeException e) {
+                if (scratchFile != null) {
+                    scratchFile.delete();
+                }
+                _channel.close();
+                throw e;
+            }
+            _scratchFile = scratchFile;
+            _buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            _buffer.order(ByteOrder.nativeOrder());
+        }
+
+        /** Place vertex V at (X, Y). */
+        public void vertex(int v, double x, double y) {
+            _x.putDouble(v * Double.BYTES, x);
+            _y.putDouble(v * Double.BYTES, y);
+        }
+
+        /** Add an edge from vertex FROM to vertex TO of weight WEIGHT. */
+        public void edge(int from, int to, double weight)
+            throws IOException {
+            if (from < 0 || from >= _n || to < 0 || to >= _n) {
+                throw new IllegalArgumentException("no such vertex");
+            }
+            _edges += _undirected ? 2 : 1;
+            if (_edges > MAX_EDGES) {
+                throw new IllegalArgumentException("too many edges");
+            }
+            if (_buffer.remaining() < RECORD) {
+                flush();
+            }
+            _buffer.putInt(from).putInt(to).putDouble(weight);
+        }
+
+        /** Write the edges given so far to the file, and return the
+         *  resulting graph.  I may not be used afterwards. */
+        public MappedGraph finish() throws IOException {
+            flush();
+            int m = (int) _edges;
+            long firstPos = HEADER + 2L * _n * Double.BYTES;
+            long targetsPos = firstPos + (long) (_n + 1) * Integer.BYTES;
+            long weightsPos = targetsPos + (long) m * Integer.BYTES;
+            MappedByteBuffer header = map(0, HEADER);
+            header.putInt(0, MAGIC).putInt(Integer.BYTES, _n)
+                .putInt(2 * Integer.BYTES, m);
+            header.force();
+            MappedByteBuffer first =
+                map(firstPos, (long) (_n + 1) * Integer.BYTES);
+            MappedByteBuffer targets =
+                map(targetsPos, (long) m * Integer.BYTES);
+            MappedByteBuffer weights =
+                map(weightsPos, (long) m * Double.BYTES);
+            for (int v = 0; v <= _n; v += 1) {
+                first.putInt(v * Integer.BYTES, 0);
+            }
+
+            rewind();
+            while (next()) {
+                int from = _buffer.getInt(), to = _buffer.getInt();
+                _buffer.getDouble();
+                bump(first, from + 1);
+                if (_undirected) {
+                    bump(first, to + 1);
+                }
+            }
+            for (int v = 1; v <= _n; v += 1) {
+                first.putInt(v * Integer.BYTES,
+                             first.getInt(v * Integer.BYTES)
+                             + first.getInt((v - 1) * Integer.BYTES));
+            }
+
+            ByteBuffer next = ByteBuffer.allocateDirect(_n * Integer.BYTES);
+            next.order(ByteOrder.nativeOrder());
+            for (int v = 0; v < _n; v += 1) {
+                next.putInt(v * Integer.BYTES,
+                            first.getInt(v * Integer.BYTES));
+            }
+            rewind();
+            while (next()) {
+                int from = _buffer.getInt(), to = _buffer.getInt();
+                double w = _buffer.getDouble();
+                place(next, targets, weights, from, to, w);
+                if (_undirected) {
+                    place(next, targets, weights, to, from, w);
+                }
+            }
+            targets.force();
+            weights.force();
+            first.force();
+            _x.force();
+            _y.force();
+            close();
+            return open(_file);
+        }
+
+        /** Release my files, deleting the scratch file. */
+        @Override
+        public void close() throws IOException {
+            _scratch.close();
+            _scratchFile.delete();
+            _channel.close();
+        }
+
+        /** Add 1 to the Ith int of B. */
+        private static void bump(ByteBuffer b, int i) {
+            b.putInt(i * Integer.BYTES, b.getInt(i * Integer.BYTES) + 1);
+        }
+
+        /** Store the edge from FROM to TO of weight W at the position
+         *  NEXT[FROM] of TARGETS and WEIGHTS, and advance NEXT[FROM]. */
+        private static void place(ByteBuffer next, ByteBuffer targets,
+                                  ByteBuffer weights, int from, int to,
+                                  double w) {
+            int p = next.getInt(from * Integer.BYTES);
+            next.putInt(from * Integer.BYTES, p + 1);
+            targets.putInt(p * Integer.BYTES, to);
+            weights.putDouble(p * Double.BYTES, w);
+        }
+
+        /** Write out the edges in my buffer. */
+        private void flush() throws IOException {
+            _buffer.flip();
+            while (_buffer.hasRemaining()) {
+                _scratch.write(_buffer);
+            }
+            _buffer.clear();
+        }
+
+        /** Prepare to read the scratch file from its start. */
+        private void rewind() throws IOException {
+            _scratch.position(0);
+            _buffer.clear();
+            _buffer.flip();
+        }
+
+        /** Make sure my buffer holds at least one edge read from the
+         *  scratch file, if any remain.  Returns false if none do. */
+        private boolean next() throws IOException {
+            if (_buffer.remaining() >= RECORD) {
+                return true;
+            }
+            _buffer.compact();
+            while (_buffer.hasRemaining() && _scratch.read(_buffer) > 0) {
+                continue;
+            }
+            _buffer.flip();
+            return _buffer.remaining() >= RECORD;
+        }
+
+        /** Returns the SIZE bytes of my file at POSITION, mapped for
+         *  writing. */
+        private MappedByteBuffer map(long position, long size)
+            throws IOException {
+            MappedByteBuffer b =
+                _channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+            b.order(ByteOrder.nativeOrder());
+            return b;
+        }
+
+        /** Bytes in the record of one edge in the scratch file. */
+        private static final int RECORD = 2 * Integer.BYTES + Double.BYTES;
+        /** Bytes of edges buffered between the scratch file and me. */
+        private static final int BUFFER_SIZE = 4096 * RECORD;
+
+        /** The file being written. */
+        private final File _file;
+        /** Number of vertices. */
+        private final int _n;
+        /** True iff each edge is stored in both directions. */
+        private final boolean _undirected;
+        /** Open on _file. */
+        private final FileChannel _channel;
+        /** The x and y positions, mapped from _file. */
+        private final MappedByteBuffer _x, _y;
+        /** Holds the edges, in the order given, until finish. */
+        private final File _scratchFile;
+        /** Open on _scratchFile. */
+        private final FileChannel _scratch;
+        /** Edges on their way to or from _scratch. */
+        private final ByteBuffer _buffer;
+        /** Number of edges to be stored. */
+        private long _edges;
+    }
+
+    /** My file. */
+    private final FileChannel _channel;
+    /** Number of vertices. */
+    private final int _n;
+    /** Number of stored edges. */
+    private final int _m;
+    /** Positions of the vertices. */
+    private final ByteBuffer _x, _y;
+    /** Index of the first edge leaving each vertex, followed by _m. */
+    private final ByteBuffer _first;
+    /** The vertices entered by the edges, and the edges' weights. */
+    private final ByteBuffer _targets, _weights;
+}
@@ -0,0 +1,299 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/** A search for a shortest path by hash-distributed A* (HDA*, Kishimoto,
+ *  Fukunaga and Botea).  Each vertex is owned by one of several workers,
+ *  chosen by hashing its number, and only its owner keeps its open-list
+ *  entry and its distance from the start.  A worker expands the best
+ *  vertex in its own open list, and sends each successor it does not own,
+ *  with its new distance, to the successor's owner through that owner's
+ *  lock-free queue of messages.  The owner of the goal records the best
+ *  path found so far (the incumbent); a worker whose open list holds no
+ *  vertex that could lead to a better one is idle.  The search ends when
+ *  every worker is idle and no message is in flight, and the incumbent
+ *  is then a shortest path, as the heuristic is admissible.
+ *  @author Brian Su
+ */
+class ParallelAStar<VLabel, ELabel> {
+
+    /** A search for a shortest path from V0 to V1 in G, with weights of
+     *  edges given by EWEIGHTER and estimates of the distance to V1 given
+     *  by H, by THREADS workers.  H and EWEIGHTER must be safe to call
+     *  from several threads at once. */
+    @SuppressWarnings("unchecked")
+    ParallelAStar(Graph<VLabel, ELabel> G, Graph<VLabel, ELabel>.Vertex V0,
+                  Graph<VLabel, ELabel>.Vertex V1,
+                  Distancer<? super VLabel> h,
+                  Weighting<? super ELabel> eweighter, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("need at least one thread");
+        }
+        _G = G;
+        _V0 = V0;
+        _V1 = V1;
+        _h = h;
+        _eweighter = eweighter;
+        int n = G.vertexSize();
+        _gScores = new double[n];
+        _fScores = new double[n];
+        _parent = (Graph<VLabel, ELabel>.Edge[]) new Graph.Edge[n];
+        _workers = new ArrayList<Worker>(threads);
+        for (int i = 0; i < threads; i += 1) {
+            _workers.add(new Worker(i));
+        }
+    }
+
+    /** Returns a path of least weight from my start to my goal, or an
+     *  empty list if there is none, setting the weight of each vertex
+     *  reached with VWEIGHTER as the 7-argument Graphs.shortestPath
+     *  does. */
+    List<Graph<VLabel, ELabel>.Edge> search(Weighter<? super VLabel>
+                                            vweighter) {
+        Arrays.fill(_gScores, Double.POSITIVE_INFINITY);
+        _incumbent.set(INFINITY);
+        _work.set(_workers.size());
+        _workers.get(owner(_G.id(_V0))).receive(_G.id(_V0), 0, null);
+
+        Thread[] threads = new Thread[_workers.size() - 1];
+        for (int i = 0; i < threads.length; i += 1) {
+            threads[i] = new Thread(_workers.get(i + 1), "hda-" + (i + 1));
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        _workers.get(0).run();
+        for (Thread t : threads) {
+            while (true) {
+                try {
+                    t.join();
+                    break;
+                } catch (InterruptedException e) {
+                    /* Keep waiting: the workers stop on their own. */
+                }
+            }
+        }
+        for (Worker w : _workers) {
+            if (w._failure instanceof RuntimeException) {
+                throw (RuntimeException) w._failure;
+            } else if (w._failure != null) {
+                throw (Error) w._failure;
+            }
+        }
+
+        for (Graph<VLabel, ELabel>.Vertex v : _G.vertices()) {
+            int id = _G.id(v);
+            vweighter.setWeight(v.getLabel(),
+                                _gScores[id] == Double.POSITIVE_INFINITY
+                                ? Double.POSITIVE_INFINITY : _fScores[id]);
+        }
+        List<Graph<VLabel, ELabel>.Edge> path =
+            new ArrayList<Graph<VLabel, ELabel>.Edge>();
+        if (_gScores[_G.id(_V1)] == Double.POSITIVE_INFINITY) {
+            return path;
+        }
+        Graph<VLabel, ELabel>.Vertex curr = _V1;
+        Graph<VLabel, ELabel>.Edge e = _parent[_G.id(_V1)];
+        while (e != null) {
+            curr = e.getV(curr);
+            path.add(e);
+            e = _parent[_G.id(curr)];
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /** Returns the number of the worker owning vertex V. */
+    private int owner(int v) {
+        int x = v * 0x9E3779B9;
+        return (int) (((x ^ (x >>> 16)) & 0xffffffffL) % _workers.size());
+    }
+
+    /** Returns the weight of the best path to the goal found so far. */
+    private double incumbent() {
+        return Double.longBitsToDouble(_incumbent.get());
+    }
+
+    /** A distance from the start to a vertex, sent to its owner. */
+    private static class Message {
+        /** A message that VERTEX is at distance G from the start, reached
+         *  by EDGE. */
+        Message(int vertex, double g, Graph<?, ?>.Edge edge) {
+            _vertex = vertex;
+            _g = g;
+            _edge = edge;
+        }
+
+        /** The vertex. */
+        private final int _vertex;
+        /** Its distance. */
+        private final double _g;
+        /** The last edge of the path giving _G. */
+        private final Graph<?, ?>.Edge _edge;
+    }
+
+    /** One of the threads of the search, with its own open list and queue
+     *  of incoming messages. */
+    private class Worker implements Runnable {
+
+        /** Worker number ME. */
+        Worker(int me) {
+            _me = me;
+        }
+
+        @Override
+        public void run() {
+            try {
+                work();
+            } catch (RuntimeException | Error e) {
+                _failure = e;
+                _failed = true;
+            }
+        }
+
+        /** Expand my vertices until the search is over, or another worker
+         *  has failed. */
+        @SuppressWarnings("unchecked")
+        private void work() {
+            while (!_failed) {
+                Message m = _inbox.poll();
+                if (m != null) {
+                    _spins = 0;
+                    if (_idle) {
+                        _idle = false;
+                        _work.incrementAndGet();
+                    }
+                    receive(m._vertex, m._g,
+                            (Graph<VLabel, ELabel>.Edge) m._edge);
+                    _work.decrementAndGet();
+                    continue;
+                }
+                double best = incumbent();
+                while (!_open.isEmpty() && _open.minKey() < best) {
+                    double f = _open.minKey();
+                    int c = _open.remove();
+                    if (f == _fScores[c]) {
+                        expand(c);
+                        break;
+                    }
+                }
+                if (!_open.isEmpty() && _open.minKey() < best) {
+                    continue;
+                }
+                if (!_idle) {
+                    _idle = true;
+                    _work.decrementAndGet();
+                }
+                if (_work.get() == 0) {
+                    return;
+                }
+                _spins += 1;
+                if (_spins < SPINS) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(PARK);
+                }
+            }
+        }
+
+        /** Relax the edges leaving vertex C, which I own. */
+        private void expand(int c) {
+            Graph<VLabel, ELabel>.Vertex curr = _G.vertex(c);
+            double g = _gScores[c];
+            for (int k = 0; k < _G.outDegree(curr); k += 1) {
+                Graph<VLabel, ELabel>.Edge e = _G.outEdge(curr, k);
+                int w = _G.id(e.getV(curr));
+                double tG = g + _eweighter.weight(e.getLabel());
+                int o = owner(w);
+                if (o == _me) {
+                    receive(w, tG, e);
+                } else {
+                    _work.incrementAndGet();
+                    _workers.get(o)._inbox.add(new Message(w, tG, e));
+                }
+            }
+        }
+
+        /** Note that vertex V, which I own, is at distance G from the
+         *  start by a path ending in edge E. */
+        void receive(int v, double g, Graph<VLabel, ELabel>.Edge e) {
+            if (g >= _gScores[v]) {
+                return;
+            }
+            Graph<VLabel, ELabel>.Vertex vertex = _G.vertex(v);
+            double f = g + _h.dist(vertex.getLabel(), _V1.getLabel());
+            _gScores[v] = g;
+            _fScores[v] = f;
+            _parent[v] = e;
+            if (vertex == _V1) {
+                long bits = Double.doubleToLongBits(g);
+                while (true) {
+                    long old = _incumbent.get();
+                    if (old <= bits
+                        || _incumbent.compareAndSet(old, bits)) {
+                        break;
+                    }
+                }
+            } else if (f < incumbent()) {
+                _open.add(v, f);
+            }
+        }
+
+        /** My number. */
+        private final int _me;
+        /** My open list. */
+        private final Graphs.IntHeap _open = new Graphs.IntHeap();
+        /** Messages sent to me. */
+        private final ConcurrentLinkedQueue<Message> _inbox =
+            new ConcurrentLinkedQueue<Message>();
+        /** True iff I have no work that could improve the incumbent. */
+        private boolean _idle;
+        /** Number of times I have found nothing to do since I last
+         *  received a message. */
+        private int _spins;
+        /** The exception that stopped me, if any. */
+        private volatile Throwable _failure;
+    }
+
+    /** Number of times an idle worker yields before it starts sleeping
+     *  between looks at its messages. */
+    static final int SPINS = 64;
+
+    /** Nanoseconds an idle worker sleeps between looks at its messages,
+     *  once it has yielded SPINS times. */
+    static final long PARK = 20000;
+
+    /** The bits of Double.POSITIVE_INFINITY. */
+    private static final long INFINITY =
+        Double.doubleToLongBits(Double.POSITIVE_INFINITY);
+
+    /** The graph searched. */
+    private final Graph<VLabel, ELabel> _G;
+    /** The start and goal. */
+    private final Graph<VLabel, ELabel>.Vertex _V0, _V1;
+    /** Estimates of the distance to the goal. */
+    private final Distancer<? super VLabel> _h;
+    /** Weights of edges. */
+    private final Weighting<? super ELabel> _eweighter;
+    /** The best known distance from the start to each vertex, and that
+     *  plus the estimate of its distance to the goal, indexed by id.
+     *  Only the owner of a vertex touches its entries during the
+     *  search. */
+    private final double[] _gScores, _fScores;
+    /** The last edge of the best known path to each vertex. */
+    private final Graph<VLabel, ELabel>.Edge[] _parent;
+    /** The workers. */
+    private final ArrayList<Worker> _workers;
+    /** The bits of the weight of the best path to the goal found. */
+    private final AtomicLong _incumbent = new AtomicLong();
+    /** The number of messages in flight plus the number of workers that
+     *  are not idle.  The search is over when it reaches 0. */
+    private final AtomicLong _work = new AtomicLong();
+    /** True once a worker has thrown an exception. */
+    private volatile boolean _failed;
+}
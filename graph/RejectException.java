@@ -6,6 +6,11 @@ package graph;
  */
 public class RejectException extends RuntimeException {
 
+    /** A shared RejectException with no message and no stack trace,
+     *  which is cheap to throw where only the signal matters. */
+    public static final RejectException REJECT =
+        new RejectException(null, false);
+
     /** A RejectException with no message. */
     public RejectException() {
     }
@@ -15,4 +20,10 @@ public class RejectException extends RuntimeException {
         super(msg);
     }
 
+    /** A RejectException with MSG as its message, which records a stack
+     *  trace when created iff TRACE. */
+    protected RejectException(String msg, boolean trace) {
+        super(msg, null, false, trace);
+    }
+
 }
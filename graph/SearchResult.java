@@ -0,0 +1,59 @@
+package graph;
+
+import java.util.List;
+
+/** The result of a shortest-path search given a Deadline: how it ended,
+ *  the path it found if it ran to its end, and the least weight it
+ *  proved a path between its ends must have.
+ *  @author Brian Su
+ */
+public final class SearchResult<VLabel, ELabel> {
+
+    /** A search that ended with STATUS, finding PATH, and proving that
+     *  no path is lighter than LOWERBOUND. */
+    SearchResult(SearchStatus status, List<Graph<VLabel, ELabel>.Edge> path,
+                 double lowerBound) {
+        _status = status;
+        _path = path;
+        _lowerBound = lowerBound;
+    }
+
+    /** Returns how the search ended. */
+    public SearchStatus status() {
+        return _status;
+    }
+
+    /** Returns true iff the search ran to its end, so that path() is a
+     *  shortest path, or empty if there is none. */
+    public boolean isComplete() {
+        return _status == SearchStatus.COMPLETE;
+    }
+
+    /** Returns the edges of a shortest path, in order, if the search is
+     *  complete and found one, and otherwise an empty list. */
+    public List<Graph<VLabel, ELabel>.Edge> path() {
+        return _path;
+    }
+
+    /** Returns a weight no path between the ends searched can be lighter
+     *  than.  For a complete search, this is the weight of path(), or
+     *  Double.POSITIVE_INFINITY if there is no path; for one that gave
+     *  up, it is the least estimated weight of a path through a vertex
+     *  still to be expanded. */
+    public double lowerBound() {
+        return _lowerBound;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s (at least %g)", _status, _path,
+                             _lowerBound);
+    }
+
+    /** How the search ended. */
+    private final SearchStatus _status;
+    /** The path found. */
+    private final List<Graph<VLabel, ELabel>.Edge> _path;
+    /** The proven lower bound on the weight of a path. */
+    private final double _lowerBound;
+}
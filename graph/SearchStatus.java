@@ -0,0 +1,14 @@
+package graph;
+
+/** How a search or traversal given a Deadline ended.
+ *  @author Brian Su
+ */
+public enum SearchStatus {
+    /** It ran to its end (or was stopped by a visit method), and its
+     *  result is final. */
+    COMPLETE,
+    /** It gave up because the time of its Deadline passed. */
+    TIMED_OUT,
+    /** It gave up because its Deadline was cancelled. */
+    CANCELLED;
+}
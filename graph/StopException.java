@@ -6,6 +6,10 @@ package graph;
  */
 public class StopException extends RuntimeException {
 
+    /** A shared StopException with no message and no stack trace, which
+     *  is cheap to throw where only the signal matters. */
+    public static final StopException STOP = new StopException(null, false);
+
     /** A StopException with no message. */
     public StopException() {
     }
@@ -15,4 +19,10 @@ public class StopException extends RuntimeException {
         super(msg);
     }
 
+    /** A StopException with MSG as its message, which records a stack
+     *  trace when created iff TRACE. */
+    protected StopException(String msg, boolean trace) {
+        super(msg, null, false, trace);
+    }
+
 }
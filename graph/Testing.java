@@ -0,0 +1,1081 @@
+package graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
+
+import org.junit.Test;
+import ucb.junit.textui;
+import static org.junit.Assert.*;
+
+/* You MAY add public @Test methods to this class.  You may also add
+ * additional public classes containing "Testing" in their name. These
+ * may not be part of your graph package per se (that is, it must be
+ * possible to remove them and still have your package work). */
+
+/** Unit tests for the graph package.
+ *  @author Brian Su
+ */
+public class Testing {
+
+    /** Run all JUnit tests in the graph package. */
+    public static void main(String[] ignored) {
+        System.exit(textui.runClasses(graph.Testing.class));
+    }
+
+    /** Records the order of visits and postvisits as strings. */
+    private static class Trail extends Traversal<String, String> {
+
+        @Override
+        protected void visit(Graph<String, String>.Vertex v) {
+            _trail.add(v + "B");
+        }
+
+        @Override
+        protected void postVisit(Graph<String, String>.Vertex v) {
+            _trail.add(v + "C");
+        }
+
+        /** The visits so far. */
+        private ArrayList<String> _trail = new ArrayList<>();
+    }
+
+    /** Records the depths at which a parallel breadth-first traversal
+     *  visits vertices. */
+    private static class Depths extends Traversal<String, String> {
+
+        @Override
+        protected void concurrentVisit(Graph<String, String>.Vertex v,
+                                       int depth) {
+            if (_depths.put(v.getLabel(), depth) != null) {
+                throw new IllegalStateException("visited twice: " + v);
+            }
+        }
+
+        /** Depth of each vertex visited so far, by label. */
+        private ConcurrentHashMap<String, Integer> _depths =
+            new ConcurrentHashMap<>();
+    }
+
+    /** Returns a directed graph with vertices 0-5 and edges
+     *  0->1, 1->2, 3->1, 3->4, 5->4. */
+    private static Graph<String, String> dag(List<Graph<String, String>.Vertex>
+                                             vertices) {
+        Graph<String, String> g = new DirectedGraph<>();
+        for (int i = 0; i < 6; i += 1) {
+            vertices.add(g.add(Integer.toString(i)));
+        }
+        int[][] edges = { {0, 1}, {1, 2}, {3, 1}, {3, 4}, {5, 4} };
+        for (int[] e : edges) {
+            g.add(vertices.get(e[0]), vertices.get(e[1]));
+        }
+        return g;
+    }
+
+    @Test
+    public void depthFirstFromSeveralRoots() {
+        List<Graph<String, String>.Vertex> v = new ArrayList<>();
+        Graph<String, String> g = dag(v);
+        Trail t = new Trail();
+        t.depthFirstTraverse(g, asList(v.get(0), v.get(3), v.get(5)));
+        assertEquals(asList("0B", "1B", "2B", "2C", "1C", "0C",
+                            "3B", "4B", "4C", "3C", "5B", "5C"),
+                     t._trail);
+    }
+
+    @Test
+    public void statsCountTraversalSteps() {
+        List<Graph<String, String>.Vertex> v = new ArrayList<>();
+        Graph<String, String> g = dag(v);
+        TraversalStats stats = new TraversalStats();
+        Trail t = new Trail();
+        t.setListener(stats);
+        t.depthFirstTraverse(g, asList(v.get(0), v.get(3), v.get(5)));
+        assertEquals(6, stats.getSettled());
+        assertEquals(5, stats.getExamined());
+        assertEquals(3, stats.getRelaxed());
+        assertEquals(15, stats.getPushed());
+        assertEquals(15, stats.getPopped());
+        assertEquals(0, stats.getStopped());
+        assertEquals(asList("init", "traverse"),
+                     new ArrayList<>(stats.getPhaseNanos().keySet()));
+
+        stats.reset();
+        Trail s = new Trail() {
+            @Override
+            protected void visit(Graph<String, String>.Vertex x) {
+                if (x.getLabel().equals("1")) {
+                    throw new StopException();
+                }
+            }
+        };
+        s.setListener(stats);
+        s.depthFirstTraverse(g, v.get(0));
+        assertEquals(1, stats.getStopped());
+        assertEquals(1, stats.getSettled());
+    }
+
+    /** A Trail that rejects edges into vertex 4 and stops on visiting
+     *  vertex 2, by throwing the shared signals. */
+    private static class Thrower extends Trail {
+        @Override
+        protected void preVisit(Graph<String, String>.Edge e,
+                                Graph<String, String>.Vertex v0) {
+            if (e.getV(v0).getLabel().equals("4")) {
+                throw RejectException.REJECT;
+            }
+        }
+
+        @Override
+        protected void visit(Graph<String, String>.Vertex v) {
+            super.visit(v);
+            if (v.getLabel().equals("2")) {
+                throw StopException.STOP;
+            }
+        }
+    }
+
+    /** A Trail that does as a Thrower does, by returning Actions. */
+    private static class Returner extends Trail {
+        @Override
+        protected Action tryPreVisit(Graph<String, String>.Edge e,
+                                     Graph<String, String>.Vertex v0) {
+            return e.getV(v0).getLabel().equals("4")
+                ? Action.REJECT : Action.CONTINUE;
+        }
+
+        @Override
+        protected Action tryVisit(Graph<String, String>.Vertex v) {
+            visit(v);
+            return v.getLabel().equals("2") ? Action.STOP : Action.CONTINUE;
+        }
+    }
+
+    @Test
+    public void returnedActionsMatchThrownSignals() {
+        assertEquals(0, StopException.STOP.getStackTrace().length);
+        assertEquals(0, RejectException.REJECT.getStackTrace().length);
+        List<Graph<String, String>.Vertex> v = new ArrayList<>();
+        Graph<String, String> g = dag(v);
+        g.add(v.get(2), v.get(4));
+        for (int kind = 0; kind < 3; kind += 1) {
+            List<String> trails = new ArrayList<>();
+            List<Long> counts = new ArrayList<>();
+            for (Trail t : asList(new Thrower(), new Returner())) {
+                TraversalStats stats = new TraversalStats();
+                t.setListener(stats);
+                for (int root : new int[] { 0, 3 }) {
+                    if (kind == 0) {
+                        t.depthFirstTraverse(g, v.get(root));
+                    } else if (kind == 1) {
+                        t.breadthFirstTraverse(g, v.get(root));
+                    } else {
+                        t.traverse(g, v.get(root), String::compareTo);
+                    }
+                    if (root == 0) {
+                        assertEquals(v.get(2), t.finalVertex());
+                        t.continueTraversing(v.get(3));
+                    }
+                }
+                trails.add(t._trail.toString());
+                counts.addAll(asList(stats.getRejected(), stats.getStopped(),
+                                     stats.getRelaxed()));
+            }
+            assertEquals(trails.get(0), trails.get(1));
+            assertFalse(trails.get(0).contains("4B"));
+            assertEquals(counts.subList(0, 3), counts.subList(3, 6));
+        }
+    }
+
+    /** Returns the labels of the vertices of ITER, each followed by
+     *  SUFFIX. */
+    private static List<String> labels(
+            Iteration<Graph<String, String>.Vertex> iter, String suffix) {
+        List<String> result = new ArrayList<>();
+        for (Graph<String, String>.Vertex v : iter) {
+            result.add(v + suffix);
+        }
+        return result;
+    }
+
+    /** Returns the elements of TRAIL that end in SUFFIX. */
+    private static List<String> ending(List<String> trail, String suffix) {
+        return trail.stream().filter(x -> x.endsWith(suffix))
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    public void iterationsMatchTraversals() {
+        Random rand = new Random(47);
+        for (boolean directed : new boolean[] { true, false }) {
+            Graph<String, String> g =
+                directed ? new DirectedGraph<>() : new UndirectedGraph<>();
+            List<Graph<String, String>.Vertex> v = new ArrayList<>();
+            for (int i = 0; i < 200; i += 1) {
+                v.add(g.add(String.format("%03d", rand.nextInt(1000))
+                            + "." + i));
+            }
+            for (int i = 0; i < 300; i += 1) {
+                g.add(v.get(rand.nextInt(200)), v.get(rand.nextInt(200)));
+            }
+            Graph<String, String>.Vertex s = v.get(0);
+            Trail t = new Trail();
+            Trail dfs = new Trail();
+            dfs.depthFirstTraverse(g, s);
+            assertEquals(ending(dfs._trail, "B"),
+                         labels(t.preOrder(g, s), "B"));
+            assertEquals(ending(dfs._trail, "C"),
+                         labels(t.postOrder(g, s), "C"));
+            Trail bfs = new Trail();
+            bfs.breadthFirstTraverse(g, s);
+            assertEquals(ending(bfs._trail, "B"),
+                         labels(t.breadthFirst(g, s), "B"));
+            Trail gen = new Trail();
+            gen.traverse(g, s, String::compareTo);
+            assertEquals(gen._trail,
+                         labels(t.priorityOrder(g, s, String::compareTo),
+                                "B"));
+        }
+    }
+
+    @Test
+    public void keyedTraversalMatchesComparator() {
+        List<Graph<String, String>.Vertex> v = new ArrayList<>();
+        Graph<String, String> g = dag(v);
+        g.add(v.get(2), v.get(4));
+        List<String> trails = new ArrayList<>();
+        List<Long> counts = new ArrayList<>();
+        for (Trail t : asList(new Thrower(), new Returner())) {
+            TraversalStats stats = new TraversalStats();
+            t.setListener(stats);
+            t.traverse(g, v.get(0), Double::parseDouble);
+            assertEquals(v.get(2), t.finalVertex());
+            t.continueTraversing(v.get(3));
+            t.traverse(g, v.get(3), Double::parseDouble);
+            trails.add(t._trail.toString());
+            counts.addAll(asList(stats.getRejected(), stats.getStopped(),
+                                 stats.getRelaxed()));
+        }
+        assertEquals(trails.get(0), trails.get(1));
+        assertFalse(trails.get(0).contains("4B"));
+        assertEquals(counts.subList(0, 3), counts.subList(3, 6));
+        Trail ordered = new Thrower();
+        ordered.traverse(g, v.get(0), String::compareTo);
+        ordered.continueTraversing(v.get(3));
+        ordered.traverse(g, v.get(3), String::compareTo);
+        assertEquals(ordered._trail.toString(), trails.get(0));
+
+        Random rand = new Random(48);
+        for (boolean directed : new boolean[] { true, false }) {
+            Graph<String, String> h =
+                directed ? new DirectedGraph<>() : new UndirectedGraph<>();
+            List<Graph<String, String>.Vertex> w = new ArrayList<>();
+            for (int i = 0; i < 200; i += 1) {
+                w.add(h.add(String.format("%03d.%03d", rand.nextInt(1000),
+                                          i)));
+            }
+            for (int i = 0; i < 300; i += 1) {
+                h.add(w.get(rand.nextInt(200)), w.get(rand.nextInt(200)));
+            }
+            Trail gen = new Trail();
+            gen.traverse(h, w.get(0), String::compareTo);
+            Trail keyed = new Trail();
+            keyed.traverse(h, w.get(0), Double::parseDouble);
+            assertEquals(gen._trail, keyed._trail);
+        }
+    }
+
+    @Test
+    public void iterationsAreLazy() {
+        List<Graph<String, String>.Vertex> v = new ArrayList<>();
+        Graph<String, String> g = new DirectedGraph<>();
+        for (int i = 0; i < 1000; i += 1) {
+            v.add(g.add(Integer.toString(i)));
+        }
+        for (int i = 0; i < 1000; i += 1) {
+            for (int k = 1; k <= 4; k += 1) {
+                g.add(v.get(i), v.get((i + k) % 1000));
+            }
+        }
+        Trail t = new Trail();
+        TraversalStats stats = new TraversalStats();
+        t.setListener(stats);
+        Iteration<Graph<String, String>.Vertex> iter =
+            t.breadthFirst(g, v.get(0));
+        for (int i = 0; i < 5; i += 1) {
+            assertEquals(v.get(i), iter.next());
+        }
+        assertEquals(16, stats.getExamined());
+        assertEquals(5, stats.getSettled());
+        iter = t.preOrder(g, v.get(0));
+        stats.reset();
+        for (int i = 0; i < 5; i += 1) {
+            assertEquals(v.get(i), iter.next());
+        }
+        assertEquals(4, stats.getExamined());
+        assertTrue(t._trail.isEmpty());
+    }
+
+    @Test
+    public void parallelBreadthFirstDepths() {
+        Graph<String, String> g = new DirectedGraph<>();
+        Graph<String, String>.Vertex root = g.add("r");
+        List<Graph<String, String>.Vertex> grand = new ArrayList<>();
+        for (int j = 0; j < 100; j += 1) {
+            grand.add(g.add("g" + j));
+        }
+        for (int i = 0; i < 1000; i += 1) {
+            Graph<String, String>.Vertex c = g.add("c" + i);
+            g.add(root, c);
+            g.add(c, grand.get(i % 100));
+            g.add(c, root);
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Depths d = new Depths();
+        d.parallelBreadthFirstTraverse(g, root, pool);
+        pool.shutdown();
+        assertEquals(1101, d._depths.size());
+        assertEquals(0, (int) d._depths.get("r"));
+        for (int i = 0; i < 1000; i += 1) {
+            assertEquals(1, (int) d._depths.get("c" + i));
+        }
+        for (int j = 0; j < 100; j += 1) {
+            assertEquals(2, (int) d._depths.get("g" + j));
+        }
+        assertNull(d.finalVertex());
+
+        List<Graph<String, String>.Vertex> v = new ArrayList<>();
+        Depths d2 = new Depths();
+        d2.parallelBreadthFirstTraverse(dag(v), v.get(3));
+        assertEquals(4, d2._depths.size());
+        assertEquals(2, (int) d2._depths.get("2"));
+    }
+
+    /** Returns the labels of the vertices visited by T. */
+    private static HashSet<String> visited(Trail t) {
+        HashSet<String> result = new HashSet<>();
+        for (String s : t._trail) {
+            if (s.endsWith("B")) {
+                result.add(s.substring(0, s.length() - 1));
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void directionOptimizingVisitsSameVertices() {
+        Random rand = new Random(35);
+        Graph<String, String> g = new DirectedGraph<>();
+        List<Graph<String, String>.Vertex> v = new ArrayList<>();
+        for (int i = 0; i < 400; i += 1) {
+            v.add(g.add(Integer.toString(i)));
+        }
+        for (int i = 0; i < 400; i += 1) {
+            for (int k = 0; k < 12; k += 1) {
+                g.add(v.get(i), v.get(rand.nextInt(300)));
+            }
+        }
+        Trail bfs = new Trail();
+        bfs.breadthFirstTraverse(g, v.get(0));
+        HashSet<String> expected = visited(bfs);
+        assertEquals(300, expected.size());
+
+        TraversalStats topDown = new TraversalStats();
+        Trail t = new Trail();
+        t.setListener(topDown);
+        t.directionOptimizingBreadthFirstTraverse(g, v.get(0), 0, 0);
+        assertEquals(expected, visited(t));
+
+        TraversalStats optimized = new TraversalStats();
+        t = new Trail();
+        t.setListener(optimized);
+        t.directionOptimizingBreadthFirstTraverse(g, v.get(0));
+        assertEquals(expected, visited(t));
+        assertTrue(optimized.getExamined() < topDown.getExamined());
+
+        t = new Trail();
+        t.directionOptimizingBreadthFirstTraverse(g, v.get(0), 1000, 1000);
+        assertEquals(expected, visited(t));
+    }
+
+    /** A Trail whose deadline is cancelled by its Kth visit. */
+    private static class Canceller extends Trail {
+        Canceller(int k) {
+            _k = k;
+            setDeadline(new Deadline());
+        }
+
+        @Override
+        protected void visit(Graph<String, String>.Vertex v) {
+            super.visit(v);
+            _visits += 1;
+            if (_visits == _k) {
+                getDeadline().cancel();
+            }
+        }
+
+        /** Number of visits that cancels the deadline. */
+        private final int _k;
+        /** Number of visits so far. */
+        private int _visits;
+    }
+
+    @Test
+    public void deadlinesEndTraversals() {
+        Random rand = new Random(50);
+        Graph<String, String> g = new UndirectedGraph<>();
+        List<Graph<String, String>.Vertex> v = new ArrayList<>();
+        for (int i = 0; i < 1000; i += 1) {
+            v.add(g.add(String.format("%04d", i)));
+        }
+        for (int i = 0; i < 3000; i += 1) {
+            g.add(v.get(rand.nextInt(1000)), v.get(rand.nextInt(1000)));
+        }
+        for (int kind = 0; kind < 4; kind += 1) {
+            Canceller c = new Canceller(100);
+            TraversalStats stats = new TraversalStats();
+            c.setListener(stats);
+            if (kind == 0) {
+                c.depthFirstTraverse(g, v.get(0));
+            } else if (kind == 1) {
+                c.breadthFirstTraverse(g, v.get(0));
+            } else if (kind == 2) {
+                c.traverse(g, v.get(0), String::compareTo);
+            } else {
+                c.traverse(g, v.get(0), Double::parseDouble);
+            }
+            assertEquals(SearchStatus.CANCELLED, c.status());
+            assertEquals(1, stats.getStopped());
+            int visits = c._visits;
+            assertTrue(visits >= 100 && visits <= 100 + Deadline.PERIOD);
+            Graph<String, String>.Vertex last = c.finalVertex();
+            assertFalse(visited(c).contains(last.getLabel()));
+
+            c.setDeadline(null);
+            c.continueTraversing(last);
+            assertEquals(SearchStatus.COMPLETE, c.status());
+            assertNull(c.finalVertex());
+            assertEquals(last + "B", ((Trail) c)._trail.stream()
+                         .filter(x -> x.endsWith("B"))
+                         .skip(visits).findFirst().get());
+            assertEquals(c._visits, visited(c).size());
+        }
+
+        Trail t = new Trail();
+        t.setDeadline(Deadline.after(0));
+        t.directionOptimizingBreadthFirstTraverse(g, v.get(0));
+        assertEquals(SearchStatus.TIMED_OUT, t.status());
+        assertTrue(t._trail.isEmpty());
+        Depths d = new Depths();
+        d.setDeadline(Deadline.after(0));
+        d.parallelBreadthFirstTraverse(g, v.get(0));
+        assertEquals(SearchStatus.TIMED_OUT, d.status());
+        assertTrue(d._depths.isEmpty());
+        d = new Depths();
+        d.parallelBreadthFirstTraverse(g, v.get(0));
+        assertEquals(SearchStatus.COMPLETE, d.status());
+    }
+
+    @Test
+    public void indexedAdjacency() {
+        Graph<String, String> g = new UndirectedGraph<>();
+        Graph<String, String>.Vertex a = g.add("a"), b = g.add("b"),
+            c = g.add("c");
+        g.add(a, b, "ab");
+        g.add(c, a, "ca");
+        g.add(a, b, "ab2");
+        assertEquals(3, g.outDegree(a));
+        List<String> labels = new ArrayList<>();
+        for (Graph<String, String>.Edge e : g.outEdges(a)) {
+            labels.add(e.getLabel());
+        }
+        List<String> indexed = new ArrayList<>();
+        List<Graph<String, String>.Vertex> succ = new ArrayList<>();
+        for (int k = 0; k < g.outDegree(a); k += 1) {
+            indexed.add(g.outEdge(a, k).getLabel());
+            succ.add(g.successor(a, k));
+        }
+        assertEquals(labels, indexed);
+        assertEquals(asList(b, c, b), succ);
+        final List<Graph<String, String>.Vertex> pred = new ArrayList<>();
+        g.forEachPredecessor(a, pred::add);
+        assertEquals(asList(b, c, b), pred);
+
+        g.remove(b, a);
+        assertEquals(1, g.outDegree(a));
+        assertEquals(1, g.inDegree(a));
+        assertEquals(0, g.outDegree(b));
+        assertEquals(c, g.successor(a, 0));
+        assertEquals("ca", g.inEdge(a, 0).getLabel());
+        g.remove(c);
+        assertEquals(0, g.outDegree(a));
+        assertFalse(g.outEdges(a).hasNext());
+    }
+
+    @Test
+    public void streams() {
+        Graph<String, String> g = new UndirectedGraph<>();
+        List<Graph<String, String>.Vertex> v = new ArrayList<>();
+        for (int i = 0; i < 1000; i += 1) {
+            v.add(g.add(Integer.toString(i)));
+        }
+        for (int i = 1; i < 1000; i += 1) {
+            g.add(v.get(i - 1), v.get(i), Integer.toString(i));
+        }
+        g.remove(v.get(0));
+        g.remove(v.get(500));
+        assertEquals(998, g.vertexStream().parallel().count());
+        assertTrue(g.vertexStream().noneMatch(x -> x == v.get(500)));
+        Set<Graph<String, String>.Vertex> all = new HashSet<>();
+        for (Graph<String, String>.Vertex x : g.vertices()) {
+            all.add(x);
+        }
+        assertEquals(all, g.vertexStream().parallel()
+                     .collect(Collectors.toSet()));
+        assertEquals(g.edgeSize(), g.edgeStream().parallel().count());
+        long sum = 0;
+        for (Graph<String, String>.Edge e : g.edges()) {
+            sum += Integer.parseInt(e.getLabel());
+        }
+        assertEquals(sum, g.edgeStream().parallel()
+                     .mapToLong(e -> Integer.parseInt(e.getLabel())).sum());
+    }
+
+    @Test
+    public void builderMatchesAdd() {
+        for (boolean directed : new boolean[] { true, false }) {
+            Graph<Integer, Integer> g1, g2;
+            if (directed) {
+                g1 = new DirectedGraph<>();
+                g2 = new DirectedGraph<>();
+            } else {
+                g1 = new UndirectedGraph<>();
+                g2 = new UndirectedGraph<>();
+            }
+            GraphBuilder<Integer, Integer> b =
+                new GraphBuilder<>(g2, 10, 4);
+            List<Graph<Integer, Integer>.Vertex> v1 = new ArrayList<>();
+            for (int i = 0; i < 50; i += 1) {
+                v1.add(g1.add(i));
+                b.add(i);
+            }
+            Random r = new Random(38);
+            int[] from = new int[200], to = new int[200];
+            Integer[] labels = new Integer[200];
+            for (int k = 0; k < 200; k += 1) {
+                from[k] = r.nextInt(50);
+                to[k] = r.nextInt(50);
+                labels[k] = k;
+                g1.add(v1.get(from[k]), v1.get(to[k]), k);
+            }
+            b.add(from, to, labels);
+            List<Graph<Integer, Integer>.Vertex> v2 = new ArrayList<>();
+            for (int i = 0; i < 50; i += 1) {
+                v2.add(b.vertex(i));
+            }
+            assertSame(g2, b.build());
+            assertEquals(g1.vertexSize(), g2.vertexSize());
+            assertEquals(g1.edgeSize(), g2.edgeSize());
+            for (int i = 0; i < 50; i += 1) {
+                Graph<Integer, Integer>.Vertex x1 = v1.get(i),
+                    x2 = v2.get(i);
+                assertEquals(g1.outDegree(x1), g2.outDegree(x2));
+                assertEquals(g1.inDegree(x1), g2.inDegree(x2));
+                for (int k = 0; k < g1.outDegree(x1); k += 1) {
+                    assertEquals(g1.outEdge(x1, k).getLabel(),
+                                 g2.outEdge(x2, k).getLabel());
+                    assertEquals(g1.successor(x1, k).getLabel(),
+                                 g2.successor(x2, k).getLabel());
+                }
+            }
+            Graph<Integer, Integer>.Vertex extra = b.add(50);
+            b.add(v2.get(0), extra, -1);
+            assertFalse(g2.contains(v2.get(0), extra));
+            b.build();
+            assertEquals(51, g2.vertexSize());
+            assertTrue(g2.contains(v2.get(0), extra));
+            assertEquals(g1.outDegree(v1.get(0)) + 1,
+                         g2.outDegree(v2.get(0)));
+
+            Graph<Integer, Integer>.Vertex stray = b.add(51);
+            b.add(stray, v1.get(0), -2);
+            try {
+                b.build();
+                fail("edge to a vertex of another graph was added");
+            } catch (IllegalArgumentException e) {
+                assertEquals(51, g2.vertexSize());
+                assertEquals(201, g2.edgeSize());
+                assertFalse(g2.vertexStream()
+                            .anyMatch(x -> x.getLabel() == 51));
+            }
+        }
+    }
+
+    @Test
+    public void undirectedEdgesStoredOnce() {
+        Graph<String, String> g = new UndirectedGraph<>();
+        Graph<String, String>.Vertex a = g.add("a"), b = g.add("b"),
+            c = g.add("c");
+        Graph<String, String>.Edge ab = g.add(a, b, "ab");
+        Graph<String, String>.Edge ca = g.add(c, a, "ca");
+        g.add(b, b, "bb");
+        assertEquals(3, g.edgeSize());
+        assertSame(ab, g.outEdge(b, 0));
+        assertSame(ab, g.inEdge(b, 0));
+        assertSame(ca, g.outEdge(a, 1));
+        assertEquals(b, g.successor(a, 0));
+        assertEquals(c, g.successor(a, 1));
+        assertEquals(a, g.predecessor(b, 0));
+        assertEquals(a, ab.getV(b));
+        assertEquals(3, g.outDegree(b));
+        assertTrue(g.contains(b, a));
+        assertTrue(g.contains(a, c, "ca"));
+        g.remove(a, c);
+        assertEquals(2, g.edgeSize());
+        assertEquals(1, g.outDegree(a));
+        assertEquals(0, g.outDegree(c));
+        g.remove(b);
+        assertEquals(0, g.edgeSize());
+        assertEquals(0, g.outDegree(a));
+        assertFalse(g.edges().hasNext());
+    }
+
+    @Test
+    public void mappedGraphShortestPaths() throws IOException {
+        Graph<P, W> g =
+            randomGraph(40, 300, 900, (d, r) -> d * (1 + r.nextDouble()));
+        File file = File.createTempFile("graphtest", null);
+        try (MappedGraph m = MappedGraph.write(file, g, W::weight,
+                                               v -> v._x, v -> v._y)) {
+            assertEquals(300, m.vertexSize());
+            assertEquals(2 * g.edgeSize(), m.edgeSize());
+            for (int v = 0; v < 300; v += 1) {
+                assertEquals(g.outDegree(g.vertex(v)), m.outDegree(v));
+                for (int k = 0; k < m.outDegree(v); k += 1) {
+                    assertEquals(g.id(g.successor(g.vertex(v), k)),
+                                 m.successor(v, k));
+                }
+                assertEquals(g.vertex(v).getLabel()._x, m.x(v), 0.0);
+            }
+            for (int t = 1; t < 300; t += 37) {
+                final int target = t;
+                List<Graph<P, W>.Edge> expected =
+                    Graphs.shortestPath(g, g.vertex(0), g.vertex(t),
+                                        Graphs.ZERO_DISTANCER);
+                int[] path = Graphs.shortestPath(m, 0, t,
+                                                 v -> m.dist(v, target));
+                if (expected.isEmpty()) {
+                    assertNull(path);
+                    continue;
+                }
+                double want = walk(expected, g.vertex(0), g.vertex(t));
+                double got = 0;
+                assertEquals(0, path[0]);
+                assertEquals(t, path[path.length - 1]);
+                for (int i = 1; i < path.length; i += 1) {
+                    double best = Double.POSITIVE_INFINITY;
+                    for (int k = 0; k < m.outDegree(path[i - 1]); k += 1) {
+                        if (m.successor(path[i - 1], k) == path[i]) {
+                            best = Math.min(best, m.weight(path[i - 1], k));
+                        }
+                    }
+                    got += best;
+                }
+                assertEquals(want, got, 1e-6);
+            }
+            final int[] seen = new int[1];
+            new Traversal<P, W>() {
+                @Override
+                protected void visit(int v) {
+                    seen[0] += 1;
+                }
+            }.breadthFirstTraverse(m, 0);
+            final int[] reached = new int[1];
+            new Traversal<P, W>() {
+                @Override
+                protected void visit(Graph<P, W>.Vertex v) {
+                    reached[0] += 1;
+                }
+            }.breadthFirstTraverse(g, g.vertex(0));
+            assertEquals(reached[0], seen[0]);
+        } finally {
+            file.delete();
+        }
+        file = File.createTempFile("graphtest", null);
+        try {
+            MappedGraph.write(file, g, W::weight, v -> v._x, v -> v._y)
+                .close();
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            for (int size : new int[] { 8, 12, 1000 }) {
+                Files.write(file.toPath(), Arrays.copyOf(bytes, size));
+                try {
+                    MappedGraph.open(file).close();
+                    fail("opened a graph cut to " + size + " bytes");
+                } catch (IOException e) {
+                    continue;
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void shortestPathMatchesDijkstra() {
+        Graph<P, W> g =
+            randomGraph(41, 400, 1600, (d, r) -> d * (1 + r.nextDouble()));
+        Weighter<P> vweighter = new Weighter<P>() {
+            public double weight(P v) {
+                return v.weight();
+            }
+            public void setWeight(P v, double w) {
+                v.setWeight(w);
+            }
+        };
+        Graph<P, W>.Vertex v0 = g.vertex(0);
+        for (int t = 1; t < 400; t += 13) {
+            Graph<P, W>.Vertex v1 = g.vertex(t);
+            double astar =
+                walk(Graphs.shortestPath(g, v0, v1, EUCLID, vweighter,
+                                         W::weight),
+                     v0, v1);
+            double dijkstra =
+                walk(Graphs.shortestPath(g, v0, v1, Graphs.ZERO_DISTANCER,
+                                         vweighter, W::weight),
+                     v0, v1);
+            assertEquals(dijkstra, astar, 1e-9);
+        }
+    }
+
+    /** A weighted vertex or edge label. */
+    static class W implements Weightable, Weighted {
+        W(double w) {
+            _w = w;
+        }
+
+        @Override
+        public double weight() {
+            return _w;
+        }
+
+        @Override
+        public void setWeight(double w) {
+            _w = w;
+        }
+
+        private double _w;
+    }
+
+    @Test
+    public void bucketShortestPathMatchesShortestPath() {
+        for (boolean fixed : new boolean[] { true, false }) {
+            Graph<P, W> g =
+                randomGraph(42, 300, 1200, (d, r) -> fixed
+                            ? r.nextInt(100000) / 1000.0
+                            : Math.sqrt(1 + r.nextInt(1000)));
+            Graph<P, W>.Vertex v0 = g.vertex(0);
+            for (int t = 1; t < 300; t += 11) {
+                Graph<P, W>.Vertex v1 = g.vertex(t);
+                double heap = walk(Graphs.shortestPath(g, v0, v1,
+                                                       Graphs.ZERO_DISTANCER),
+                                   v0, v1);
+                double bucket =
+                    walk(Graphs.bucketShortestPath(g, v0, v1,
+                                                   Graphs.ZERO_DISTANCER),
+                         v0, v1);
+                assertEquals(heap, bucket, 1e-9);
+                assertEquals(heap, v1.getLabel().weight(), 1e-9);
+            }
+        }
+        Graph<P, W> g =
+            randomGraph(142, 1500, 6000,
+                        (d, r) -> Math.ceil(d * (1 + r.nextDouble()) * 100)
+                        / 100);
+        Graph<P, W>.Vertex v0 = g.vertex(0);
+        for (int t = 1; t < 1500; t += 97) {
+            Graph<P, W>.Vertex v1 = g.vertex(t);
+            double heap = walk(Graphs.shortestPath(g, v0, v1, EUCLID), v0, v1);
+            double bucket =
+                walk(Graphs.bucketShortestPath(g, v0, v1, EUCLID), v0, v1);
+            assertEquals(heap, bucket, 1e-9);
+        }
+    }
+
+    /** A vertex label with a position in the plane. */
+    static class P extends W {
+        P(double x, double y) {
+            super(0);
+            _x = x;
+            _y = y;
+        }
+
+        private final double _x, _y;
+    }
+
+    /** Straight-line distance between P labels. */
+    private static final Distancer<P> EUCLID =
+        (a, b) -> Math.hypot(a._x - b._x, a._y - b._y);
+
+    /** Returns the total weight of PATH, checking that it leads from
+     *  V0 to V1, or infinity if PATH is empty and V1 is not V0, as when
+     *  there is no path between them. */
+    private static double walk(List<Graph<P, W>.Edge> path,
+                               Graph<P, W>.Vertex v0, Graph<P, W>.Vertex v1) {
+        if (path.isEmpty() && v0 != v1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double total = 0;
+        for (Graph<P, W>.Edge e : path) {
+            assertTrue(e.getV0() == v0 || e.getV1() == v0);
+            v0 = e.getV(v0);
+            total += e.getLabel().weight();
+        }
+        assertEquals(v1, v0);
+        return total;
+    }
+
+    /** The weight of a random edge. */
+    private interface EdgeWeight {
+        /** Returns the weight of an edge whose ends are D apart, drawing
+         *  any random numbers it needs from R. */
+        double weight(double d, Random r);
+    }
+
+    /** Returns an undirected graph of N vertices, labeled with points
+     *  placed at random in a 100 by 100 square, and M edges between
+     *  random pairs of them, with weights given by WEIGHT.  Draws from
+     *  a Random seeded with SEED, so that the graph depends only on the
+     *  arguments. */
+    private static Graph<P, W> randomGraph(long seed, int n, int m,
+                                           EdgeWeight weight) {
+        Random r = new Random(seed);
+        Graph<P, W> g = new UndirectedGraph<>();
+        for (int i = 0; i < n; i += 1) {
+            g.add(new P(r.nextDouble() * 100, r.nextDouble() * 100));
+        }
+        for (int k = 0; k < m; k += 1) {
+            Graph<P, W>.Vertex a = g.vertex(r.nextInt(n)),
+                b = g.vertex(r.nextInt(n));
+            double d = EUCLID.dist(a.getLabel(), b.getLabel());
+            g.add(a, b, new W(weight.weight(d, r)));
+        }
+        return g;
+    }
+
+    @Test
+    public void boundedShortestPathsKeepTheirBounds() {
+        Graph<P, W> g =
+            randomGraph(49, 1500, 6000, (d, r) -> d * (1 + r.nextDouble()));
+        Graph<P, W>.Vertex v0 = g.vertex(0);
+        for (int t = 1; t < 1500; t += 97) {
+            Graph<P, W>.Vertex v1 = g.vertex(t);
+            List<Graph<P, W>.Edge> shortest =
+                Graphs.shortestPath(g, v0, v1, EUCLID);
+            if (shortest.isEmpty()) {
+                continue;
+            }
+            double best = walk(shortest, v0, v1);
+            for (double eps : new double[] { 1, 1.5, 3 }) {
+                BoundedPath<P, W> p =
+                    Graphs.weightedShortestPath(g, v0, v1, EUCLID, eps);
+                assertEquals(walk(p.path(), v0, v1), p.weight(), 1e-9);
+                assertTrue(p.weight() <= eps * best + 1e-9);
+                assertTrue(p.bound() >= 1 && p.bound() <= eps + 1e-9);
+                assertTrue(p.weight() <= p.bound() * best + 1e-9);
+            }
+            BoundedPath<P, W> full =
+                Graphs.anytimeShortestPath(g, v0, v1, EUCLID, 3,
+                                           Long.MAX_VALUE);
+            assertEquals(best, walk(full.path(), v0, v1), 1e-9);
+            assertEquals(1, full.bound(), 0);
+            BoundedPath<P, W> hasty =
+                Graphs.anytimeShortestPath(g, v0, v1, EUCLID, 3, 0);
+            assertEquals(walk(hasty.path(), v0, v1), hasty.weight(), 1e-9);
+            assertTrue(hasty.weight() <= hasty.bound() * best + 1e-9);
+            assertTrue(hasty.bound() <= 3 + 1e-9);
+        }
+    }
+
+    @Test
+    public void deadlinesEndShortestPaths() {
+        Graph<P, W> g =
+            randomGraph(50, 1999, 8000, (d, r) -> d * (1 + r.nextDouble()));
+        Graph<P, W>.Vertex v0 = g.vertex(0), cut = g.add(new P(50, 50));
+        int cancelled = 0;
+        for (int t = 1; t < 1999; t += 111) {
+            Graph<P, W>.Vertex v1 = g.vertex(t);
+            List<Graph<P, W>.Edge> shortest =
+                Graphs.shortestPath(g, v0, v1, EUCLID);
+            if (shortest.isEmpty()) {
+                continue;
+            }
+            double best = walk(shortest, v0, v1);
+
+            SearchResult<P, W> full =
+                Graphs.shortestPathWithin(g, v0, v1, EUCLID,
+                                          new Deadline());
+            assertTrue(full.isComplete());
+            assertEquals(best, walk(full.path(), v0, v1), 1e-9);
+            assertEquals(best, full.lowerBound(), 1e-9);
+
+            TraversalStats stats = new TraversalStats();
+            SearchResult<P, W> late =
+                Graphs.shortestPathWithin(g, v0, v1, EUCLID,
+                                          Deadline.after(0), stats);
+            assertEquals(SearchStatus.TIMED_OUT, late.status());
+            assertTrue(late.path().isEmpty());
+            assertEquals(EUCLID.dist(v0.getLabel(), v1.getLabel()),
+                         late.lowerBound(), 0);
+            assertEquals(0, stats.getSettled());
+            assertEquals(1, stats.getStopped());
+
+            Deadline deadline = new Deadline();
+            int[] calls = { 0 };
+            Distancer<P> h = (a, b) -> {
+                calls[0] += 1;
+                if (calls[0] == 200) {
+                    deadline.cancel();
+                }
+                return EUCLID.dist(a, b);
+            };
+            SearchResult<P, W> hasty =
+                Graphs.shortestPathWithin(g, v0, v1, h, deadline);
+            if (hasty.isComplete()) {
+                assertEquals(best, walk(hasty.path(), v0, v1), 1e-9);
+            } else {
+                cancelled += 1;
+                assertEquals(SearchStatus.CANCELLED, hasty.status());
+                assertTrue(hasty.path().isEmpty());
+                assertTrue(hasty.lowerBound() <= best + 1e-9);
+                assertTrue(calls[0] < 200 + 20 * Deadline.PERIOD);
+            }
+        }
+        assertTrue(cancelled > 0);
+
+        SearchResult<P, W> none =
+            Graphs.shortestPathWithin(g, v0, cut, EUCLID, new Deadline());
+        assertTrue(none.isComplete());
+        assertTrue(none.path().isEmpty());
+        assertEquals(Double.POSITIVE_INFINITY, none.lowerBound(), 0);
+    }
+
+    @Test
+    public void deltaSteppingMatchesDijkstra() {
+        Graph<P, W> g =
+            randomGraph(43, 2000, 6000,
+                        (d, r) -> r.nextInt(4) == 0 ? 0 : r.nextDouble() * 10);
+        Weighting<W> weight = e -> e.weight();
+        double[] dijkstra = Graphs.distances(g, g.vertex(0), weight);
+        double total =
+            walk(Graphs.shortestPath(g, g.vertex(0), g.vertex(1),
+                                     Graphs.ZERO_DISTANCER),
+                 g.vertex(0), g.vertex(1));
+        assertEquals(total, dijkstra[g.id(g.vertex(1))], 1e-9);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            for (double delta : new double[] { 0.1, 2.5, 1000 }) {
+                double[] stepped =
+                    Graphs.distances(g, g.vertex(0), weight, delta, pool);
+                for (int v = 0; v < dijkstra.length; v += 1) {
+                    assertEquals(dijkstra[v], stepped[v], 1e-9);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void parallelShortestPathMatchesShortestPath() {
+        Graph<P, W> g =
+            randomGraph(44, 499, 1500, (d, r) -> r.nextInt(100) / 10.0);
+        Graph<P, W>.Vertex v0 = g.vertex(0), cut = g.add(new P(50, 50));
+        for (int threads : new int[] { 1, 2, 4 }) {
+            for (int t = 0; t < 499; t += 37) {
+                Graph<P, W>.Vertex v1 = g.vertex(t);
+                double sequential =
+                    walk(Graphs.shortestPath(g, v0, v1,
+                                             Graphs.ZERO_DISTANCER),
+                         v0, v1);
+                double parallel =
+                    walk(Graphs.parallelShortestPath(g, v0, v1,
+                                                     Graphs.ZERO_DISTANCER,
+                                                     threads),
+                         v0, v1);
+                assertEquals(sequential, parallel, 1e-9);
+            }
+            assertTrue(Graphs.parallelShortestPath(
+                           g, v0, cut, Graphs.ZERO_DISTANCER,
+                           threads).isEmpty());
+        }
+    }
+
+    @Test
+    public void hubLabelsMatchDijkstra() throws IOException {
+        Graph<P, W> g =
+            randomGraph(45, 399, 1000, (d, r) -> r.nextInt(50) / 5.0);
+        g.add(new P(50, 50));
+        Weighting<W> weight = e -> e.weight();
+        File file = File.createTempFile("graphtest", null);
+        try (HubLabels h = HubLabels.write(file, g, weight)) {
+            assertEquals(400, h.vertexSize());
+            for (int u = 0; u < 400; u += 23) {
+                double[] dist = Graphs.distances(g, g.vertex(u), weight);
+                for (int v = 0; v < 400; v += 1) {
+                    assertEquals(dist[v], h.dist(u, v), 1e-9);
+                    int[] path = h.path(u, v);
+                    if (dist[v] == Double.POSITIVE_INFINITY) {
+                        assertNull(path);
+                        continue;
+                    }
+                    assertEquals(u, path[0]);
+                    assertEquals(v, path[path.length - 1]);
+                    double total = 0;
+                    for (int k = 1; k < path.length; k += 1) {
+                        double step = Double.POSITIVE_INFINITY;
+                        for (Graph<P, W>.Edge e
+                                 : g.outEdges(g.vertex(path[k - 1]))) {
+                            if (g.id(e.getV(g.vertex(path[k - 1])))
+                                == path[k]) {
+                                step = Math.min(step,
+                                                e.getLabel().weight());
+                            }
+                        }
+                        total += step;
+                    }
+                    assertEquals(dist[v], total, 1e-9);
+                }
+            }
+        } finally {
+            file.delete();
+        }
+        file = File.createTempFile("graphtest", null);
+        try {
+            HubLabels.write(file, g, weight).close();
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            for (int size : new int[] { 0, 8, 1000 }) {
+                Files.write(file.toPath(), Arrays.copyOf(bytes, size));
+                try {
+                    HubLabels.open(file).close();
+                    fail("opened hub labels cut to " + size + " bytes");
+                } catch (IOException e) {
+                    continue;
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+}
@@ -1,10 +1,21 @@
 package graph;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Stack;
 import java.util.ArrayDeque;
 import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToDoubleFunction;
 
 /** Implements a generalized traversal of a graph.  At any given time,
  *  there is a particular set of untraversed vertices---the "fringe."
@@ -24,6 +35,17 @@ import java.util.PriorityQueue;
  *     + A general traversal treats the fringe as an ordered set, as
  *       determined by a Comparator argument.  There is no postVisit
  *       for this type of traversal.
+ *     + A parallel breadth-first traversal expands the fringe one level
+ *       at a time, splitting each level among the threads of a
+ *       ForkJoinPool.  It calls only concurrentVisit, which may run on
+ *       several threads at once.
+ *     + A direction-optimizing breadth-first traversal also expands the
+ *       fringe one level at a time, but when the fringe is large it finds
+ *       the next level by searching the predecessors of unreached vertices
+ *       for a vertex in the fringe, rather than the successors of the
+ *       fringe for unreached vertices.  It calls only visit.
+ *     + A breadth-first traversal of an IntGraph works on vertex numbers
+ *       rather than Vertex objects.  It calls only visit(int).
  *  As vertices are added to the fringe, the traversal calls a
  *  preVisit method on the vertex.
  *
@@ -33,7 +55,30 @@ import java.util.PriorityQueue;
  *  (temporarily, if desired).  The preVisit method may throw a
  *  RejectException to prevent a vertex from being added to the
  *  fringe, and the visit method may throw a RejectException to
- *  prevent its successors from being added to the fringe.
+ *  prevent its successors from being added to the fringe.  Where such
+ *  signals are frequent, the shared StopException.STOP and
+ *  RejectException.REJECT, which carry no stack trace, are much cheaper
+ *  to throw than new exceptions.  Cheaper still, a client may instead
+ *  override tryPreVisit, tryVisit, and tryPostVisit, which return an
+ *  Action saying how to go on rather than throwing anything.  By
+ *  default they call preVisit, visit, and postVisit and translate any
+ *  StopException or RejectException into an Action.
+ *
+ *  The methods preOrder, postOrder, breadthFirst, and priorityOrder
+ *  instead return the vertices of a traversal as an Iteration, which
+ *  takes one step of the traversal each time it is asked for a vertex,
+ *  keeping its fringe in between.  Taking only the first k vertices
+ *  does only the work needed to find them.
+ *
+ *  A TraversalListener given to setListener is told of each step of
+ *  later traversals, and of the time spent initializing ("init") and
+ *  traversing ("traverse").
+ *
+ *  A Deadline given to setDeadline makes later traversals give up once
+ *  it expires, looking at it once every Deadline.PERIOD vertices.  A
+ *  traversal that gives up ends as if a visit method had thrown
+ *  StopException, with finalVertex the vertex it was about to visit,
+ *  and status says why it ended.
  *  @author Brian Su
  */
 public class Traversal<VLabel, ELabel> {
@@ -48,11 +93,22 @@ public class Traversal<VLabel, ELabel> {
         }
     }
 
+    /** What a traversal does after a call to tryPreVisit, tryVisit, or
+     *  tryPostVisit. */
+    public enum Action {
+        /** Go on as usual. */
+        CONTINUE,
+        /** As for throwing a RejectException. */
+        REJECT,
+        /** As for throwing a StopException. */
+        STOP;
+    }
+
     /** Used to check which traversal to continueTraversing. */
     private enum Trav {
-        /** DFS, BFS, GEN for depth-first, breadth-first, and general
-         * respectively. */
-        DFS, BFS, GEN;
+        /** DFS, BFS, GEN, KEY for depth-first, breadth-first, general,
+         * and general by keys respectively. */
+        DFS, BFS, GEN, KEY;
     }
 
     /** Perform a traversal of G over all vertices reachable from V.
@@ -65,9 +121,11 @@ public class Traversal<VLabel, ELabel> {
             Comparator<VLabel> order) {
         final Comparator<VLabel> o = order;
         _order = order;
+        long start = startPhase();
         if (!_traversalPaused) {
             initVisited(G);
         }
+        start = endPhase("init", start);
         _traversalPaused = false;
         _fpq = new PriorityQueue<Graph<VLabel, ELabel>.Vertex>(G.vertexSize(),
                 new Comparator<Graph<VLabel, ELabel>.Vertex>() {
@@ -78,42 +136,218 @@ public class Traversal<VLabel, ELabel> {
                 }
             });
         _fpq.add(v);
+        pushed(true);
+        fringe:
         while (!_fpq.isEmpty()) {
             Graph<VLabel, ELabel>.Vertex curr = _fpq.remove();
+            popped(true);
             _finalVertex = curr;
-            try {
-                if (!marked(curr)) {
-                    try {
-                        visit(curr);
-                        mark(curr);
-                        for (Graph<VLabel, ELabel>.Edge e : G.outEdges(curr)) {
-                            try {
-                                if (!marked(e.getV1())) {
-                                    _finalEdge = e;
-                                    preVisit(e, curr);
-                                    _fpq.add(e.getV1());
-                                }
-                            } catch (RejectException err) {
-                                continue;
-                            }
-                        }
-                        _fpq.add(curr);
-                    } catch (RejectException err) {
-                        continue;
+            if (marked(curr)) {
+                continue;
+            }
+            if (expired()) {
+                pause(Trav.GEN);
+                break;
+            }
+            Action act = tryVisit(curr);
+            if (act == Action.STOP) {
+                pause(Trav.GEN);
+                break;
+            } else if (act == Action.REJECT) {
+                rejected();
+                continue;
+            }
+            mark(curr);
+            for (int k = 0; k < G.outDegree(curr); k += 1) {
+                Graph<VLabel, ELabel>.Edge e = G.outEdge(curr, k);
+                examined();
+                if (!marked(e.getV(curr))) {
+                    _finalEdge = e;
+                    act = tryPreVisit(e, curr);
+                    if (act == Action.STOP) {
+                        pause(Trav.GEN);
+                        break fringe;
+                    } else if (act == Action.REJECT) {
+                        rejected();
+                    } else {
+                        relaxed();
+                        _fpq.add(e.getV(curr));
+                        pushed(true);
                     }
                 }
-            } catch (StopException err) {
-                _traversalPaused = true;
-                _currentTrav = Trav.GEN;
+            }
+            _fpq.add(curr);
+            pushed(true);
+        }
+        endPhase("traverse", start);
+        if (!_traversalPaused) {
+            _finalVertex = null;
+            _finalEdge = null;
+        }
+    }
+
+    /** Perform a traversal of G over all vertices reachable from V, as
+     *  for traverse(G, V, ORDER), where ORDER ranks vertices by the keys
+     *  KEY gives their labels, least first.  The key of a vertex is found
+     *  once, when it is added to the fringe, and kept with it in an
+     *  indexed heap of vertex numbers, which holds each vertex at most
+     *  once: adding a vertex already in the fringe just lowers its key,
+     *  if the new one is less.  A vertex is not put back into the fringe
+     *  after it is visited.  The visit and preVisit methods are called as
+     *  by traverse(G, V, ORDER).  The effect of changing G during the
+     *  traversal is undefined. */
+    public void traverse(Graph<VLabel, ELabel> G,
+            Graph<VLabel, ELabel>.Vertex v,
+            ToDoubleFunction<? super VLabel> key) {
+        long start = startPhase();
+        int n = G.vertexSize();
+        if (!_traversalPaused || _currentTrav != Trav.KEY) {
+            _graph = G;
+            _keyMarks = new long[(n + 63) >>> 6];
+        }
+        _key = key;
+        KeyHeap heap = new KeyHeap(n);
+        start = endPhase("init", start);
+        _traversalPaused = false;
+        heap.add(G.id(v), key.applyAsDouble(v.getLabel()));
+        pushed(true);
+        fringe:
+        while (!heap.isEmpty()) {
+            int c = heap.remove();
+            Graph<VLabel, ELabel>.Vertex curr = G.vertex(c);
+            popped(true);
+            _finalVertex = curr;
+            if ((_keyMarks[c >>> 6] & (1L << c)) != 0) {
+                continue;
+            }
+            if (expired()) {
+                pause(Trav.KEY);
                 break;
             }
+            Action act = tryVisit(curr);
+            if (act == Action.STOP) {
+                pause(Trav.KEY);
+                break;
+            } else if (act == Action.REJECT) {
+                rejected();
+                continue;
+            }
+            _keyMarks[c >>> 6] |= 1L << c;
+            settled();
+            for (int k = 0; k < G.outDegree(curr); k += 1) {
+                Graph<VLabel, ELabel>.Edge e = G.outEdge(curr, k);
+                Graph<VLabel, ELabel>.Vertex w = e.getV(curr);
+                int i = G.id(w);
+                examined();
+                if ((_keyMarks[i >>> 6] & (1L << i)) == 0) {
+                    _finalEdge = e;
+                    act = tryPreVisit(e, curr);
+                    if (act == Action.STOP) {
+                        pause(Trav.KEY);
+                        break fringe;
+                    } else if (act == Action.REJECT) {
+                        rejected();
+                    } else {
+                        relaxed();
+                        if (heap.add(i, key.applyAsDouble(w.getLabel()))) {
+                            pushed(true);
+                        }
+                    }
+                }
+            }
         }
+        endPhase("traverse", start);
         if (!_traversalPaused) {
             _finalVertex = null;
             _finalEdge = null;
         }
     }
 
+    /** A binary heap of vertex numbers ordered by keys, which holds each
+     *  vertex at most once and knows where. */
+    private static class KeyHeap {
+
+        /** An empty heap of vertex numbers less than N. */
+        KeyHeap(int n) {
+            _pos = new int[n];
+            Arrays.fill(_pos, -1);
+        }
+
+        /** Returns true iff I am empty. */
+        boolean isEmpty() {
+            return _size == 0;
+        }
+
+        /** Add V with key KEY, or lower its key to KEY if it is already in
+         *  me with a greater one.  Returns true iff I changed. */
+        boolean add(int v, double key) {
+            int i = _pos[v];
+            if (i < 0) {
+                if (_size == _keys.length) {
+                    _keys = Arrays.copyOf(_keys, 2 * _size);
+                    _items = Arrays.copyOf(_items, 2 * _size);
+                }
+                i = _size;
+                _size += 1;
+            } else if (!(key < _keys[i])) {
+                return false;
+            }
+            while (i > 0 && _keys[(i - 1) / 2] > key) {
+                move((i - 1) / 2, i);
+                i = (i - 1) / 2;
+            }
+            _keys[i] = key;
+            _items[i] = v;
+            _pos[v] = i;
+            return true;
+        }
+
+        /** Remove and return a vertex of least key. */
+        int remove() {
+            int result = _items[0];
+            _pos[result] = -1;
+            _size -= 1;
+            if (_size == 0) {
+                return result;
+            }
+            double key = _keys[_size];
+            int v = _items[_size];
+            int i = 0;
+            while (2 * i + 1 < _size) {
+                int c = 2 * i + 1;
+                if (c + 1 < _size && _keys[c + 1] < _keys[c]) {
+                    c += 1;
+                }
+                if (_keys[c] >= key) {
+                    break;
+                }
+                move(c, i);
+                i = c;
+            }
+            _keys[i] = key;
+            _items[i] = v;
+            _pos[v] = i;
+            return result;
+        }
+
+        /** Move the vertex at position FROM to position TO. */
+        private void move(int from, int to) {
+            _keys[to] = _keys[from];
+            _items[to] = _items[from];
+            _pos[_items[to]] = to;
+        }
+
+        /** The keys, in heap order. */
+        private double[] _keys = new double[16];
+        /** The vertices, in the same order as their keys. */
+        private int[] _items = new int[16];
+        /** The position of each vertex in _items, or -1 if it is not in
+         *  me. */
+        private final int[] _pos;
+        /** Number of vertices in me. */
+        private int _size;
+    }
+
     /** Initialized the postVisited database from graph G. */
     private void initPostVisited(Graph<VLabel, ELabel> G) {
         _pV = new HashMap<Graph<VLabel, ELabel>.Vertex, Boolean>();
@@ -131,55 +365,106 @@ public class Traversal<VLabel, ELabel> {
      *  the postVisit method on it. */
     public void depthFirstTraverse(Graph<VLabel, ELabel> G,
             Graph<VLabel, ELabel>.Vertex v) {
+        long start = startPhase();
+        if (!_traversalPaused) {
+            initVisited(G);
+            initPostVisited(G);
+        }
+        start = endPhase("init", start);
+        depthFirstFrom(G, v);
+        endPhase("traverse", start);
+    }
+
+    /** Performs a depth-first traversal of G over all vertices reachable
+     *  from any of ROOTS.  The effect is that of depthFirstTraverse from
+     *  each of ROOTS in turn, except that a vertex is visited at most
+     *  once over the whole traversal: later roots skip vertices already
+     *  traversed from earlier ones, as if ROOTS were the successors of a
+     *  single virtual root.  If a visit method throws StopException, the
+     *  remaining roots are not traversed. */
+    public void depthFirstTraverse(Graph<VLabel, ELabel> G,
+            Iterable<Graph<VLabel, ELabel>.Vertex> roots) {
+        long start = startPhase();
         if (!_traversalPaused) {
             initVisited(G);
             initPostVisited(G);
         }
+        start = endPhase("init", start);
+        for (Graph<VLabel, ELabel>.Vertex v : roots) {
+            depthFirstFrom(G, v);
+            if (_traversalPaused) {
+                break;
+            }
+        }
+        endPhase("traverse", start);
+    }
+
+    /** Performs the depth-first traversal of G from V for
+     *  depthFirstTraverse, without resetting which vertices have already
+     *  been visited. */
+    private void depthFirstFrom(Graph<VLabel, ELabel> G,
+            Graph<VLabel, ELabel>.Vertex v) {
         _fs = new Stack<Graph<VLabel, ELabel>.Vertex>();
         b = new Stack<Graph<VLabel, ELabel>.Vertex>();
         _traversalPaused = false;
         _fs.push(v);
+        pushed(false);
+        fringe:
         while (!_fs.empty()) {
             Graph<VLabel, ELabel>.Vertex t = _fs.pop();
+            popped(false);
             _finalVertex = t;
-            try {
-                if (marked(t)) {
-                    if (!_pV.get(t)) {
-                        try {
-                            postVisit(t);
-                            _pV.put(t, true);
-                        } catch (RejectException err) {
-                            continue;
-                        }
-                    }
-                } else {
-                    try {
-                        visit(t);
-                        mark(t);
-                        _fs.push(t);
-                        for (Graph<VLabel, ELabel>.Edge e : G.outEdges(t)) {
-                            if (!marked(e.getV(t))) {
-                                try {
-                                    _finalEdge = e;
-                                    preVisit(e, t);
-                                    _fs.push(e.getV(t));
-                                    b.push(e.getV(t));
-                                } catch (RejectException err) {
-                                    continue;
-                                }
-                            }
-                        }
-                        while (!b.isEmpty()) {
-                            _fs.push(b.pop());
-                        }
-                    } catch (RejectException err) {
-                        continue;
+            if (marked(t)) {
+                if (!_pV.get(t)) {
+                    Action act = tryPostVisit(t);
+                    if (act == Action.STOP) {
+                        pause(Trav.DFS);
+                        break;
+                    } else if (act == Action.REJECT) {
+                        rejected();
+                    } else {
+                        _pV.put(t, true);
                     }
                 }
-            } catch (StopException r) {
-                _traversalPaused = true;
-                _currentTrav = Trav.DFS;
+                continue;
+            }
+            if (expired()) {
+                pause(Trav.DFS);
+                break;
+            }
+            Action act = tryVisit(t);
+            if (act == Action.STOP) {
+                pause(Trav.DFS);
                 break;
+            } else if (act == Action.REJECT) {
+                rejected();
+                continue;
+            }
+            mark(t);
+            _fs.push(t);
+            pushed(false);
+            for (int k = 0; k < G.outDegree(t); k += 1) {
+                Graph<VLabel, ELabel>.Edge e = G.outEdge(t, k);
+                examined();
+                if (!marked(e.getV(t))) {
+                    _finalEdge = e;
+                    act = tryPreVisit(e, t);
+                    if (act == Action.STOP) {
+                        pause(Trav.DFS);
+                        break fringe;
+                    } else if (act == Action.REJECT) {
+                        rejected();
+                    } else {
+                        relaxed();
+                        _fs.push(e.getV(t));
+                        pushed(false);
+                        b.push(e.getV(t));
+                    }
+                }
+            }
+            while (!b.isEmpty()) {
+                _fs.push(b.pop());
+                pushed(false);
             }
         }
         if (!_traversalPaused) {
@@ -196,59 +481,401 @@ public class Traversal<VLabel, ELabel> {
      *  the postVisit method on it. */
     public void breadthFirstTraverse(Graph<VLabel, ELabel> G,
             Graph<VLabel, ELabel>.Vertex v) {
+        long start = startPhase();
         if (!_traversalPaused) {
             initVisited(G);
             initPostVisited(G);
         }
+        start = endPhase("init", start);
         _traversalPaused = false;
         _fq = new ArrayDeque<Graph<VLabel, ELabel>.Vertex>();
         _fq.add(v);
+        pushed(false);
+        fringe:
         while (!_fq.isEmpty()) {
             Graph<VLabel, ELabel>.Vertex curr = _fq.remove();
-            try {
-                _finalVertex = curr;
-                if (marked(curr)) {
-                    if (!_pV.get(curr)) {
-                        try {
-                            postVisit(curr);
-                            _pV.put(curr, true);
-                        } catch (RejectException err) {
-                            continue;
-                        }
-                    }
-                } else {
-                    try {
-                        mark(curr);
-                        visit(curr);
-                        for (Graph<VLabel, ELabel>.Vertex succ
-                                : G.successors(curr)) {
-                            if (!marked(succ)) {
-                                try {
-                                    _finalEdge = G.getEdge(curr, succ);
-                                    preVisit(G.getEdge(curr, succ), curr);
-                                    _fq.add(succ);
-                                } catch (RejectException err) {
-                                    continue;
-                                }
-                            }
-                        }
-                        _fq.add(curr);
-                    } catch (RejectException err) {
-                        continue;
+            popped(false);
+            _finalVertex = curr;
+            if (marked(curr)) {
+                if (!_pV.get(curr)) {
+                    Action act = tryPostVisit(curr);
+                    if (act == Action.STOP) {
+                        pause(Trav.BFS);
+                        break;
+                    } else if (act == Action.REJECT) {
+                        rejected();
+                    } else {
+                        _pV.put(curr, true);
                     }
                 }
-            } catch (StopException err) {
-                _traversalPaused = true;
-                _currentTrav = Trav.BFS;
+                continue;
+            }
+            if (expired()) {
+                pause(Trav.BFS);
                 break;
             }
+            mark(curr);
+            Action act = tryVisit(curr);
+            if (act == Action.STOP) {
+                pause(Trav.BFS);
+                break;
+            } else if (act == Action.REJECT) {
+                rejected();
+                continue;
+            }
+            for (int k = 0; k < G.outDegree(curr); k += 1) {
+                Graph<VLabel, ELabel>.Vertex succ = G.successor(curr, k);
+                examined();
+                if (!marked(succ)) {
+                    _finalEdge = G.outEdge(curr, k);
+                    act = tryPreVisit(_finalEdge, curr);
+                    if (act == Action.STOP) {
+                        pause(Trav.BFS);
+                        break fringe;
+                    } else if (act == Action.REJECT) {
+                        rejected();
+                    } else {
+                        relaxed();
+                        _fq.add(succ);
+                        pushed(false);
+                    }
+                }
+            }
+            _fq.add(curr);
+            pushed(false);
         }
+        endPhase("traverse", start);
         if (!_traversalPaused) {
             _finalVertex = null;
             _finalEdge = null;
         }
     }
 
+    /** Performs a parallel breadth-first traversal of G over all vertices
+     *  reachable from V, using the common fork-join pool.  See the
+     *  three-argument version. */
+    public void parallelBreadthFirstTraverse(Graph<VLabel, ELabel> G,
+            Graph<VLabel, ELabel>.Vertex v) {
+        parallelBreadthFirstTraverse(G, v, ForkJoinPool.commonPool());
+    }
+
+    /** Performs a level-synchronous breadth-first traversal of G over all
+     *  vertices reachable from V, using the threads of POOL.  The vertices
+     *  at distance d from V (the level d frontier) are divided among tasks
+     *  in POOL, each of which calls concurrentVisit on its vertices and
+     *  claims their unclaimed successors for level d + 1 with a
+     *  compare-and-set on a shared bitset.  All visits of one level finish
+     *  before any visit of the next begins.  The preVisit, visit and
+     *  postVisit methods are not called, G must not be changed during the
+     *  traversal, and a traversal stopped by StopException or by its
+     *  deadline cannot be continued.  Each task looks at the deadline
+     *  once every Deadline.PERIOD vertices it visits. */
+    public void parallelBreadthFirstTraverse(Graph<VLabel, ELabel> G,
+            Graph<VLabel, ELabel>.Vertex v, ForkJoinPool pool) {
+        long start = startPhase();
+        _graph = G;
+        _traversalPaused = false;
+        ParallelBFS bfs = new ParallelBFS(G);
+        List<Graph<VLabel, ELabel>.Vertex> frontier =
+            new ArrayList<Graph<VLabel, ELabel>.Vertex>();
+        bfs.claim(v);
+        frontier.add(v);
+        start = endPhase("init", start);
+        for (int depth = 0;
+             !frontier.isEmpty() && bfs._stop.get() == null && !bfs._expired;
+             depth += 1) {
+            List<Graph<VLabel, ELabel>.Vertex> next =
+                pool.invoke(new LevelTask(bfs, frontier, 0, frontier.size(),
+                                          depth));
+            if (_listener != null) {
+                for (int i = 0; i < frontier.size(); i += 1) {
+                    _listener.popped();
+                    _listener.settled();
+                }
+                for (int i = 0; i < next.size(); i += 1) {
+                    _listener.relaxed();
+                    _listener.pushed();
+                }
+            }
+            frontier = next;
+        }
+        endPhase("traverse", start);
+        if (_listener != null) {
+            for (long i = bfs._rejects.get(); i > 0; i -= 1) {
+                _listener.rejected();
+            }
+            for (long i = bfs._examined.get(); i > 0; i -= 1) {
+                _listener.examined();
+            }
+            if (bfs._stop.get() != null || bfs._expired) {
+                _listener.stopped();
+            }
+        }
+        if (bfs._expired) {
+            _status = _deadline.reason();
+        }
+        _finalVertex = bfs._stop.get();
+        _finalEdge = null;
+    }
+
+    /** Default ALPHA for directionOptimizingBreadthFirstTraverse. */
+    public static final int DIRECTION_ALPHA = 14;
+    /** Default BETA for directionOptimizingBreadthFirstTraverse. */
+    public static final int DIRECTION_BETA = 24;
+
+    /** Performs a direction-optimizing breadth-first traversal of G over
+     *  all vertices reachable from V, with the default switching
+     *  thresholds.  See the four-argument version. */
+    public void directionOptimizingBreadthFirstTraverse(
+            Graph<VLabel, ELabel> G, Graph<VLabel, ELabel>.Vertex v) {
+        directionOptimizingBreadthFirstTraverse(G, v, DIRECTION_ALPHA,
+                                                DIRECTION_BETA);
+    }
+
+    /** Performs a breadth-first traversal of G over all vertices reachable
+     *  from V, one level at a time, calling visit on each vertex in order
+     *  of its distance from V (the order within one level is undefined).
+     *  The next level is found top-down, by examining the successors of
+     *  the current level, until the edges leaving the current level
+     *  outnumber 1/ALPHA of the edges entering unreached vertices.  It is
+     *  then found bottom-up, by examining the predecessors of each unreached
+     *  vertex until one in the current level turns up, until the current
+     *  level holds fewer than 1/BETA of the vertices of G.  Both ways give
+     *  the same levels, so the vertices visited are those visited by
+     *  breadthFirstTraverse; bottom-up steps just examine fewer edges when
+     *  the levels are large.  An ALPHA of 0 gives a purely top-down
+     *  traversal.  The preVisit and postVisit methods are not called.  If
+     *  visit throws a RejectException, successors of its vertex are not
+     *  reached from it.  A traversal stopped by StopException or by its
+     *  deadline cannot be continued. */
+    public void directionOptimizingBreadthFirstTraverse(
+            Graph<VLabel, ELabel> G, Graph<VLabel, ELabel>.Vertex v,
+            int alpha, int beta) {
+        long start = startPhase();
+        _graph = G;
+        _traversalPaused = false;
+        _finalVertex = null;
+        _finalEdge = null;
+        int n = G.vertexSize();
+        long unexplored = 0;
+        for (int i = 0; i < n; i += 1) {
+            unexplored += G.inDegree(G.vertex(i));
+        }
+        long[] reached = new long[(n + 63) >>> 6];
+        setBit(reached, G.id(v));
+        unexplored -= G.inDegree(v);
+        List<Graph<VLabel, ELabel>.Vertex> level =
+            new ArrayList<Graph<VLabel, ELabel>.Vertex>();
+        level.add(v);
+        pushed(false);
+        boolean bottomUp = false;
+        start = endPhase("init", start);
+
+        while (!level.isEmpty()) {
+            List<Graph<VLabel, ELabel>.Vertex> expand =
+                new ArrayList<Graph<VLabel, ELabel>.Vertex>(level.size());
+            long levelEdges = 0;
+            for (Graph<VLabel, ELabel>.Vertex u : level) {
+                popped(false);
+                _finalVertex = u;
+                if (expired()) {
+                    stopped();
+                    endPhase("traverse", start);
+                    return;
+                }
+                Action act = tryVisit(u);
+                if (act == Action.STOP) {
+                    stopped();
+                    endPhase("traverse", start);
+                    return;
+                } else if (act == Action.REJECT) {
+                    rejected();
+                } else {
+                    settled();
+                    expand.add(u);
+                    levelEdges += G.outDegree(u);
+                }
+            }
+            if (!bottomUp && alpha > 0 && levelEdges > unexplored / alpha) {
+                bottomUp = true;
+            } else if (bottomUp && expand.size() < n / Math.max(1, beta)) {
+                bottomUp = false;
+            }
+            List<Graph<VLabel, ELabel>.Vertex> next =
+                new ArrayList<Graph<VLabel, ELabel>.Vertex>();
+            if (bottomUp) {
+                long[] inLevel = new long[reached.length];
+                for (Graph<VLabel, ELabel>.Vertex u : expand) {
+                    setBit(inLevel, G.id(u));
+                }
+                for (int i = 0; i < n; i += 1) {
+                    if (!bit(reached, i)) {
+                        Graph<VLabel, ELabel>.Vertex w = G.vertex(i);
+                        for (int k = 0; k < G.inDegree(w); k += 1) {
+                            examined();
+                            int p = G.id(G.predecessor(w, k));
+                            if (bit(inLevel, p)) {
+                                setBit(reached, i);
+                                relaxed();
+                                pushed(false);
+                                next.add(w);
+                                break;
+                            }
+                        }
+                    }
+                }
+            } else {
+                for (Graph<VLabel, ELabel>.Vertex u : expand) {
+                    for (int k = 0; k < G.outDegree(u); k += 1) {
+                        Graph<VLabel, ELabel>.Vertex w = G.successor(u, k);
+                        examined();
+                        int i = G.id(w);
+                        if (!bit(reached, i)) {
+                            setBit(reached, i);
+                            relaxed();
+                            pushed(false);
+                            next.add(w);
+                        }
+                    }
+                }
+            }
+            for (Graph<VLabel, ELabel>.Vertex w : next) {
+                unexplored -= G.inDegree(w);
+            }
+            level = next;
+        }
+        _finalVertex = null;
+        endPhase("traverse", start);
+    }
+
+    /** Returns true iff bit I of BITS is set. */
+    private static boolean bit(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << (i & 63))) != 0;
+    }
+
+    /** Set bit I of BITS. */
+    private static void setBit(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << (i & 63);
+    }
+
+    /** Number of frontier vertices below which a LevelTask expands its
+     *  vertices itself rather than splitting. */
+    static final int PARALLEL_GRAIN = 256;
+
+    /** The state shared by the tasks of one parallel breadth-first
+     *  traversal. */
+    private class ParallelBFS {
+
+        /** State for a traversal of G. */
+        ParallelBFS(Graph<VLabel, ELabel> g) {
+            _g = g;
+            _seen = new AtomicLongArray((g.vertexSize() + 63) >>> 6);
+        }
+
+        /** Mark W as reached, returning true iff it was not already. */
+        boolean claim(Graph<VLabel, ELabel>.Vertex w) {
+            int i = _g.id(w);
+            int word = i >>> 6;
+            long bit = 1L << (i & 63);
+            while (true) {
+                long old = _seen.get(word);
+                if ((old & bit) != 0) {
+                    return false;
+                }
+                if (_seen.compareAndSet(word, old, old | bit)) {
+                    return true;
+                }
+            }
+        }
+
+        /** The graph traversed. */
+        private final Graph<VLabel, ELabel> _g;
+        /** Bit i is set once the vertex _g numbers i has been reached. */
+        private final AtomicLongArray _seen;
+        /** The vertex whose visit threw StopException, if any. */
+        private final AtomicReference<Graph<VLabel, ELabel>.Vertex> _stop =
+            new AtomicReference<Graph<VLabel, ELabel>.Vertex>();
+        /** Number of RejectExceptions caught. */
+        private final AtomicLong _rejects = new AtomicLong();
+        /** Number of edges examined. */
+        private final AtomicLong _examined = new AtomicLong();
+        /** True once a task has found the deadline expired. */
+        private volatile boolean _expired;
+    }
+
+    /** Visits part of one level of a parallel breadth-first traversal, and
+     *  returns the vertices it claims for the next level. */
+    private class LevelTask
+        extends RecursiveTask<List<Graph<VLabel, ELabel>.Vertex>> {
+
+        /** Visit FRONTIER[LO .. HI-1], which are DEPTH edges from the
+         *  start, for traversal BFS. */
+        LevelTask(ParallelBFS bfs, List<Graph<VLabel, ELabel>.Vertex> frontier,
+                  int lo, int hi, int depth) {
+            _bfs = bfs;
+            _frontier = frontier;
+            _lo = lo;
+            _hi = hi;
+            _depth = depth;
+        }
+
+        @Override
+        protected List<Graph<VLabel, ELabel>.Vertex> compute() {
+            if (_hi - _lo > PARALLEL_GRAIN) {
+                int mid = (_lo + _hi) >>> 1;
+                LevelTask left =
+                    new LevelTask(_bfs, _frontier, _lo, mid, _depth);
+                left.fork();
+                List<Graph<VLabel, ELabel>.Vertex> right =
+                    new LevelTask(_bfs, _frontier, mid, _hi, _depth).compute();
+                List<Graph<VLabel, ELabel>.Vertex> result = left.join();
+                result.addAll(right);
+                return result;
+            }
+            List<Graph<VLabel, ELabel>.Vertex> next =
+                new ArrayList<Graph<VLabel, ELabel>.Vertex>();
+            long examined = 0;
+            Deadline deadline = _deadline;
+            for (int i = _lo; i < _hi && _bfs._stop.get() == null; i += 1) {
+                if (deadline != null
+                    && ((i - _lo) & (Deadline.PERIOD - 1)) == 0
+                    && (_bfs._expired || deadline.expired())) {
+                    _bfs._expired = true;
+                    break;
+                }
+                Graph<VLabel, ELabel>.Vertex u = _frontier.get(i);
+                try {
+                    concurrentVisit(u, _depth);
+                } catch (RejectException err) {
+                    _bfs._rejects.incrementAndGet();
+                    continue;
+                } catch (StopException err) {
+                    _bfs._stop.compareAndSet(null, u);
+                    break;
+                }
+                Graph<VLabel, ELabel> g = _bfs._g;
+                for (int k = 0; k < g.outDegree(u); k += 1) {
+                    Graph<VLabel, ELabel>.Vertex w = g.successor(u, k);
+                    examined += 1;
+                    if (_bfs.claim(w)) {
+                        next.add(w);
+                    }
+                }
+            }
+            _bfs._examined.addAndGet(examined);
+            return next;
+        }
+
+        /** The traversal this task is part of. */
+        private final ParallelBFS _bfs;
+        /** The current level. */
+        private final List<Graph<VLabel, ELabel>.Vertex> _frontier;
+        /** The part of _frontier to visit. */
+        private final int _lo, _hi;
+        /** Distance of _frontier from the start. */
+        private final int _depth;
+    }
+
     /** Returns false is vertex V has not been visited and true if it has. */
     private boolean marked(Graph<VLabel, ELabel>.Vertex v) {
         return _visited.get(v);
@@ -257,6 +884,428 @@ public class Traversal<VLabel, ELabel> {
     /** Set the value of V in _VISITED to be true. */
     private void mark(Graph<VLabel, ELabel>.Vertex v) {
         _visited.put(v, true);
+        settled();
+    }
+
+    /** Performs a breadth-first traversal of the IntGraph G over all
+     *  vertices reachable from V, calling visit(int) on each vertex as it
+     *  is removed from the fringe.  The fringe and the record of visited
+     *  vertices are arrays indexed by vertex number, so no objects are
+     *  created per vertex.  As for the other traversals, visit may throw a
+     *  RejectException to keep the successors of a vertex from being
+     *  added to the fringe, or a StopException to end the traversal, and
+     *  the traversal gives up when its deadline expires; a traversal of
+     *  an IntGraph may not be continued. */
+    public void breadthFirstTraverse(IntGraph G, int v) {
+        long start = startPhase();
+        int n = G.vertexSize();
+        int[] fringe = new int[n];
+        long[] marked = new long[(n + 63) >>> 6];
+        int head, tail;
+        head = tail = 0;
+        fringe[tail++] = v;
+        marked[v >>> 6] |= 1L << v;
+        pushed(false);
+        start = endPhase("init", start);
+        while (head < tail) {
+            int curr = fringe[head++];
+            popped(false);
+            if (expired()) {
+                stopped();
+                break;
+            }
+            Action act = tryVisit(curr);
+            if (act == Action.STOP) {
+                stopped();
+                break;
+            } else if (act == Action.REJECT) {
+                rejected();
+                continue;
+            }
+            settled();
+            for (int k = 0; k < G.outDegree(curr); k += 1) {
+                int succ = G.successor(curr, k);
+                examined();
+                if ((marked[succ >>> 6] & (1L << succ)) == 0) {
+                    marked[succ >>> 6] |= 1L << succ;
+                    relaxed();
+                    fringe[tail++] = succ;
+                    pushed(false);
+                }
+            }
+        }
+        endPhase("traverse", start);
+    }
+
+    /** Returns the vertices of G reachable from V, in the order in which
+     *  depthFirstTraverse(G, V) visits them (pre-order).  The Iteration
+     *  keeps the path from V to the current vertex, and advances only when
+     *  asked for another vertex.  The preVisit, visit and postVisit
+     *  methods are not called, and the effect of changing G during the
+     *  iteration is undefined. */
+    public Iteration<Graph<VLabel, ELabel>.Vertex> preOrder(
+            Graph<VLabel, ELabel> G, Graph<VLabel, ELabel>.Vertex v) {
+        return new DepthFirstIteration(G, v, false);
+    }
+
+    /** Returns the vertices of G reachable from V, in the order in which
+     *  depthFirstTraverse(G, V) postvisits them (post-order), as for
+     *  preOrder. */
+    public Iteration<Graph<VLabel, ELabel>.Vertex> postOrder(
+            Graph<VLabel, ELabel> G, Graph<VLabel, ELabel>.Vertex v) {
+        return new DepthFirstIteration(G, v, true);
+    }
+
+    /** Returns the vertices of G reachable from V, in the order in which
+     *  breadthFirstTraverse(G, V) visits them.  The Iteration keeps the
+     *  fringe, and adds the successors of each vertex to it only when
+     *  asked for the vertex after it.  The preVisit, visit and postVisit
+     *  methods are not called, and the effect of changing G during the
+     *  iteration is undefined. */
+    public Iteration<Graph<VLabel, ELabel>.Vertex> breadthFirst(
+            Graph<VLabel, ELabel> G, Graph<VLabel, ELabel>.Vertex v) {
+        return new BreadthFirstIteration(G, v);
+    }
+
+    /** Returns the vertices of G reachable from V, in the order in which
+     *  traverse(G, V, ORDER) visits them, as for breadthFirst.  The order
+     *  of vertices whose labels ORDER ranks equal is undefined. */
+    public Iteration<Graph<VLabel, ELabel>.Vertex> priorityOrder(
+            Graph<VLabel, ELabel> G, Graph<VLabel, ELabel>.Vertex v,
+            Comparator<VLabel> order) {
+        return new PriorityIteration(G, v, order);
+    }
+
+    /** A depth-first traversal, one vertex at a time. */
+    private class DepthFirstIteration
+        extends Iteration<Graph<VLabel, ELabel>.Vertex> {
+
+        /** The vertices of G reachable from V, in post-order if POST, and
+         *  otherwise in pre-order. */
+        DepthFirstIteration(Graph<VLabel, ELabel> G,
+                            Graph<VLabel, ELabel>.Vertex v, boolean post) {
+            _G = G;
+            _post = post;
+            descend(v);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (_next == null && !_path.isEmpty()) {
+                int top = _path.size() - 1;
+                Graph<VLabel, ELabel>.Vertex u = _path.get(top);
+                int k = _edge[top];
+                if (k < _G.outDegree(u)) {
+                    _edge[top] = k + 1;
+                    Graph<VLabel, ELabel>.Vertex w = _G.successor(u, k);
+                    examined();
+                    if (!_seen.contains(w)) {
+                        relaxed();
+                        descend(w);
+                    }
+                } else {
+                    _path.remove(top);
+                    popped(false);
+                    if (_post) {
+                        _next = u;
+                    }
+                }
+            }
+            return _next != null;
+        }
+
+        @Override
+        public Graph<VLabel, ELabel>.Vertex next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Graph<VLabel, ELabel>.Vertex v = _next;
+            _next = null;
+            settled();
+            return v;
+        }
+
+        /** Extend my path to vertex V, which I have not yet reached. */
+        private void descend(Graph<VLabel, ELabel>.Vertex v) {
+            _seen.add(v);
+            if (_path.size() == _edge.length) {
+                _edge = Arrays.copyOf(_edge, 2 * _edge.length);
+            }
+            _edge[_path.size()] = 0;
+            _path.add(v);
+            pushed(false);
+            if (!_post) {
+                _next = v;
+            }
+        }
+
+        /** The graph traversed. */
+        private final Graph<VLabel, ELabel> _G;
+        /** True iff I return vertices in post-order. */
+        private final boolean _post;
+        /** The path from the start to the current vertex. */
+        private final ArrayList<Graph<VLabel, ELabel>.Vertex> _path =
+            new ArrayList<Graph<VLabel, ELabel>.Vertex>();
+        /** _edge[i] is the number of the next outgoing edge of _path[i] to
+         *  follow. */
+        private int[] _edge = new int[16];
+        /** The vertices reached so far. */
+        private final HashSet<Graph<VLabel, ELabel>.Vertex> _seen =
+            new HashSet<Graph<VLabel, ELabel>.Vertex>();
+        /** The vertex next() returns, or null if not yet found. */
+        private Graph<VLabel, ELabel>.Vertex _next;
+    }
+
+    /** A breadth-first traversal, one vertex at a time. */
+    private class BreadthFirstIteration
+        extends Iteration<Graph<VLabel, ELabel>.Vertex> {
+
+        /** The vertices of G reachable from V, in breadth-first order. */
+        BreadthFirstIteration(Graph<VLabel, ELabel> G,
+                              Graph<VLabel, ELabel>.Vertex v) {
+            _G = G;
+            _seen.add(v);
+            _fringe.add(v);
+            pushed(false);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (_last != null) {
+                for (int k = 0; k < _G.outDegree(_last); k += 1) {
+                    Graph<VLabel, ELabel>.Vertex w = _G.successor(_last, k);
+                    examined();
+                    if (_seen.add(w)) {
+                        relaxed();
+                        _fringe.add(w);
+                        pushed(false);
+                    }
+                }
+                _last = null;
+            }
+            return !_fringe.isEmpty();
+        }
+
+        @Override
+        public Graph<VLabel, ELabel>.Vertex next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            _last = _fringe.remove();
+            popped(false);
+            settled();
+            return _last;
+        }
+
+        /** The graph traversed. */
+        private final Graph<VLabel, ELabel> _G;
+        /** The vertices reached but not yet returned, in order. */
+        private final ArrayDeque<Graph<VLabel, ELabel>.Vertex> _fringe =
+            new ArrayDeque<Graph<VLabel, ELabel>.Vertex>();
+        /** The vertices reached so far. */
+        private final HashSet<Graph<VLabel, ELabel>.Vertex> _seen =
+            new HashSet<Graph<VLabel, ELabel>.Vertex>();
+        /** The vertex last returned, if its successors have not yet been
+         *  added to the fringe. */
+        private Graph<VLabel, ELabel>.Vertex _last;
+    }
+
+    /** A general traversal, one vertex at a time. */
+    private class PriorityIteration
+        extends Iteration<Graph<VLabel, ELabel>.Vertex> {
+
+        /** The vertices of G reachable from V, least first according to
+         *  ORDER among those in the fringe. */
+        PriorityIteration(Graph<VLabel, ELabel> G,
+                          Graph<VLabel, ELabel>.Vertex v,
+                          final Comparator<VLabel> order) {
+            _G = G;
+            _fringe = new PriorityQueue<Graph<VLabel, ELabel>.Vertex>(
+                11, new Comparator<Graph<VLabel, ELabel>.Vertex>() {
+                    @Override
+                    public int compare(Graph<VLabel, ELabel>.Vertex v0,
+                                       Graph<VLabel, ELabel>.Vertex v1) {
+                        return order.compare(v0.getLabel(), v1.getLabel());
+                    }
+                });
+            _fringe.add(v);
+            pushed(true);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (_last != null) {
+                for (int k = 0; k < _G.outDegree(_last); k += 1) {
+                    Graph<VLabel, ELabel>.Vertex w = _G.successor(_last, k);
+                    examined();
+                    if (!_done.contains(w)) {
+                        relaxed();
+                        _fringe.add(w);
+                        pushed(true);
+                    }
+                }
+                _last = null;
+            }
+            while (!_fringe.isEmpty() && _done.contains(_fringe.peek())) {
+                _fringe.remove();
+                popped(true);
+            }
+            return !_fringe.isEmpty();
+        }
+
+        @Override
+        public Graph<VLabel, ELabel>.Vertex next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            _last = _fringe.remove();
+            popped(true);
+            _done.add(_last);
+            settled();
+            return _last;
+        }
+
+        /** The graph traversed. */
+        private final Graph<VLabel, ELabel> _G;
+        /** The vertices reached, possibly several times over, and
+         *  vertices already returned. */
+        private final PriorityQueue<Graph<VLabel, ELabel>.Vertex> _fringe;
+        /** The vertices returned so far. */
+        private final HashSet<Graph<VLabel, ELabel>.Vertex> _done =
+            new HashSet<Graph<VLabel, ELabel>.Vertex>();
+        /** The vertex last returned, if its successors have not yet been
+         *  added to the fringe. */
+        private Graph<VLabel, ELabel>.Vertex _last;
+    }
+
+    /** Report events of later traversals to LISTENER.  A null LISTENER
+     *  (the default) turns reporting off. */
+    public void setListener(TraversalListener listener) {
+        _listener = listener;
+    }
+
+    /** Returns the listener set by setListener, or null if none. */
+    public TraversalListener getListener() {
+        return _listener;
+    }
+
+    /** Make later traversals give up when DEADLINE expires.  A null
+     *  DEADLINE (the default) lets them run to the end.  A traversal
+     *  that has given up may be continued, by continueTraversing, once
+     *  a Deadline that has not expired is set.  The Iterations returned
+     *  by preOrder and the like ignore the deadline, as they take a step
+     *  only when asked to. */
+    public void setDeadline(Deadline deadline) {
+        _deadline = deadline;
+    }
+
+    /** Returns the deadline set by setDeadline, or null if none. */
+    public Deadline getDeadline() {
+        return _deadline;
+    }
+
+    /** Returns how the last traversal ended: TIMED_OUT or CANCELLED if
+     *  it gave up because its deadline expired, and otherwise
+     *  COMPLETE. */
+    public SearchStatus status() {
+        return _status;
+    }
+
+    /** Note the start of a traversal, which has not yet given up.
+     *  Returns the current time in nanoseconds if there is a listener,
+     *  and otherwise 0. */
+    private long startPhase() {
+        _status = SearchStatus.COMPLETE;
+        _steps = 0;
+        return _listener == null ? 0 : System.nanoTime();
+    }
+
+    /** Returns true iff the current traversal should give up because its
+     *  deadline has expired, recording why in _status.  Looks at the
+     *  deadline only once every Deadline.PERIOD calls. */
+    private boolean expired() {
+        if (_deadline == null || (_steps++ & (Deadline.PERIOD - 1)) != 0
+            || !_deadline.expired()) {
+            return false;
+        }
+        _status = _deadline.reason();
+        return true;
+    }
+
+    /** Report that phase NAME, begun at time START from startPhase, has
+     *  ended.  Returns the current time, as for startPhase. */
+    private long endPhase(String name, long start) {
+        if (_listener == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        _listener.phase(name, now - start);
+        return now;
+    }
+
+    /** Report adding a vertex to the fringe, which is a priority queue
+     *  iff HEAP. */
+    private void pushed(boolean heap) {
+        if (_listener != null) {
+            _listener.pushed();
+            if (heap) {
+                _listener.heapOperation();
+            }
+        }
+    }
+
+    /** Report removing a vertex from the fringe, which is a priority
+     *  queue iff HEAP. */
+    private void popped(boolean heap) {
+        if (_listener != null) {
+            _listener.popped();
+            if (heap) {
+                _listener.heapOperation();
+            }
+        }
+    }
+
+    /** Report finishing with a vertex. */
+    private void settled() {
+        if (_listener != null) {
+            _listener.settled();
+        }
+    }
+
+    /** Report looking at an edge. */
+    private void examined() {
+        if (_listener != null) {
+            _listener.examined();
+        }
+    }
+
+    /** Report following an edge. */
+    private void relaxed() {
+        if (_listener != null) {
+            _listener.relaxed();
+        }
+    }
+
+    /** Report catching a RejectException. */
+    private void rejected() {
+        if (_listener != null) {
+            _listener.rejected();
+        }
+    }
+
+    /** Report a traversal ended by a StopException. */
+    private void stopped() {
+        if (_listener != null) {
+            _listener.stopped();
+        }
+    }
+
+    /** Report that the current traversal, of kind TRAV, has been stopped,
+     *  and note that continueTraversing may resume it. */
+    private void pause(Trav trav) {
+        stopped();
+        _traversalPaused = true;
+        _currentTrav = trav;
     }
 
     /** Continue the previous traversal starting from V.
@@ -274,6 +1323,9 @@ public class Traversal<VLabel, ELabel> {
             case GEN:
                 traverse(theGraph(), v, _order);
                 break;
+            case KEY:
+                traverse(theGraph(), v, _key);
+                break;
             default:
                 break;
             }
@@ -282,7 +1334,8 @@ public class Traversal<VLabel, ELabel> {
 
     /** If the traversal ends prematurely, returns the Vertex argument to
      *  preVisit, visit, or postVisit that caused a Visit routine to
-     *  return false.  Otherwise, returns null. */
+     *  return false, or the vertex about to be visited when the traversal
+     *  gave up at its deadline.  Otherwise, returns null. */
     public Graph<VLabel, ELabel>.Vertex finalVertex() {
         return _finalVertex;
     }
@@ -301,9 +1354,10 @@ public class Traversal<VLabel, ELabel> {
     }
 
     /** Method to be called when adding the node at the other end of E from V0
-     *  to the fringe. If this routine throws a StopException,
-     *  the traversal ends.  If it throws a RejectException, the edge
-     *  E is not traversed. The default does nothing.
+     *  to the fringe.  That node is E.getV(V0); in an undirected graph, V0
+     *  may be E.getV1() rather than E.getV0(). If this routine throws a
+     *  StopException, the traversal ends.  If it throws a RejectException,
+     *  the edge E is not traversed. The default does nothing.
      */
     protected void preVisit(Graph<VLabel, ELabel>.Edge e,
             Graph<VLabel, ELabel>.Vertex v0) {
@@ -315,6 +1369,13 @@ public class Traversal<VLabel, ELabel> {
     protected void visit(Graph<VLabel, ELabel>.Vertex v) {
     }
 
+    /** Method to be called when breadthFirstTraverse of an IntGraph visits
+     *  vertex V.  If this routine throws a StopException, the traversal
+     *  ends.  If it throws a RejectException, successors of V do not get
+     *  visited from V.  The default does nothing. */
+    protected void visit(int v) {
+    }
+
     /** Method to be called immediately after finishing the traversal
      *  of successors of vertex V in pre- and post-order traversals.
      *  If this routine throws a StopException, the traversal ends.
@@ -323,6 +1384,74 @@ public class Traversal<VLabel, ELabel> {
     protected void postVisit(Graph<VLabel, ELabel>.Vertex v) {
     }
 
+    /** Method to be called when parallelBreadthFirstTraverse visits
+     *  vertex V, which is DEPTH edges from the start of the traversal.
+     *  It is called concurrently from several threads, for different
+     *  vertices of the same level, so overridings must be thread-safe;
+     *  each vertex is visited at most once.  If this routine throws a
+     *  RejectException, successors of V are not reached from V.  If it
+     *  throws a StopException, the traversal ends, and finalVertex returns
+     *  V; whether other vertices at the same depth were visited is
+     *  undefined.  The default does nothing. */
+    protected void concurrentVisit(Graph<VLabel, ELabel>.Vertex v, int depth) {
+    }
+
+    /** Method called by traversals in place of preVisit(E, V0), returning
+     *  what to do next.  The default calls preVisit(E, V0) and returns
+     *  STOP if it throws a StopException, REJECT if it throws a
+     *  RejectException, and otherwise CONTINUE.  Overriding this method
+     *  rather than preVisit avoids throwing exceptions altogether. */
+    protected Action tryPreVisit(Graph<VLabel, ELabel>.Edge e,
+                                 Graph<VLabel, ELabel>.Vertex v0) {
+        try {
+            preVisit(e, v0);
+            return Action.CONTINUE;
+        } catch (RejectException err) {
+            return Action.REJECT;
+        } catch (StopException err) {
+            return Action.STOP;
+        }
+    }
+
+    /** Method called by traversals in place of visit(V), returning what
+     *  to do next, as for tryPreVisit. */
+    protected Action tryVisit(Graph<VLabel, ELabel>.Vertex v) {
+        try {
+            visit(v);
+            return Action.CONTINUE;
+        } catch (RejectException err) {
+            return Action.REJECT;
+        } catch (StopException err) {
+            return Action.STOP;
+        }
+    }
+
+    /** Method called by breadthFirstTraverse of an IntGraph in place of
+     *  visit(V), returning what to do next, as for tryPreVisit. */
+    protected Action tryVisit(int v) {
+        try {
+            visit(v);
+            return Action.CONTINUE;
+        } catch (RejectException err) {
+            return Action.REJECT;
+        } catch (StopException err) {
+            return Action.STOP;
+        }
+    }
+
+    /** Method called by traversals in place of postVisit(V), returning
+     *  what to do next, as for tryPreVisit. */
+    protected Action tryPostVisit(Graph<VLabel, ELabel>.Vertex v) {
+        try {
+            postVisit(v);
+            return Action.CONTINUE;
+        } catch (RejectException err) {
+            return Action.REJECT;
+        } catch (StopException err) {
+            return Action.STOP;
+        }
+    }
+
     /** The Vertex (if any) that terminated the last traversal. */
     protected Graph<VLabel, ELabel>.Vertex _finalVertex;
     /** The Edge (if any) that terminated the last traversal. */
@@ -352,6 +1481,20 @@ public class Traversal<VLabel, ELabel> {
     private Trav _currentTrav;
     /** Stores traversal's comparator. */
     private Comparator<VLabel> _order;
+    /** Stores the keys of a traversal by keys. */
+    private ToDoubleFunction<? super VLabel> _key;
+    /** Bit G.id(v) is set iff v has been visited by the current traversal
+     *  by keys. */
+    private long[] _keyMarks;
+    /** Told of the steps of traversals, if not null. */
+    private TraversalListener _listener;
+    /** Makes traversals give up when it expires, if not null. */
+    private Deadline _deadline;
+    /** How the last traversal ended. */
+    private SearchStatus _status = SearchStatus.COMPLETE;
+    /** Number of vertices the current traversal has been about to visit,
+     *  counting when to look at _deadline. */
+    private int _steps;
 
 
 }
@@ -0,0 +1,40 @@
+package graph;
+
+/** The interface of an object told of the steps taken by the traversals
+ *  of Traversal and the searches of Graphs.  Listening is opt-in: no
+ *  listener is called (and no time is read) unless one is supplied.
+ *  @author Brian Su
+ */
+public interface TraversalListener {
+
+    /** A vertex was added to the fringe. */
+    void pushed();
+
+    /** A vertex was removed from the fringe. */
+    void popped();
+
+    /** A vertex was visited for the last time (a traversal marked it, or a
+     *  shortest-path search closed it). */
+    void settled();
+
+    /** An edge was looked at, whether or not it was then followed. */
+    void examined();
+
+    /** An edge was followed (by a traversal) or lowered the tentative
+     *  distance to its other end (in a shortest-path search). */
+    void relaxed();
+
+    /** An operation was performed on a priority queue. */
+    void heapOperation();
+
+    /** A RejectException was caught. */
+    void rejected();
+
+    /** A StopException ended a traversal, or a search or traversal gave
+     *  up because its Deadline expired. */
+    void stopped();
+
+    /** Phase NAME (such as "init" or "search") took NANOS nanoseconds. */
+    void phase(String name, long nanos);
+
+}
@@ -0,0 +1,161 @@
+package graph;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/** A TraversalListener that counts the events it hears of and totals the
+ *  time spent in each phase.  The totals may be printed with report, or
+ *  watched while a program runs by registering the object with the
+ *  platform MBean server.  Counts are updated without synchronization,
+ *  so a listener should be used by one thread at a time; JMX readers may
+ *  see slightly stale values.
+ *  @author Brian Su
+ */
+public class TraversalStats implements TraversalListener,
+                                       TraversalStatsMXBean {
+
+    @Override
+    public void pushed() {
+        _pushed += 1;
+    }
+
+    @Override
+    public void popped() {
+        _popped += 1;
+    }
+
+    @Override
+    public void settled() {
+        _settled += 1;
+    }
+
+    @Override
+    public void examined() {
+        _examined += 1;
+    }
+
+    @Override
+    public void relaxed() {
+        _relaxed += 1;
+    }
+
+    @Override
+    public void heapOperation() {
+        _heapOperations += 1;
+    }
+
+    @Override
+    public void rejected() {
+        _rejected += 1;
+    }
+
+    @Override
+    public void stopped() {
+        _stopped += 1;
+    }
+
+    @Override
+    public synchronized void phase(String name, long nanos) {
+        Long total = _phases.get(name);
+        _phases.put(name, total == null ? nanos : total + nanos);
+    }
+
+    @Override
+    public long getPushed() {
+        return _pushed;
+    }
+
+    @Override
+    public long getPopped() {
+        return _popped;
+    }
+
+    @Override
+    public long getSettled() {
+        return _settled;
+    }
+
+    @Override
+    public long getExamined() {
+        return _examined;
+    }
+
+    @Override
+    public long getRelaxed() {
+        return _relaxed;
+    }
+
+    @Override
+    public long getHeapOperations() {
+        return _heapOperations;
+    }
+
+    @Override
+    public long getRejected() {
+        return _rejected;
+    }
+
+    @Override
+    public long getStopped() {
+        return _stopped;
+    }
+
+    @Override
+    public synchronized Map<String, Long> getPhaseNanos() {
+        return new LinkedHashMap<String, Long>(_phases);
+    }
+
+    @Override
+    public synchronized void reset() {
+        _pushed = _popped = _settled = _examined = _relaxed = 0;
+        _heapOperations = _rejected = _stopped = 0;
+        _phases.clear();
+    }
+
+    /** Register me with the platform MBean server under the name
+     *  graph:type=TraversalStats,name=NAME. */
+    public void register(String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                this, new ObjectName("graph:type=TraversalStats,name="
+                                     + ObjectName.quote(name)));
+        } catch (JMException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** Returns the counts and times, one per line, for printing. */
+    public String report() {
+        StringBuilder r = new StringBuilder();
+        line(r, "vertices pushed", _pushed);
+        line(r, "vertices popped", _popped);
+        line(r, "vertices settled", _settled);
+        line(r, "edges examined", _examined);
+        line(r, "edges relaxed", _relaxed);
+        line(r, "heap operations", _heapOperations);
+        line(r, "rejections", _rejected);
+        line(r, "stops", _stopped);
+        for (Map.Entry<String, Long> p : getPhaseNanos().entrySet()) {
+            r.append(String.format(Locale.ROOT, "%-20s %12.3f ms%n",
+                                   p.getKey() + " time",
+                                   p.getValue() / 1e6));
+        }
+        return r.toString();
+    }
+
+    /** Append a line giving count N of WHAT to R. */
+    private static void line(StringBuilder r, String what, long n) {
+        r.append(String.format(Locale.ROOT, "%-20s %12d%n", what, n));
+    }
+
+    /** Event counts. */
+    private long _pushed, _popped, _settled, _examined, _relaxed,
+        _heapOperations, _rejected, _stopped;
+    /** Total nanoseconds in each phase, in order of first appearance. */
+    private final LinkedHashMap<String, Long> _phases =
+        new LinkedHashMap<String, Long>();
+}
@@ -0,0 +1,40 @@
+package graph;
+
+import java.util.Map;
+
+/** The management interface of TraversalStats, as seen through JMX.
+ *  @author Brian Su
+ */
+public interface TraversalStatsMXBean {
+
+    /** Returns the number of vertices added to fringes. */
+    long getPushed();
+
+    /** Returns the number of vertices removed from fringes. */
+    long getPopped();
+
+    /** Returns the number of vertices settled. */
+    long getSettled();
+
+    /** Returns the number of edges examined. */
+    long getExamined();
+
+    /** Returns the number of edges relaxed. */
+    long getRelaxed();
+
+    /** Returns the number of priority-queue operations. */
+    long getHeapOperations();
+
+    /** Returns the number of RejectExceptions caught. */
+    long getRejected();
+
+    /** Returns the number of traversals ended by StopException. */
+    long getStopped();
+
+    /** Returns the total nanoseconds spent in each phase, by name. */
+    Map<String, Long> getPhaseNanos();
+
+    /** Set all counts and times to 0. */
+    void reset();
+
+}
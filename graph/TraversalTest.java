@@ -8,7 +8,7 @@ class TraversalTest extends Traversal<String, String> {
     @Override
     protected void preVisit(Graph<String, String>.Edge e,
             Graph<String, String>.Vertex v) {
-        System.out.println("pre: " + e.getV1());
+        System.out.println("pre: " + e.getV(v));
     }
 
     @Override
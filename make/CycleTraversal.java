@@ -27,7 +27,7 @@ public class CycleTraversal extends Traversal<String, NoLabel> {
         Graph<String, NoLabel>.Vertex succ = e.getV1();
         for (Graph<String, NoLabel>.Vertex v1 : _graph.successors(succ)) {
             if (v1 == v) {
-                throw new IllegalArgumentException();
+                throw CycleException.CYCLE;
             }
         }
     }
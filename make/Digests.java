@@ -0,0 +1,253 @@
+package make;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** A record of file contents used to decide whether a target is up to date
+ *  by what its inputs contain rather than by their ages.  For each file it
+ *  keeps a digest of the contents, cached under the file's size and
+ *  modification time so that unchanged files are not read again.  For each
+ *  target it keeps the digests its inputs had when it was last checked.
+ *  File names are relative to a base directory.  Files are read by a
+ *  pool of daemon threads, started when first needed and kept until
+ *  close, so that updating a few files (as --watch does after each
+ *  change) costs no thread start-up.  The record is kept in a
+ *  text file with lines of the forms
+ *      F NAME SIZE MTIME DIGEST
+ *      T TARGET PREREQ DIGEST
+ *  @author Brian Su
+ */
+class Digests {
+
+    /** Used to capture F NAME SIZE MTIME DIGEST. */
+    static final Pattern FILEPATTERN = Pattern.compile(
+            "F\\s+(\\S+)\\s+([0-9]+)\\s+(-?[0-9]+)\\s+([0-9a-f]+)");
+    /** Used to capture T TARGET PREREQ DIGEST. */
+    static final Pattern TARGETPATTERN = Pattern.compile(
+            "T\\s+(\\S+)\\s+(\\S+)\\s+([0-9a-f]+)");
+
+    /** Digest algorithm used for file contents. */
+    static final String ALGORITHM = "MD5";
+
+    /** Size of the buffer used to read files. */
+    private static final int BUFSIZE = 1 << 16;
+
+    /** A record for files under BASE, initialized from STORE if it
+     *  exists. */
+    Digests(Path base, Path store) throws IOException {
+        _base = base;
+        _store = store;
+        _cache = new HashMap<String, Entry>();
+        _inputs = new HashMap<String, HashMap<String, String>>();
+        if (Files.exists(store)) {
+            Scanner in = new Scanner(store);
+            while (in.hasNextLine()) {
+                String line = in.nextLine();
+                Matcher f = FILEPATTERN.matcher(line);
+                Matcher t = TARGETPATTERN.matcher(line);
+                if (f.matches()) {
+                    _cache.put(f.group(1),
+                               new Entry(Long.parseLong(f.group(2)),
+                                         Long.parseLong(f.group(3)),
+                                         f.group(4)));
+                } else if (t.matches()) {
+                    inputs(t.group(1)).put(t.group(2), t.group(3));
+                }
+            }
+            in.close();
+        }
+    }
+
+    /** Bring the digests of the files named by NAMES up to date, reading
+     *  the ones whose size or modification time changed in parallel.
+     *  Names of files that do not exist are forgotten. */
+    void update(Collection<String> names) throws IOException {
+        List<String> stale = new ArrayList<String>();
+        List<Future<Entry>> results = new ArrayList<Future<Entry>>();
+        try {
+            for (String name : names) {
+                final Path p = _base.resolve(name);
+                if (!Files.isRegularFile(p)) {
+                    _cache.remove(name);
+                    continue;
+                }
+                final long size = Files.size(p);
+                final long mtime = Files.getLastModifiedTime(p).toMillis();
+                Entry e = _cache.get(name);
+                if (e != null && e._size == size && e._mtime == mtime) {
+                    continue;
+                }
+                stale.add(name);
+                results.add(pool().submit(new Callable<Entry>() {
+                    @Override
+                    public Entry call() throws IOException {
+                        return new Entry(size, mtime, digest(p));
+                    }
+                }));
+            }
+            for (int i = 0; i < stale.size(); i += 1) {
+                _cache.put(stale.get(i), results.get(i).get());
+            }
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /** Returns the pool that reads files, starting it if need be. */
+    private ExecutorService pool() {
+        if (_pool == null) {
+            _pool = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "digests");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        }
+        return _pool;
+    }
+
+    /** Stop the threads that read files.  A later update starts them
+     *  again. */
+    void close() {
+        if (_pool != null) {
+            _pool.shutdown();
+            _pool = null;
+        }
+    }
+
+    /** Returns the current digest of NAME, or null if it is not a file
+     *  passed to the last update. */
+    String digest(String name) {
+        Entry e = _cache.get(name);
+        return e == null ? null : e._digest;
+    }
+
+    /** Returns true iff digests of the inputs of TARGET were recorded. */
+    boolean recorded(String target) {
+        return _inputs.containsKey(target);
+    }
+
+    /** Returns the digest PREREQ had when TARGET was last recorded, or
+     *  null if none was. */
+    String recorded(String target, String prereq) {
+        HashMap<String, String> in = _inputs.get(target);
+        return in == null ? null : in.get(prereq);
+    }
+
+    /** Record the current digests of PREREQS as the inputs of TARGET. */
+    void record(String target, String[] prereqs) {
+        HashMap<String, String> in = new HashMap<String, String>();
+        for (String p : prereqs) {
+            String d = digest(p);
+            if (d != null) {
+                in.put(p, d);
+            }
+        }
+        _inputs.put(target, in);
+    }
+
+    /** Write this record to its file. */
+    void save() throws IOException {
+        PrintWriter out = new PrintWriter(Files.newBufferedWriter(_store));
+        for (String name : _cache.keySet()) {
+            Entry e = _cache.get(name);
+            out.printf("F %s %d %d %s%n", name, e._size, e._mtime, e._digest);
+        }
+        for (String target : _inputs.keySet()) {
+            HashMap<String, String> in = _inputs.get(target);
+            for (String p : in.keySet()) {
+                out.printf("T %s %s %s%n", target, p, in.get(p));
+            }
+        }
+        out.close();
+    }
+
+    /** Returns the map of recorded input digests for TARGET, creating it
+     *  if needed. */
+    private HashMap<String, String> inputs(String target) {
+        HashMap<String, String> in = _inputs.get(target);
+        if (in == null) {
+            in = new HashMap<String, String>();
+            _inputs.put(target, in);
+        }
+        return in;
+    }
+
+    /** Returns the hex digest of the contents of P. */
+    static String digest(Path p) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        byte[] buf = new byte[BUFSIZE];
+        InputStream in = Files.newInputStream(p);
+        try {
+            for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+                md.update(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : md.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /** The cached digest of one file. */
+    private static class Entry {
+        /** A digest DIGEST of a file with SIZE bytes last modified at
+         *  MTIME. */
+        Entry(long size, long mtime, String digest) {
+            _size = size;
+            _mtime = mtime;
+            _digest = digest;
+        }
+
+        /** Size of the file in bytes. */
+        private final long _size;
+        /** Modification time of the file in milliseconds. */
+        private final long _mtime;
+        /** Digest of the contents. */
+        private final String _digest;
+    }
+
+    /** Directory against which file names are resolved. */
+    private Path _base;
+    /** File holding this record. */
+    private Path _store;
+    /** Key = file name.  Value = its cached digest. */
+    private HashMap<String, Entry> _cache;
+    /** Key = target.  Value = map from its prereqs to their digests when
+     *  the target was last checked. */
+    private HashMap<String, HashMap<String, String>> _inputs;
+    /** Reads files for update, or null if not started. */
+    private ExecutorService _pool;
+}
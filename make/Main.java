@@ -3,10 +3,16 @@ package make;
 import graph.NoLabel;
 import graph.Graph;
 import graph.DirectedGraph;
+import graph.TraversalStats;
 import java.util.ArrayList;
 import java.util.List;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.FileReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Scanner;
 import java.util.regex.Pattern;
@@ -30,11 +36,23 @@ public final class Main {
 
     /** Entry point for the CS61B make program.  ARGS may contain options
      *  and targets:
-     *      [ -f MAKEFILE ] [ -D FILEINFO ] TARGET1 TARGET2 ...
+     *      [ -f MAKEFILE ] [ -D FILEINFO ] [ -H DIGESTS ] [ --watch ]
+     *      [ --stats ] TARGET1 TARGET2 ...
+     *  With -H, a target whose inputs were checked before is rebuilt only
+     *  if their contents changed since, as recorded in the file DIGESTS.
+     *  With --watch, keeps running after the first build and rebuilds
+     *  whenever one of the files the targets depend on changes.  With
+     *  --stats, prints counts of the steps taken by the traversals, and the
+     *  time spent reading the makefile and in each phase of the traversals,
+     *  to the standard error after the build.  File names are relative to
+     *  the directory containing MAKEFILE.
      */
     public static void main(String... args) {
         String makefileName;
         String fileInfoName;
+        String digestsName;
+        boolean watch;
+        TraversalStats stats;
 
         if (args.length == 0) {
             usage();
@@ -42,6 +60,9 @@ public final class Main {
 
         makefileName = "Makefile";
         fileInfoName = "fileinfo";
+        digestsName = null;
+        watch = false;
+        stats = null;
 
         int a;
         for (a = 0; a < args.length; a += 1) {
@@ -59,6 +80,18 @@ public final class Main {
                 } else {
                     fileInfoName = args[a];
                 }
+            } else if (args[a].equals("-H")) {
+                a += 1;
+                if (a == args.length) {
+                    usage();
+                } else {
+                    digestsName = args[a];
+                }
+            } else if (args[a].equals("--watch")) {
+                watch = true;
+            } else if (args[a].equals("--stats")) {
+                stats = new TraversalStats();
+                stats.register("make");
             } else if (args[a].startsWith("-")) {
                 usage();
             } else {
@@ -72,45 +105,36 @@ public final class Main {
             targets.add(args[a]);
         }
 
-        make(makefileName, fileInfoName, targets);
+        make(makefileName, fileInfoName, digestsName, targets, watch, stats);
     }
 
     /** Carry out the make procedure using MAKEFILENAME as the makefile,
      *  taking information on the current file-system state from FILEINFONAME,
      *  and building TARGETS, or the first target in the makefile if TARGETS
-     *  is empty.
+     *  is empty.  If DIGESTSNAME is not null, it records file contents
+     *  used to decide what is up to date.  If WATCH, keeps rebuilding as
+     *  files change.  If STATS is not null, it gathers statistics on the
+     *  build.
      */
     private static void make(String makefileName, String fileInfoName,
-                             List<String> targets) {
+                             String digestsName, List<String> targets,
+                             boolean watch, TraversalStats stats) {
+        long start = System.nanoTime();
         HashMap<String, Integer> mappings = new HashMap<String, Integer>();
         List<Rule> rList = new ArrayList<Rule>();
+        HashMap<String, Rule> rIndex = new HashMap<String, Rule>();
         try {
             Scanner in = new Scanner(new FileReader(makefileName));
             String current = "";
             int ruleCounter = 0;
             Rule currRule = new Rule(current, current);
-            int counter = 0;
             while (in.hasNextLine()) {
                 current = in.nextLine();
                 Matcher m = TARGETPATTERN.matcher(current);
                 Matcher m2 = COMMANDSETPATTERN.matcher(current);
                 if (m.matches()) {
                     if (ruleCounter != 0) {
-                        currRule.convert();
-                        if (ruleExists(rList, currRule) != null) {
-                            Rule exRule = ruleExists(rList, currRule);
-                            if (!currRule.getCS().equals("")
-                                    && !exRule.getCS().equals("")) {
-                                usage();
-                            } else {
-                                exRule.merge(currRule.getPrereqs());
-                                if (exRule.getCS().equals("")) {
-                                    exRule.setCS(currRule.getCS());
-                                }
-                            }
-                        } else {
-                            rList.add(currRule);
-                        }
+                        addRule(rList, rIndex, currRule);
                     }
                     String s1 = m.group(1);
                     String s2 = m.group(2);
@@ -122,28 +146,45 @@ public final class Main {
                     ruleCounter++;
                 }
                 if (!in.hasNextLine()) {
-                    currRule.convert();
-                    rList.add(currRule);
+                    addRule(rList, rIndex, currRule);
                 }
-                counter += 1;
             }
             in.close();
             int currentTime = infoScan(fileInfoName, mappings);
-            make2(rList, targets, currentTime, mappings);
+            Path base = Paths.get(makefileName).toAbsolutePath().getParent();
+            Digests digests = null;
+            if (digestsName != null) {
+                digests = new Digests(base, Paths.get(digestsName));
+            }
+            if (stats != null) {
+                stats.phase("parse", System.nanoTime() - start);
+            }
+            make2(rList, targets, currentTime, mappings, base, digests,
+                  watch, stats);
         } catch (IOException e) {
             System.err.println("IO Exception");
             usage();
         }
     }
 
-    /** Returns the rule if R already exists in RULES. */
-    private static Rule ruleExists(List<Rule> rules, Rule r) {
-        for (Rule rule : rules) {
-            if (rule.getTarget().equals(r.getTarget())) {
-                return rule;
+    /** Finish reading R and add it to RULES, indexed by target in INDEX.
+     *  If a rule for the same target already exists, merges R's prereqs
+     *  into it instead; it is an error for both to have command sets. */
+    private static void addRule(List<Rule> rules, HashMap<String, Rule> index,
+                                Rule r) {
+        r.convert();
+        Rule exRule = index.get(r.getTarget());
+        if (exRule == null) {
+            rules.add(r);
+            index.put(r.getTarget(), r);
+        } else if (!r.getCS().equals("") && !exRule.getCS().equals("")) {
+            usage();
+        } else {
+            exRule.merge(r.getPrereqs());
+            if (exRule.getCS().equals("")) {
+                exRule.setCS(r.getCS());
             }
         }
-        return null;
     }
 
     /** Returns current time from FILEINFONAME and updates MAPPINGS
@@ -176,9 +217,15 @@ public final class Main {
         return currentTime;
     }
 
-    /** Build stuff from RULES, TARGETS, CURRENTTIME, MAPPINGS. */
+    /** Build stuff from RULES, TARGETS, CURRENTTIME, MAPPINGS.  File names
+     *  are relative to BASE.  If DIGESTS is not null, use and update the
+     *  file contents it records.  If WATCH, then watch the files and
+     *  rebuild as they change.  If STATS is not null, gather statistics on
+     *  the traversals in it and print them after the build. */
     private static void make2(List<Rule> rules, List<String> targets,
-            int currentTime, HashMap<String, Integer> mappings) {
+            int currentTime, HashMap<String, Integer> mappings, Path base,
+            Digests digests, boolean watch, TraversalStats stats)
+        throws IOException {
         int counter = 0;
         HashMap<String, Graph<String, NoLabel>.Vertex> targetList =
             new HashMap<String, Graph<String, NoLabel>.Vertex>();
@@ -214,35 +261,59 @@ public final class Main {
         }
         MakeTraversal trav = new MakeTraversal(rules, targetList, currentTime,
                 mappings, g);
-        try {
-            String start;
-            if (targets.size() == 0) {
-                start = rules.get(0).getTarget();
-                trav.depthFirstTraverse(g, targetList.get(start));
-                if (!trav.getString().equals("")) {
-                    System.out.println(trav.getString());
-                }
-            } else {
-                for (String s : targets) {
-                    start = s;
-                    trav.initVisited(targetList);
-                    trav.depthFirstTraverse(g, targetList.get(s));
-                }
-                if (!trav.getString().equals("")) {
-                    System.out.println(trav.getString());
+        trav.setListener(stats);
+        if (digests != null) {
+            digests.update(targetList.keySet());
+            trav.useDigests(digests);
+        }
+        List<Graph<String, NoLabel>.Vertex> goals =
+            new ArrayList<Graph<String, NoLabel>.Vertex>();
+        if (targets.size() == 0) {
+            goals.add(targetList.get(rules.get(0).getTarget()));
+        } else {
+            for (String s : targets) {
+                if (!targetList.containsKey(s)) {
+                    usage();
                 }
+                goals.add(targetList.get(s));
             }
-        } catch (IllegalArgumentException e) {
+        }
+        PrintWriter out =
+            new PrintWriter(new BufferedWriter(
+                                new OutputStreamWriter(System.out)));
+        trav.streamTo(out);
+        try {
+            trav.depthFirstTraverse(g, goals);
+        } catch (CycleException e) {
+            out.flush();
             System.err.println("A cycle exists.");
             usage();
         }
+        if (digests != null) {
+            digests.save();
+            if (!watch) {
+                digests.close();
+            }
+        }
+        if (stats != null) {
+            out.flush();
+            System.err.print(stats.report());
+        }
+        if (watch) {
+            try {
+                new Watcher(base, g, goals, trav, digests).run();
+            } catch (IOException e) {
+                System.err.println("Cannot watch files.");
+                usage();
+            }
+        }
     }
 
     /** Print a brief usage message and exit program abnormally. */
     private static void usage() {
         System.err.println(
-                "java make.Main [ -f MAKEFILE ] [ -D FILEINFO ]"
-                + "TARGET1 TARGET2 ...");
+                "java make.Main [ -f MAKEFILE ] [ -D FILEINFO ] [ -H DIGESTS ]"
+                + " [ --watch ] [ --stats ] TARGET1 TARGET2 ...");
         System.exit(1);
     }
 
@@ -4,6 +4,9 @@ import graph.Graph;
 import graph.NoLabel;
 import graph.Traversal;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
@@ -16,7 +19,7 @@ public class MakeTraversal extends Traversal<String, NoLabel> {
     protected void preVisit(Graph<String, NoLabel>.Edge e,
                             Graph<String, NoLabel>.Vertex v) {
         if (marked(e.getV1())) {
-            throw new IllegalArgumentException();
+            throw CycleException.CYCLE;
         }
     }
 
@@ -24,6 +27,7 @@ public class MakeTraversal extends Traversal<String, NoLabel> {
     protected void visit(Graph<String, NoLabel>.Vertex v) {
         mark(v);
         CycleTraversal t = new CycleTraversal(_graph, v);
+        t.setListener(getListener());
         t.depthFirstTraverse(_graph, v);
     }
 
@@ -57,6 +61,9 @@ public class MakeTraversal extends Traversal<String, NoLabel> {
         if (r.getArray() == null) {
             return false;
         }
+        if (_digests != null && _digests.recorded(r.getTarget())) {
+            return inputsChanged(r);
+        }
         for (String p : r.getArray()) {
             if (_ages.get(r.getTarget()) < _ages.get(p)) {
                 if (!_targetAndRule.get(r.getTarget()).getAB()) {
@@ -67,6 +74,35 @@ public class MakeTraversal extends Traversal<String, NoLabel> {
         return false;
     }
 
+    /** Returns true if the contents of some prereq of rule R differ from
+     *  those recorded when its target was last checked.  A prereq that was
+     *  rebuilt during this run counts as changed, and one that is not a
+     *  file is compared by age. */
+    private boolean inputsChanged(Rule r) {
+        String target = r.getTarget();
+        for (String p : r.getArray()) {
+            String d = _digests.digest(p);
+            if (_ages.containsKey(p) && _ages.get(p) >= _startTime) {
+                return true;
+            } else if (d == null) {
+                if (_ages.containsKey(p)
+                        && _ages.get(target) < _ages.get(p)) {
+                    return true;
+                }
+            } else if (!d.equals(_digests.recorded(target, p))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Decide whether targets are up to date using the file contents
+     *  recorded in DIGESTS, rather than by age alone.  Targets with no
+     *  record yet are still compared by age. */
+    void useDigests(Digests digests) {
+        _digests = digests;
+    }
+
     @Override
     protected void postVisit(Graph<String, NoLabel>.Vertex v) {
         String target = v.getLabel();
@@ -77,20 +113,68 @@ public class MakeTraversal extends Traversal<String, NoLabel> {
         if (_targetAndRule.get(target).getCS().equals("")) {
             return;
         }
-        if (mustBuild(currRule)) {
+        boolean build = mustBuild(currRule);
+        if (_digests != null && currRule.getArray() != null) {
+            _digests.record(target, currRule.getArray());
+        }
+        if (build) {
             _ages.put(target, _currentTime++);
+            emit(currRule.getCS());
+        }
+    }
+
+    /** Issue the command set CS, either to the stream given to streamTo,
+     *  or to the commands collected for getString. */
+    private void emit(String cs) {
+        if (_out != null) {
+            _out.println(cs);
+            _out.flush();
+        } else {
             if (_b.length() > 0) {
                 newLine(_b);
             }
-            _b.append(_targetAndRule.get(target).getCS());
+            _b.append(cs);
         }
     }
 
-    /** Returns the string of the stringbuilder. */
+    /** Write each command set to OUT, followed by a newline, as soon as
+     *  its target is found to need building, rather than collecting them
+     *  for getString.  OUT is flushed after each command set so that a
+     *  consumer can start on it at once; a consumer that falls behind
+     *  blocks the traversal rather than letting output pile up here. */
+    void streamTo(PrintWriter out) {
+        _out = out;
+    }
+
+    /** Returns the string of the stringbuilder.  This is empty when
+     *  commands are being streamed. */
     protected String getString() {
         return _b.toString();
     }
 
+    /** Discards the commands collected so far. */
+    void clearString() {
+        _b.setLength(0);
+    }
+
+    /** Records that file NAME has just been modified.  When file contents
+     *  are recorded, a file whose contents are the same as before is left
+     *  alone. */
+    void touch(String name) {
+        if (_digests != null) {
+            String old = _digests.digest(name);
+            try {
+                _digests.update(Collections.singleton(name));
+            } catch (IOException e) {
+                old = null;
+            }
+            if (old != null && old.equals(_digests.digest(name))) {
+                return;
+            }
+        }
+        _ages.put(name, _currentTime++);
+    }
+
     /** Appends a new line to StringBuilder OUT. */
     private void newLine(StringBuilder out) {
         out.append(System.getProperty("line.separator"));
@@ -108,6 +192,7 @@ public class MakeTraversal extends Traversal<String, NoLabel> {
         _targetAndRule = new HashMap<String, Rule>();
         _ages = ages;
         _currentTime = currentTime;
+        _startTime = currentTime;
         for (Rule r : rules) {
             _targetAndRule.put(r.getTarget(), r);
         }
@@ -121,6 +206,12 @@ public class MakeTraversal extends Traversal<String, NoLabel> {
     /** Current time. */
     private int _currentTime;
 
+    /** Current time when this traversal was created. */
+    private int _startTime;
+
+    /** Recorded file contents, or null if only ages are used. */
+    private Digests _digests;
+
     /** Ages of each object. */
     private HashMap<String, Integer> _ages;
 
@@ -135,4 +226,8 @@ public class MakeTraversal extends Traversal<String, NoLabel> {
 
     /** Stringbuilder. */
     private StringBuilder _b;
+
+    /** Where commands are streamed, or null if they are collected in
+     *  _b. */
+    private PrintWriter _out;
 }
@@ -1,7 +1,7 @@
 package make;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.HashSet;
 
 /** Takes in target, prereqs, command set for rule.
  * @author Brian Su
@@ -14,29 +14,22 @@ public class Rule {
         _target = target;
         _prereqs = prereqs;
         _sb = new StringBuilder();
-        _array = prereqs.trim().split("\\s+");
+        _prereqList = new ArrayList<String>();
+        _prereqSet = new HashSet<String>();
         _alreadyBuilt = false;
-        if (_prereqs.equals("")) {
-            _array = null;
-        }
+        merge(prereqs);
     }
 
-    /** Merge the PREREQS together. */
+    /** Merge the PREREQS together.  Each prerequisite is checked against
+     *  a hash set, so merging is linear in the number of new prerequisites
+     *  rather than in the number already present. */
     public void merge(String prereqs) {
-        ArrayList<String> lst =
-            new ArrayList<String>(Arrays.asList(_array));
-        String[] pre = prereqs.trim().split("\\s+");
-        for (String s : pre) {
-            if (!lst.contains(s)) {
-                lst.add(s);
+        for (String s : prereqs.trim().split("\\s+")) {
+            if (!s.equals("") && _prereqSet.add(s)) {
+                _prereqList.add(s);
+                _array = null;
             }
         }
-        String[] array = new String[lst.size()];
-        int count = 0;
-        for (String s : lst) {
-            array[count++] = s;
-        }
-        _array = array;
     }
 
     /** Set command set to ARG. */
@@ -53,7 +46,12 @@ public class Rule {
 
     /** Target, Pre-reqs, Command-set. */
     private String _target, _prereqs, _commandSet;
-    /** Prereqs in the form of an array. */
+    /** Prereqs in the order they were first named, without duplicates. */
+    private ArrayList<String> _prereqList;
+    /** The same prereqs as _prereqList, for constant-time membership. */
+    private HashSet<String> _prereqSet;
+    /** Prereqs in the form of an array.  Built lazily from _prereqList and
+     *  discarded whenever a merge adds a new prereq. */
     private String[] _array;
     /** StringBuilder that collects all the command set lines.*/
     private StringBuilder _sb;
@@ -95,8 +93,14 @@ public class Rule {
         return _prereqs;
     }
 
-    /** Returns the prereqs array. */
+    /** Returns the prereqs array, or null if there are no prereqs. */
     public String[] getArray() {
+        if (_prereqList.isEmpty()) {
+            return null;
+        }
+        if (_array == null) {
+            _array = _prereqList.toArray(new String[_prereqList.size()]);
+        }
         return _array;
     }
 
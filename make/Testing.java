@@ -5,6 +5,19 @@ package make;
  * may not be part of your make package per se (that is, it must be
  * possible to remove them and still have your package work). */
 
+import graph.DirectedGraph;
+import graph.Graph;
+import graph.NoLabel;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
 import org.junit.Test;
 import ucb.junit.textui;
 import static org.junit.Assert.*;
@@ -30,4 +43,212 @@ public class Testing {
         assertEquals(r.getArray().length, 4);
     }
 
+    @Test
+    public void mergeSkipsDuplicates() {
+        Rule r = new Rule("T", "A B A");
+        assertEquals(2, r.getArray().length);
+        r.merge("C B");
+        r.merge("");
+        r.merge("A D");
+        assertArrayEquals(new String[] {"A", "B", "C", "D"}, r.getArray());
+    }
+
+    @Test
+    public void mergeIntoEmptyPrereqs() {
+        Rule r = new Rule("T", "");
+        assertNull(r.getArray());
+        r.merge("A");
+        assertArrayEquals(new String[] {"A"}, r.getArray());
+    }
+
+    /** Build the graph for RULES into G and VERTICES the way make.Main
+     *  does, treating prereqs without rules as existing files. */
+    private static void buildGraph(List<Rule> rules, Graph<String, NoLabel> g,
+            HashMap<String, Graph<String, NoLabel>.Vertex> vertices) {
+        for (Rule r : rules) {
+            vertices.put(r.getTarget(), g.add(r.getTarget()));
+        }
+        for (Rule r : new ArrayList<Rule>(rules)) {
+            for (String p : r.getArray() == null ? new String[0]
+                     : r.getArray()) {
+                if (!vertices.containsKey(p)) {
+                    vertices.put(p, g.add(p));
+                    Rule file = new Rule(p, "", true);
+                    file.convert();
+                    rules.add(file);
+                }
+                g.add(vertices.get(r.getTarget()), vertices.get(p));
+            }
+        }
+    }
+
+    /** Returns a rule for TARGET depending on PREREQS built by CMD. */
+    private static Rule rule(String target, String prereqs, String cmd) {
+        Rule r = new Rule(target, prereqs);
+        r.add(cmd);
+        r.convert();
+        return r;
+    }
+
+    @Test
+    public void watchRebuildsDependents() throws IOException,
+                                                InterruptedException {
+        String nl = System.getProperty("line.separator");
+        Path dir = Files.createTempDirectory("watch");
+        Files.write(dir.resolve("foo.c"), "1".getBytes());
+        Files.write(dir.resolve("bar.c"), "1".getBytes());
+        List<Rule> rules = new ArrayList<Rule>(Arrays.asList(
+            rule("foo", "foo.o", "link foo"),
+            rule("foo.o", "foo.c", "cc foo.c"),
+            rule("bar", "bar.c", "cc bar.c")));
+        HashMap<String, Integer> ages = new HashMap<String, Integer>();
+        ages.put("foo.c", 1);
+        ages.put("bar.c", 1);
+        ages.put("foo.o", 2);
+        ages.put("foo", 3);
+        ages.put("bar", 2);
+        Graph<String, NoLabel> g = new DirectedGraph<String, NoLabel>();
+        HashMap<String, Graph<String, NoLabel>.Vertex> vertices =
+            new HashMap<String, Graph<String, NoLabel>.Vertex>();
+        buildGraph(rules, g, vertices);
+        MakeTraversal trav = new MakeTraversal(rules, vertices, 10, ages, g);
+        Watcher w = new Watcher(dir, g,
+                                Arrays.asList(vertices.get("foo"),
+                                              vertices.get("bar")),
+                                trav, null);
+        try {
+            assertEquals("cc bar.c",
+                         w.rebuild(Arrays.asList(vertices.get("bar.c"))));
+            assertEquals("", w.rebuild(Arrays.asList(vertices.get("foo"))));
+            assertEquals("cc foo.c" + nl + "link foo",
+                         w.rebuild(Arrays.asList(vertices.get("foo.c"))));
+            assertEquals("", w.rebuild(
+                new ArrayList<Graph<String, NoLabel>.Vertex>()));
+
+            Files.write(dir.resolve("foo.c"), "2".getBytes());
+            String cmds = w.poll(30000);
+            while ("".equals(cmds)) {
+                cmds = w.poll(30000);
+            }
+            assertEquals("cc foo.c" + nl + "link foo", cmds);
+            while (w.poll(500) != null) {
+                continue;
+            }
+            Files.write(dir.resolve("unrelated"), "2".getBytes());
+            cmds = w.poll(1000);
+            assertTrue(cmds == null || cmds.equals(""));
+        } finally {
+            w.close();
+            for (String f : new String[] {"foo.c", "bar.c", "unrelated"}) {
+                Files.deleteIfExists(dir.resolve(f));
+            }
+            Files.delete(dir);
+        }
+    }
+
+    /** Returns the commands issued to build T from RULES in DIR using the
+     *  ages in AGES and the digests recorded in STORE. */
+    private static String makeWithDigests(Path dir, Path store,
+                                          List<Rule> rules, String t,
+                                          HashMap<String, Integer> ages)
+        throws IOException {
+        Graph<String, NoLabel> g = new DirectedGraph<String, NoLabel>();
+        HashMap<String, Graph<String, NoLabel>.Vertex> vertices =
+            new HashMap<String, Graph<String, NoLabel>.Vertex>();
+        rules = new ArrayList<Rule>(rules);
+        buildGraph(rules, g, vertices);
+        Digests digests = new Digests(dir, store);
+        digests.update(vertices.keySet());
+        MakeTraversal trav =
+            new MakeTraversal(rules, vertices, 10,
+                              new HashMap<String, Integer>(ages), g);
+        trav.useDigests(digests);
+        trav.depthFirstTraverse(g, vertices.get(t));
+        digests.save();
+        digests.close();
+        return trav.getString();
+    }
+
+    @Test
+    public void digestsIgnoreTouchedFiles() throws IOException {
+        Path dir = Files.createTempDirectory("digests");
+        Path store = dir.resolve("digests");
+        Files.write(dir.resolve("a.c"), "int a;".getBytes());
+        List<Rule> rules = Arrays.asList(rule("a.o", "a.c", "cc a.c"));
+        HashMap<String, Integer> ages = new HashMap<String, Integer>();
+        ages.put("a.c", 5);
+        ages.put("a.o", 3);
+        try {
+            assertEquals("cc a.c",
+                         makeWithDigests(dir, store, rules, "a.o", ages));
+            assertEquals("",
+                         makeWithDigests(dir, store, rules, "a.o", ages));
+            Files.write(dir.resolve("a.c"), "int a, b;".getBytes());
+            assertEquals("cc a.c",
+                         makeWithDigests(dir, store, rules, "a.o", ages));
+            assertEquals("",
+                         makeWithDigests(dir, store, rules, "a.o", ages));
+        } finally {
+            Files.deleteIfExists(dir.resolve("a.c"));
+            Files.deleteIfExists(store);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void watchSavesDigests() throws IOException {
+        Path dir = Files.createTempDirectory("watchdigests");
+        Path store = dir.resolve("digests");
+        Files.write(dir.resolve("a.c"), "int a;".getBytes());
+        List<Rule> rules = new ArrayList<Rule>(Arrays.asList(
+            rule("a.o", "a.c", "cc a.c")));
+        HashMap<String, Integer> ages = new HashMap<String, Integer>();
+        ages.put("a.c", 5);
+        ages.put("a.o", 3);
+        Graph<String, NoLabel> g = new DirectedGraph<String, NoLabel>();
+        HashMap<String, Graph<String, NoLabel>.Vertex> vertices =
+            new HashMap<String, Graph<String, NoLabel>.Vertex>();
+        buildGraph(rules, g, vertices);
+        Digests digests = new Digests(dir, store);
+        digests.update(vertices.keySet());
+        MakeTraversal trav = new MakeTraversal(rules, vertices, 10, ages, g);
+        trav.useDigests(digests);
+        trav.depthFirstTraverse(g, vertices.get("a.o"));
+        digests.save();
+        Watcher w = new Watcher(dir, g, Arrays.asList(vertices.get("a.o")),
+                                trav, digests);
+        try {
+            Files.write(dir.resolve("a.c"), "int a, b;".getBytes());
+            assertEquals("cc a.c",
+                         w.rebuild(Arrays.asList(vertices.get("a.c"))));
+            assertEquals(Digests.digest(dir.resolve("a.c")),
+                         new Digests(dir, store).recorded("a.o", "a.c"));
+        } finally {
+            w.close();
+            Files.deleteIfExists(dir.resolve("a.c"));
+            Files.deleteIfExists(store);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void streamCommands() {
+        String nl = System.getProperty("line.separator");
+        List<Rule> rules = new ArrayList<Rule>(Arrays.asList(
+            rule("foo", "foo.o", "link foo"),
+            rule("foo.o", "foo.c", "cc foo.c")));
+        HashMap<String, Integer> ages = new HashMap<String, Integer>();
+        ages.put("foo.c", 1);
+        Graph<String, NoLabel> g = new DirectedGraph<String, NoLabel>();
+        HashMap<String, Graph<String, NoLabel>.Vertex> vertices =
+            new HashMap<String, Graph<String, NoLabel>.Vertex>();
+        buildGraph(rules, g, vertices);
+        MakeTraversal trav = new MakeTraversal(rules, vertices, 10, ages, g);
+        StringWriter out = new StringWriter();
+        trav.streamTo(new PrintWriter(out));
+        trav.depthFirstTraverse(g, vertices.get("foo"));
+        assertEquals("cc foo.c" + nl + "link foo" + nl, out.toString());
+        assertEquals("", trav.getString());
+    }
+
 }
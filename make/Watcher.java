@@ -0,0 +1,228 @@
+package make;
+
+import graph.Graph;
+import graph.Iteration;
+import graph.NoLabel;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Stack;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/** Watches the files named in a make dependency graph and, when some of
+ *  them change, rebuilds only the targets that depend on them.  Vertex
+ *  labels are taken to be file names relative to a base directory.
+ *  @author Brian Su
+ */
+class Watcher {
+
+    /** Watch the files named by the vertices of G that are needed to build
+     *  GOALS, resolving names against BASE.  TRAV holds the rules and ages
+     *  left by the initial build.  DIGESTS, unless null, is the record of
+     *  contents TRAV uses, which is saved after each rebuild. */
+    Watcher(Path base, Graph<String, NoLabel> g,
+            List<Graph<String, NoLabel>.Vertex> goals,
+            MakeTraversal trav, Digests digests) throws IOException {
+        _graph = g;
+        _trav = trav;
+        _digests = digests;
+        _goals = goals;
+        _service = FileSystems.getDefault().newWatchService();
+        _files = new HashMap<Path, Graph<String, NoLabel>.Vertex>();
+        _needed = new HashSet<Graph<String, NoLabel>.Vertex>();
+        HashSet<Path> dirs = new HashSet<Path>();
+        for (Graph<String, NoLabel>.Vertex v : reachable(goals)) {
+            Path p = base.resolve(v.getLabel()).toAbsolutePath().normalize();
+            _needed.add(v);
+            _files.put(p, v);
+            if (dirs.add(p.getParent())) {
+                p.getParent().register(_service, ENTRY_CREATE, ENTRY_MODIFY);
+            }
+        }
+    }
+
+    /** Rebuild after each batch of changes, printing the commands, until
+     *  the thread is interrupted.  Throws IOException if the record of
+     *  digests cannot be saved. */
+    void run() throws IOException {
+        try {
+            while (true) {
+                String cmds = rebuild(_service.take());
+                if (!cmds.equals("")) {
+                    System.out.println(cmds);
+                }
+            }
+        } catch (InterruptedException e) {
+            close();
+        }
+    }
+
+    /** Wait up to TIMEOUT milliseconds for a change and return the commands
+     *  needed to bring the goals up to date, or null if nothing changed in
+     *  that time. */
+    String poll(long timeout) throws InterruptedException, IOException {
+        WatchKey key = _service.poll(timeout, TimeUnit.MILLISECONDS);
+        if (key == null) {
+            return null;
+        }
+        return rebuild(key);
+    }
+
+    /** Stop watching. */
+    void close() throws IOException {
+        _service.close();
+        if (_digests != null) {
+            _digests.close();
+        }
+    }
+
+    /** Collect the changed files reported by KEY and any other keys already
+     *  pending, and return the commands needed to rebuild their
+     *  dependents. */
+    private String rebuild(WatchKey key) throws IOException {
+        List<Graph<String, NoLabel>.Vertex> changed =
+            new ArrayList<Graph<String, NoLabel>.Vertex>();
+        HashSet<Graph<String, NoLabel>.Vertex> seen =
+            new HashSet<Graph<String, NoLabel>.Vertex>();
+        while (key != null) {
+            Path dir = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    changed.addAll(_needed);
+                    continue;
+                }
+                Path p = dir.resolve((Path) event.context()).normalize();
+                Graph<String, NoLabel>.Vertex v = _files.get(p);
+                if (v != null && seen.add(v)) {
+                    changed.add(v);
+                }
+            }
+            key.reset();
+            key = _service.poll();
+        }
+        return rebuild(changed);
+    }
+
+    /** Mark the files in CHANGED as modified now and return the commands
+     *  that rebuild the targets depending on them, in the order a full
+     *  build would issue them, saving the record of digests if there is
+     *  one. */
+    String rebuild(List<Graph<String, NoLabel>.Vertex> changed)
+        throws IOException {
+        for (Graph<String, NoLabel>.Vertex v : changed) {
+            _trav.touch(v.getLabel());
+        }
+        HashSet<Graph<String, NoLabel>.Vertex> affected = dependents(changed);
+        HashSet<Graph<String, NoLabel>.Vertex> done =
+            new HashSet<Graph<String, NoLabel>.Vertex>();
+        _trav.clearString();
+        for (Graph<String, NoLabel>.Vertex goal : _goals) {
+            postOrder(goal, affected, done);
+        }
+        if (_digests != null) {
+            _digests.save();
+        }
+        return _trav.getString();
+    }
+
+    /** Returns the vertices in CHANGED together with every needed vertex
+     *  that depends on one of them, found by walking predecessors. */
+    private HashSet<Graph<String, NoLabel>.Vertex>
+    dependents(List<Graph<String, NoLabel>.Vertex> changed) {
+        HashSet<Graph<String, NoLabel>.Vertex> result =
+            new HashSet<Graph<String, NoLabel>.Vertex>();
+        Stack<Graph<String, NoLabel>.Vertex> fringe =
+            new Stack<Graph<String, NoLabel>.Vertex>();
+        fringe.addAll(changed);
+        while (!fringe.isEmpty()) {
+            Graph<String, NoLabel>.Vertex v = fringe.pop();
+            if (_needed.contains(v) && result.add(v)) {
+                for (Graph<String, NoLabel>.Vertex p
+                         : _graph.predecessors(v)) {
+                    fringe.push(p);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Post-visit the vertices of AFFECTED reachable from V through
+     *  AFFECTED, prerequisites first, skipping those in DONE.  Adds each
+     *  vertex visited to DONE. */
+    private void postOrder(Graph<String, NoLabel>.Vertex v,
+                           HashSet<Graph<String, NoLabel>.Vertex> affected,
+                           HashSet<Graph<String, NoLabel>.Vertex> done) {
+        if (!affected.contains(v) || !done.add(v)) {
+            return;
+        }
+        Stack<Graph<String, NoLabel>.Vertex> fringe =
+            new Stack<Graph<String, NoLabel>.Vertex>();
+        Stack<Iteration<Graph<String, NoLabel>.Vertex>> succs =
+            new Stack<Iteration<Graph<String, NoLabel>.Vertex>>();
+        fringe.push(v);
+        succs.push(_graph.successors(v));
+        while (!fringe.isEmpty()) {
+            Iteration<Graph<String, NoLabel>.Vertex> it = succs.peek();
+            Graph<String, NoLabel>.Vertex next = null;
+            while (next == null && it.hasNext()) {
+                Graph<String, NoLabel>.Vertex s = it.next();
+                if (affected.contains(s) && done.add(s)) {
+                    next = s;
+                }
+            }
+            if (next == null) {
+                succs.pop();
+                _trav.postVisit(fringe.pop());
+            } else {
+                fringe.push(next);
+                succs.push(_graph.successors(next));
+            }
+        }
+    }
+
+    /** Returns the vertices reachable from GOALS through successors. */
+    private HashSet<Graph<String, NoLabel>.Vertex>
+    reachable(List<Graph<String, NoLabel>.Vertex> goals) {
+        HashSet<Graph<String, NoLabel>.Vertex> result =
+            new HashSet<Graph<String, NoLabel>.Vertex>();
+        Stack<Graph<String, NoLabel>.Vertex> fringe =
+            new Stack<Graph<String, NoLabel>.Vertex>();
+        fringe.addAll(goals);
+        while (!fringe.isEmpty()) {
+            Graph<String, NoLabel>.Vertex v = fringe.pop();
+            if (result.add(v)) {
+                for (Graph<String, NoLabel>.Vertex s : _graph.successors(v)) {
+                    fringe.push(s);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** The dependency graph; edges run from targets to prerequisites. */
+    private Graph<String, NoLabel> _graph;
+    /** Holds the rules and file ages, and issues commands. */
+    private MakeTraversal _trav;
+    /** The targets being kept up to date. */
+    private List<Graph<String, NoLabel>.Vertex> _goals;
+    /** Vertices needed to build the goals. */
+    private HashSet<Graph<String, NoLabel>.Vertex> _needed;
+    /** Key = absolute path of a watched file.  Value = its vertex. */
+    private HashMap<Path, Graph<String, NoLabel>.Vertex> _files;
+    /** Reports changes to the directories holding watched files. */
+    private WatchService _service;
+    /** The record of digests used by _trav, or null. */
+    private Digests _digests;
+}
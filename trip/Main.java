@@ -3,7 +3,12 @@ package trip;
 import java.util.List;
 import graph.Distancer;
 import static graph.Graphs.shortestPath;
+import static graph.Graphs.shortestPathWithin;
+import static graph.Graphs.parallelShortestPath;
+import static graph.Graphs.weightedShortestPath;
+import static graph.Graphs.anytimeShortestPath;
 import java.util.ArrayList;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
@@ -14,7 +19,13 @@ import java.util.regex.Matcher;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.Locale;
+import graph.BoundedPath;
+import graph.Deadline;
 import graph.Graph;
+import graph.GraphBuilder;
+import graph.SearchResult;
+import graph.TraversalStats;
 import graph.UndirectedGraph;
 
 /** Initial class for the 'trip' program.
@@ -34,12 +45,33 @@ public final class Main {
             + "([0-9]+\\.[0-9]+)\\s"
             + "([NS|SN|EW|WE]{2})\\s([^\\s\\:\\=\\#]+)");
 
+    /** Rough length of a line of a map file, used to guess the numbers of
+     *  locations and roads from the file's size. */
+    static final int LINELENGTH = 30;
+
     /** Entry point for the CS61B trip program.  ARGS may contain options
      *  and targets:
-     *      [ -m MAP ] [ -o OUT ] [ REQUEST ]
+     *      [ -m MAP ] [ -o OUT ] [ --stats ] [ --threads N ]
+     *      [ --epsilon E ] [ --budget MS ] [ --deadline MS ] [ REQUEST ]
      *  where MAP (default Map) contains the map data, OUT (default standard
      *  output) takes the result, and REQUEST (default standard input) contains
-     *  the locations along the requested trip.
+     *  the locations along the requested trip.  With --stats, prints counts
+     *  of the steps taken by the searches, and the time spent loading the
+     *  map and in each phase of the searches, to the standard error.  With
+     *  --threads N, for N > 1, each leg is found by a parallel search in N
+     *  threads, which finds a route of the same length but may choose a
+     *  different one where several are equally short.  With --epsilon E,
+     *  for E >= 1, each leg is found by weighted A*, and is at most E
+     *  times as long as the shortest.  With --budget MS, each leg is found
+     *  by anytime A*, starting from E (default 3) and shortening the route
+     *  for about MS milliseconds or until it is proven shortest.  With
+     *  either, --stats also prints the largest proven ratio of the length
+     *  of a leg to the shortest.  Neither may be combined with --threads.
+     *  With --deadline MS, the program gives up, with a message and exit
+     *  code 1, if the searches for all the legs have not finished MS
+     *  milliseconds after the request is read (so time spent typing it
+     *  does not count); the legs found so far are printed.  It may not be
+     *  combined with the other search options.
      */
     public static void main(String... args) {
         String mapFileName;
@@ -65,6 +97,69 @@ public final class Main {
                 } else {
                     outFileName = args[a];
                 }
+            } else if (args[a].equals("--threads")) {
+                a += 1;
+                if (a == args.length) {
+                    usage();
+                } else {
+                    try {
+                        threads = Integer.parseInt(args[a]);
+                    } catch (NumberFormatException e) {
+                        usage();
+                    }
+                    if (threads < 1) {
+                        usage();
+                    }
+                }
+            } else if (args[a].equals("--epsilon")) {
+                a += 1;
+                if (a == args.length) {
+                    usage();
+                } else {
+                    try {
+                        epsilon = Double.parseDouble(args[a]);
+                    } catch (NumberFormatException e) {
+                        usage();
+                    }
+                    if (!(epsilon >= 1)) {
+                        usage();
+                    }
+                }
+            } else if (args[a].equals("--budget")) {
+                a += 1;
+                if (a == args.length) {
+                    usage();
+                } else {
+                    double ms = -1;
+                    try {
+                        ms = Double.parseDouble(args[a]);
+                    } catch (NumberFormatException e) {
+                        usage();
+                    }
+                    if (!(ms >= 0)) {
+                        usage();
+                    }
+                    budget = (long) (ms * 1e6);
+                }
+            } else if (args[a].equals("--deadline")) {
+                a += 1;
+                if (a == args.length) {
+                    usage();
+                } else {
+                    double ms = -1;
+                    try {
+                        ms = Double.parseDouble(args[a]);
+                    } catch (NumberFormatException e) {
+                        usage();
+                    }
+                    if (!(ms >= 0)) {
+                        usage();
+                    }
+                    limit = (long) (ms * 1e6);
+                }
+            } else if (args[a].equals("--stats")) {
+                stats = new TraversalStats();
+                stats.register("trip");
             } else if (args[a].startsWith("-")) {
                 usage();
             } else {
@@ -72,6 +167,11 @@ public final class Main {
             }
         }
 
+        if (threads > 1 && (epsilon > 0 || budget >= 0)
+            || limit >= 0 && (threads > 1 || epsilon > 0 || budget >= 0)) {
+            usage();
+        }
+
         if (a == args.length - 1) {
             requestFileName = args[a];
         } else if (a > args.length) {
@@ -105,26 +205,74 @@ public final class Main {
      *  output, using the map data in MAPFILENAME.
      */
     private static void trip(String mapFileName) {
+        long start = System.nanoTime();
         buildDB(mapFileName);
+        if (stats != null) {
+            stats.phase("load", System.nanoTime() - start);
+        }
         readRequest();
         System.out.printf("From %s:%n%n", requests.get(0));
-        buildPath();
-
+        SearchResult<Location, Road> abandoned = buildPath();
+        if (stats != null) {
+            System.out.flush();
+            System.err.print(stats.report());
+            if (epsilon > 0 || budget >= 0) {
+                System.err.printf(Locale.ROOT, "%-20s %12.4f%n",
+                                  "suboptimality", suboptimality);
+            }
+        }
+        if (abandoned != null) {
+            System.out.flush();
+            System.err.printf("Gave up on the route to %s (%s).%n",
+                              destination, abandoned.status());
+            System.exit(1);
+        }
     }
 
-    /** Builds the path from request. */
-    private static void buildPath() {
+    /** Builds the path from request.  Returns the result of the search
+     *  for the first leg that gave up at the deadline, timed from this
+     *  call, after which no more legs are printed, or null if all the legs
+     *  were found. */
+    private static SearchResult<Location, Road> buildPath() {
         segmentNum = 1;
+        Deadline deadline = limit >= 0 ? Deadline.after(limit) : null;
         for (int i = 1; i < requests.size(); i++) {
             Graph<Location, Road>.Vertex from = requests.get(i - 1);
             Graph<Location, Road>.Vertex to = requests.get(i);
             List<Graph<Location, Road>.Edge> path =
                 new ArrayList<Graph<Location, Road>.Edge>();
-            path.addAll(shortestPath(map, from, to, PYTH));
+            if (budget >= 0 || epsilon > 0) {
+                BoundedPath<Location, Road> found;
+                if (budget >= 0) {
+                    found = anytimeShortestPath(map, from, to, PYTH,
+                                                epsilon > 0 ? epsilon
+                                                : ANYTIME_EPSILON,
+                                                budget, stats);
+                } else {
+                    found = weightedShortestPath(map, from, to, PYTH,
+                                                 epsilon, stats);
+                }
+                path.addAll(found.path());
+                suboptimality = Math.max(suboptimality, found.bound());
+            } else if (deadline != null) {
+                SearchResult<Location, Road> found =
+                    shortestPathWithin(map, from, to, PYTH, deadline, stats);
+                if (!found.isComplete()) {
+                    destination = to.getLabel().toString();
+                    return found;
+                }
+                path.addAll(found.path());
+            } else if (threads > 1) {
+                path.addAll(parallelShortestPath(map, from, to, PYTH,
+                                                 threads, stats));
+            } else {
+                path.addAll(shortestPath(map, from, to, PYTH, stats));
+            }
             destination = to.getLabel().toString();
             printRoute(path, from);
             reset(map);
         }
+        return null;
     }
 
     /** Reset the roads in M to have original length. */
@@ -250,12 +398,18 @@ public final class Main {
     }
 
 
-    /** Scan the MAPFILENAME and construct the map. */
+    /** Scan the MAPFILENAME and construct the map.  The vertices and
+     *  edges are collected in a GraphBuilder, whose buffers are sized for
+     *  a file of lines of about LINELENGTH characters, and the map is
+     *  built from them at the end. */
     private static void buildDB(String mapFileName) {
         String current;
         locations = new HashMap<String, Location>();
         map = new UndirectedGraph<Location, Road>();
         vertices = new HashMap<String, Graph<Location, Road>.Vertex>();
+        int expected = (int) (new File(mapFileName).length() / LINELENGTH);
+        GraphBuilder<Location, Road> builder =
+            new GraphBuilder<Location, Road>(map, expected, expected);
         try {
             Scanner in = new Scanner(new FileReader(mapFileName));
             while (in.hasNextLine()) {
@@ -270,7 +424,7 @@ public final class Main {
                     double y = Double.parseDouble(m.group(3));
                     Location loc = new Location(m.group(1), x, y);
                     locations.put(m.group(1), loc);
-                    Graph<Location, Road>.Vertex v = map.add(loc);
+                    Graph<Location, Road>.Vertex v = builder.add(loc);
                     vertices.put(m.group(1), v);
 
                 } else if (m2.matches()) {
@@ -284,7 +438,7 @@ public final class Main {
                     Graph<Location, Road>.Vertex c1 = vertices.get(m2.group(5));
                     Road newRoad = new Road(m2.group(2), distance,
                             m2.group(4), c0, c1);
-                    map.add(c0, c1, newRoad);
+                    builder.add(c0, c1, newRoad);
                 } else if (current.equals("")) {
                     continue;
                 } else {
@@ -295,12 +449,15 @@ public final class Main {
         } catch (IOException err) {
             usage();
         }
+        builder.build();
     }
 
     /** Print a brief usage message and exit program abnormally. */
     private static void usage() {
         System.out.println(
-                "Usage: java trip.Main [ -m MAP ] [ -o OUT ] [ REQUEST ]");
+                "Usage: java trip.Main [ -m MAP ] [ -o OUT ] [ --stats ]"
+                + " [ --threads N ] [ --epsilon E ] [ --budget MS ]"
+                + " [ --deadline MS ] [ REQUEST ]");
         System.exit(1);
     }
 
@@ -316,4 +473,22 @@ public final class Main {
     private static int segmentNum;
     /** The destination. */
     private static String destination;
+    /** Statistics on the searches, or null if not wanted. */
+    private static TraversalStats stats;
+    /** Number of threads searching for each leg. */
+    private static int threads = 1;
+    /** Starting epsilon for --budget when --epsilon is not given. */
+    private static final double ANYTIME_EPSILON = 3;
+    /** Bound on the ratio of each leg to the shortest, or 0 if legs are
+     *  to be shortest. */
+    private static double epsilon;
+    /** Nanoseconds allowed for improving each leg, or -1 if they are not
+     *  to be found by anytime search. */
+    private static long budget = -1;
+    /** Largest proven ratio of the length of a leg found to the
+     *  shortest. */
+    private static double suboptimality = 1;
+    /** Nanoseconds allowed for the searches for all the legs, or -1 if
+     *  there is no limit. */
+    private static long limit = -1;
 }